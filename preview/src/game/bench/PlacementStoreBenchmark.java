@@ -0,0 +1,128 @@
+package game.bench;
+
+import game.Placement;
+import game.store.PlacementStore;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * Benchmark of holding many placement sequences on the heap as strings, as getSolutions returns
+ * them, against holding them off the heap in a PlacementStore, in memory and spilled to a file.
+ * <p>
+ * For each way, reports the time taken to fill and sort the sequences and to look them up, the
+ * heap they take, and the time of a full garbage collection while they are held, which grows with
+ * the strings but not with the store.
+ * <p>
+ * Usage: PlacementStoreBenchmark [sequences]
+ */
+public class PlacementStoreBenchmark {
+
+    private static final int LOOKUPS = 1000000;
+
+    public static void main(String[] args) throws IOException {
+        int count = args.length > 0 ? Integer.parseInt(args[0]) : 2000000;
+        short[][] sequences = randomSequences(count);
+        Random random = new Random(11);
+        int[] lookups = new int[LOOKUPS];
+        for (int i = 0; i < LOOKUPS; i++)
+            lookups[i] = random.nextInt(count);
+
+        System.out.printf("%-18s %10s %10s %12s %10s %12s%n", "", "fill ms", "sort ms", "ns/lookup", "heap MB", "full gc ms");
+        report("baseline", 0, 0, 0);
+        for (int round = 0; round < 2; round++) {
+            String label = round == 0 ? " (warm-up)" : "";
+            runStrings("strings" + label, sequences, lookups);
+            try (PlacementStore store = new PlacementStore()) {
+                runStore("store" + label, store, sequences, lookups, null);
+            }
+            Path file = Files.createTempFile("placements", ".store");
+            try (PlacementStore store = new PlacementStore()) {
+                runStore("file" + label, store, sequences, lookups, file);
+            } finally {
+                Files.delete(file);
+            }
+        }
+    }
+
+    private static void runStrings(String name, short[][] sequences, int[] lookups) {
+        long start = System.nanoTime();
+        String[] strings = new String[sequences.length];
+        for (int i = 0; i < sequences.length; i++)
+            strings[i] = Placement.toString(sequences[i]);
+        long fill = System.nanoTime() - start;
+        start = System.nanoTime();
+        Arrays.sort(strings);
+        long sort = System.nanoTime() - start;
+        start = System.nanoTime();
+        int found = 0;
+        for (int i : lookups)
+            if (Arrays.binarySearch(strings, Placement.toString(sequences[i])) >= 0)
+                found++;
+        long lookup = System.nanoTime() - start;
+        check(name, found, lookups.length);
+        report(name, fill, sort, (double) lookup / lookups.length);
+        Arrays.fill(strings, null);
+    }
+
+    private static void runStore(String name, PlacementStore store, short[][] sequences, int[] lookups, Path file) throws IOException {
+        long start = System.nanoTime();
+        for (short[] sequence : sequences)
+            store.add(sequence);
+        if (file != null)
+            store.spill(file);
+        long fill = System.nanoTime() - start;
+        start = System.nanoTime();
+        store.sort(false);
+        long sort = System.nanoTime() - start;
+        start = System.nanoTime();
+        int found = 0;
+        for (int i : lookups)
+            if (store.indexOf(sequences[i], sequences[i].length) >= 0)
+                found++;
+        long lookup = System.nanoTime() - start;
+        check(name, found, lookups.length);
+        report(name, fill, sort, (double) lookup / lookups.length);
+    }
+
+    private static void check(String name, int found, int expected) {
+        if (found != expected)
+            throw new IllegalStateException(name + ": found " + found + " of " + expected + " sequences");
+    }
+
+    // Report, while the sequences are still held
+    private static void report(String name, long fill, long sort, double lookup) {
+        MemoryMXBean memory = ManagementFactory.getMemoryMXBean();
+        long start = System.nanoTime();
+        for (int i = 0; i < 3; i++)
+            System.gc();
+        double gc = (System.nanoTime() - start) / 3e6;
+        double heap = memory.getHeapMemoryUsage().getUsed() / (1024.0 * 1024.0);
+        System.out.printf("%-18s %10.1f %10.1f %12.1f %10.1f %12.1f%n", name, fill / 1e6, sort / 1e6, lookup, heap, gc);
+    }
+
+    // Random well-formed sequences of one to eight placements
+    private static short[][] randomSequences(int count) {
+        Random random = new Random(3);
+        short[][] sequences = new short[count][];
+        int[] shapes = new int[Placement.SHAPES];
+        for (int i = 0; i < count; i++) {
+            for (int s = 0; s < shapes.length; s++)
+                shapes[s] = s;
+            sequences[i] = new short[1 + random.nextInt(Placement.SHAPES)];
+            for (int j = 0; j < sequences[i].length; j++) {
+                int k = j + random.nextInt(shapes.length - j);
+                int shape = shapes[k];
+                shapes[k] = shapes[j];
+                shapes[j] = shape;
+                sequences[i][j] = Placement.of(shape, random.nextInt(Placement.ORIENTATIONS), random.nextInt(Placement.LOCATIONS));
+            }
+        }
+        return sequences;
+    }
+}
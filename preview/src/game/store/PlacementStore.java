@@ -0,0 +1,459 @@
+package game.store;
+
+import game.Placement;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.lang.foreign.Arena;
+import java.lang.foreign.MemorySegment;
+import java.lang.foreign.ValueLayout;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.stream.LongStream;
+import java.util.stream.Stream;
+
+/**
+ * An off-heap store of packed placement sequences, for more of them than fit on the heap as strings
+ * or arrays, such as the reachable states or the solutions of a large board.
+ * <p>
+ * Each sequence is held in a 16-byte record, as in PuzzleCatalogue: up to eight packed placements,
+ * or BoardGeometry codes below 32768, padded with Placement.NONE.  The records live in a memory
+ * segment outside the heap, so the garbage collector neither scans nor copies them and its pauses do
+ * not grow with the store.  spill() moves them into a memory-mapped file, which then grows with the
+ * store, and open() maps such a file again.  Once sorted, a sequence or the sequences starting with
+ * a placement are found by binary search, as in SolutionIndex; a shorter sequence sorts before the
+ * longer ones it starts, as NONE sorts before every placement.
+ * <p>
+ * A file is mapped further than its records, to grow into, and is padded out to the mapping with
+ * records of Placement.NONE, which no sequence is.  open() drops them from the end of a file, so a
+ * file left untrimmed by a crash opens with the records added, not with the padding as sequences.
+ * <p>
+ * A store is filled and sorted by one thread, after which any number of threads may read it.  It must
+ * be closed to release its memory, or to write out and trim its file.
+ */
+public final class PlacementStore implements AutoCloseable {
+
+    // Bytes per record, and placements per record
+    public static final int RECORD = 16;
+    public static final int SLOTS = RECORD / 2;
+
+    private static final long INITIAL_CAPACITY = 1024;
+
+    // Bytes of padding written to a file at a time
+    private static final int PADDING = 1 << 16;
+
+    // Ranges sorted by insertion rather than partitioned further
+    private static final int INSERTION = 16;
+
+    private Arena arena;
+    private MemorySegment records;
+    private long capacity;
+    private long size;
+    private boolean sorted = true;
+
+    // The file holding the records, null while they are in memory
+    private FileChannel channel;
+
+    /**
+     * Create an empty store in memory.
+     */
+    public PlacementStore() {
+        this(INITIAL_CAPACITY);
+    }
+
+    /**
+     * @param capacity The number of records to allocate room for; the store grows beyond it as needed
+     * @throws IllegalArgumentException if capacity is not positive
+     */
+    public PlacementStore(long capacity) {
+        if (capacity < 1)
+            throw new IllegalArgumentException("Bad capacity: " + capacity);
+        this.capacity = capacity;
+        arena = Arena.ofShared();
+        records = arena.allocate(capacity * RECORD, Long.BYTES);
+    }
+
+    /**
+     * Map a file of records written by a store, or create an empty one, without the padding at its end.
+     * The store adds to the file, and trims it to its records when it is closed.
+     *
+     * @throws IOException if the file cannot be opened or is not a whole number of records
+     */
+    public static PlacementStore open(Path file) throws IOException {
+        FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        try {
+            long bytes = channel.size();
+            if (bytes % RECORD != 0)
+                throw new IOException("Not a placement store: " + file + " holds " + bytes + " bytes");
+            // Map the file as it is, with nothing to copy from the store's own memory
+            PlacementStore store = new PlacementStore(1);
+            store.moveTo(channel, Math.max(INITIAL_CAPACITY, bytes / RECORD));
+            store.size = bytes / RECORD;
+            while (store.size > 0 && store.isPadding(store.size - 1))
+                store.size--;
+            store.sorted = store.isInOrder();
+            return store;
+        } catch (IOException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Move the records into a memory-mapped file, releasing their memory.  The file is replaced.
+     *
+     * @throws IOException           if the file cannot be written
+     * @throws IllegalStateException if the records are already in a file
+     */
+    public void spill(Path file) throws IOException {
+        if (channel != null)
+            throw new IllegalStateException("The store is already in a file");
+        FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+        try {
+            moveTo(channel, capacity);
+        } catch (IOException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    // Map the first capacity records of a file in place of the current segment, copying the records
+    // across unless they are already in the file.  The file is padded out to the mapping first, as
+    // mapping would extend it with zeros, which are records of placement 0
+    private void moveTo(FileChannel channel, long capacity) throws IOException {
+        long end = capacity * RECORD;
+        ByteBuffer padding = ByteBuffer.allocate((int) Math.min(PADDING, end));
+        Arrays.fill(padding.array(), (byte) Placement.NONE);
+        for (long position = channel.size(); position < end; ) {
+            padding.clear().limit((int) Math.min(padding.capacity(), end - position));
+            position += channel.write(padding, position);
+        }
+        Arena mapped = Arena.ofShared();
+        MemorySegment segment;
+        try {
+            segment = channel.map(FileChannel.MapMode.READ_WRITE, 0, capacity * RECORD, mapped);
+        } catch (IOException e) {
+            mapped.close();
+            throw e;
+        }
+        if (this.channel == null)
+            MemorySegment.copy(records, 0, segment, 0, size * RECORD);
+        arena.close();
+        this.channel = channel;
+        this.capacity = capacity;
+        arena = mapped;
+        records = segment;
+    }
+
+    /**
+     * Determine whether the records are in a file.
+     */
+    public boolean isSpilled() {
+        return channel != null;
+    }
+
+    /**
+     * Get the number of sequences in the store.
+     */
+    public long size() {
+        return size;
+    }
+
+    /**
+     * Add a sequence to the end of the store.
+     *
+     * @param placement A packed placement sequence
+     * @param length    The number of piece placements used from the array, 1 .. 8
+     * @return The index of the sequence
+     * @throws IllegalArgumentException if length is out of range or a placement is negative
+     * @throws UncheckedIOException     if the store is in a file which cannot grow
+     */
+    public long add(short[] placement, int length) {
+        if (length < 1 || length > SLOTS || length > placement.length)
+            throw new IllegalArgumentException("Bad sequence length: " + length);
+        for (int i = 0; i < length; i++)
+            if (placement[i] < 0)
+                throw new IllegalArgumentException("Bad placement: " + placement[i]);
+        if (size == capacity)
+            grow();
+        long offset = size * RECORD;
+        for (int i = 0; i < SLOTS; i++)
+            records.set(ValueLayout.JAVA_SHORT, offset + 2L * i, i < length ? placement[i] : Placement.NONE);
+        if (sorted && size > 0 && compare(size - 1, size) > 0)
+            sorted = false;
+        return size++;
+    }
+
+    public long add(short[] placement) {
+        return add(placement, placement.length);
+    }
+
+    // Double the capacity, into a larger segment or a larger mapping of the file
+    private void grow() {
+        long capacity = 2 * this.capacity;
+        if (channel != null) {
+            try {
+                records.force();
+                moveTo(channel, capacity);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            return;
+        }
+        Arena larger = Arena.ofShared();
+        MemorySegment segment = larger.allocate(capacity * RECORD, Long.BYTES);
+        MemorySegment.copy(records, 0, segment, 0, size * RECORD);
+        arena.close();
+        arena = larger;
+        records = segment;
+        this.capacity = capacity;
+    }
+
+    /**
+     * Read a sequence.
+     *
+     * @param index       The index of the sequence
+     * @param destination An array of at least 8 placements receiving it
+     * @return The length of the sequence
+     */
+    public int get(long index, short[] destination) {
+        checkIndex(index);
+        long offset = index * RECORD;
+        int length = 0;
+        for (int i = 0; i < SLOTS; i++) {
+            short piece = records.get(ValueLayout.JAVA_SHORT, offset + 2L * i);
+            destination[i] = piece;
+            if (piece != Placement.NONE)
+                length = i + 1;
+        }
+        return length;
+    }
+
+    /**
+     * Read a sequence into a new array of its length.
+     */
+    public short[] get(long index) {
+        short[] record = new short[SLOTS];
+        int length = get(index, record);
+        short[] sequence = new short[length];
+        System.arraycopy(record, 0, sequence, 0, length);
+        return sequence;
+    }
+
+    private void checkIndex(long index) {
+        if (index < 0 || index >= size)
+            throw new IndexOutOfBoundsException("Index " + index + " of " + size + " sequences");
+    }
+
+    /**
+     * Sort the sequences in ascending order, within their memory or file.
+     *
+     * @param distinct Whether to keep only the first of equal sequences
+     */
+    public void sort(boolean distinct) {
+        if (!sorted)
+            quicksort(0, size, new short[SLOTS]);
+        sorted = true;
+        if (!distinct)
+            return;
+        long kept = 0;
+        for (long i = 0; i < size; i++) {
+            if (kept > 0 && compare(kept - 1, i) == 0)
+                continue;
+            if (kept != i)
+                MemorySegment.copy(records, i * RECORD, records, kept * RECORD, RECORD);
+            kept++;
+        }
+        // The records dropped become padding
+        records.asSlice(kept * RECORD, (size - kept) * RECORD).fill((byte) Placement.NONE);
+        size = kept;
+    }
+
+    public boolean isSorted() {
+        return sorted;
+    }
+
+    // Whether a record holds no placement, as only padding does
+    private boolean isPadding(long index) {
+        return records.get(ValueLayout.JAVA_LONG, index * RECORD) == -1 && records.get(ValueLayout.JAVA_LONG, index * RECORD + 8) == -1;
+    }
+
+    private boolean isInOrder() {
+        for (long i = 1; i < size; i++)
+            if (compare(i - 1, i) > 0)
+                return false;
+        return true;
+    }
+
+    // Sort records low .. high - 1, partitioning around the median of three and recursing into the
+    // smaller part, so that the stack stays shallow
+    private void quicksort(long low, long high, short[] pivot) {
+        while (high - low > INSERTION) {
+            long middle = (low + high) >>> 1;
+            long a = low, b = middle, c = high - 1;
+            long median = compare(a, b) < 0
+                    ? (compare(b, c) < 0 ? b : compare(a, c) < 0 ? c : a)
+                    : (compare(a, c) < 0 ? a : compare(b, c) < 0 ? c : b);
+            read(median, pivot);
+            long i = low - 1, j = high;
+            while (true) {
+                do i++; while (compare(i, pivot) < 0);
+                do j--; while (compare(j, pivot) > 0);
+                if (i >= j)
+                    break;
+                swap(i, j);
+            }
+            if (j + 1 - low < high - j - 1) {
+                quicksort(low, j + 1, pivot);
+                low = j + 1;
+            } else {
+                quicksort(j + 1, high, pivot);
+                high = j + 1;
+            }
+        }
+        for (long i = low + 1; i < high; i++)
+            for (long j = i; j > low && compare(j - 1, j) > 0; j--)
+                swap(j - 1, j);
+    }
+
+    private void read(long index, short[] record) {
+        for (int i = 0; i < SLOTS; i++)
+            record[i] = records.get(ValueLayout.JAVA_SHORT, index * RECORD + 2L * i);
+    }
+
+    private void swap(long i, long j) {
+        long first = records.get(ValueLayout.JAVA_LONG, i * RECORD), second = records.get(ValueLayout.JAVA_LONG, i * RECORD + 8);
+        MemorySegment.copy(records, j * RECORD, records, i * RECORD, RECORD);
+        records.set(ValueLayout.JAVA_LONG, j * RECORD, first);
+        records.set(ValueLayout.JAVA_LONG, j * RECORD + 8, second);
+    }
+
+    private int compare(long i, long j) {
+        for (int k = 0; k < SLOTS; k++) {
+            int order = Short.compare(records.get(ValueLayout.JAVA_SHORT, i * RECORD + 2L * k), records.get(ValueLayout.JAVA_SHORT, j * RECORD + 2L * k));
+            if (order != 0)
+                return order;
+        }
+        return 0;
+    }
+
+    private int compare(long i, short[] record) {
+        for (int k = 0; k < SLOTS; k++) {
+            int order = Short.compare(records.get(ValueLayout.JAVA_SHORT, i * RECORD + 2L * k), record[k]);
+            if (order != 0)
+                return order;
+        }
+        return 0;
+    }
+
+    // Compare the start of a record with a placement, 0 if the record starts with it
+    private int comparePrefix(long index, short[] placement, int length) {
+        for (int k = 0; k < length; k++) {
+            short piece = records.get(ValueLayout.JAVA_SHORT, index * RECORD + 2L * k);
+            if (piece != placement[k])
+                return Short.compare(piece, placement[k]);
+        }
+        return 0;
+    }
+
+    /**
+     * Find a sequence in the sorted store.
+     *
+     * @param placement A packed placement sequence
+     * @param length    The number of piece placements used from the array
+     * @return The index of the first equal sequence, or -1 if there is none
+     * @throws IllegalStateException if the store is not sorted
+     */
+    public long indexOf(short[] placement, int length) {
+        long index = lowerBound(placement, length);
+        if (index == size || comparePrefix(index, placement, length) != 0)
+            return -1;
+        return length == SLOTS || records.get(ValueLayout.JAVA_SHORT, index * RECORD + 2L * length) == Placement.NONE ? index : -1;
+    }
+
+    public boolean contains(short[] placement, int length) {
+        return indexOf(placement, length) >= 0;
+    }
+
+    /**
+     * Count the sequences of the sorted store starting with a placement.
+     *
+     * @throws IllegalStateException if the store is not sorted
+     */
+    public long count(short[] placement, int length) {
+        return upperBound(placement, length) - lowerBound(placement, length);
+    }
+
+    /**
+     * Stream the sequences of the sorted store starting with a placement.  Each element is read into a
+     * fresh array as the stream is consumed.
+     *
+     * @return A lazy, splittable stream of the sequences in ascending order
+     * @throws IllegalStateException if the store is not sorted
+     */
+    public Stream<short[]> sequences(short[] placement, int length) {
+        return LongStream.range(lowerBound(placement, length), upperBound(placement, length)).mapToObj(this::get);
+    }
+
+    // Index of the first record not sorting before the placement
+    private long lowerBound(short[] placement, int length) {
+        checkSorted(length);
+        long low = 0, high = size;
+        while (low < high) {
+            long mid = (low + high) >>> 1;
+            if (comparePrefix(mid, placement, length) < 0)
+                low = mid + 1;
+            else
+                high = mid;
+        }
+        return low;
+    }
+
+    // Index of the first record sorting after every record starting with the placement
+    private long upperBound(short[] placement, int length) {
+        checkSorted(length);
+        long low = 0, high = size;
+        while (low < high) {
+            long mid = (low + high) >>> 1;
+            if (comparePrefix(mid, placement, length) <= 0)
+                low = mid + 1;
+            else
+                high = mid;
+        }
+        return low;
+    }
+
+    private void checkSorted(int length) {
+        if (!sorted)
+            throw new IllegalStateException("The store must be sorted to search it");
+        if (length < 0 || length > SLOTS)
+            throw new IllegalArgumentException("Bad sequence length: " + length);
+    }
+
+    /**
+     * Release the memory of the store, or write out its file and trim it to the records.
+     *
+     * @throws IOException if the file cannot be written
+     */
+    @Override
+    public void close() throws IOException {
+        if (arena == null)
+            return;
+        if (channel != null)
+            records.force();
+        arena.close();
+        arena = null;
+        records = null;
+        if (channel != null) {
+            try {
+                channel.truncate(size * RECORD);
+            } finally {
+                channel.close();
+                channel = null;
+            }
+        }
+    }
+}
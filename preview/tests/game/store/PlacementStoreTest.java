@@ -0,0 +1,173 @@
+package game.store;
+
+import game.Placement;
+import game.SolutionIndex;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.Timeout;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.TreeSet;
+import java.util.stream.Collectors;
+
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Test objective:
+ * <p>
+ * Store packed placement sequences off the heap, sort them and search them, in memory and in a file.
+ */
+public class PlacementStoreTest {
+    @Rule
+    public Timeout globalTimeout = Timeout.millis(10000);
+
+    // Random well-formed sequences, many of them repeated
+    private static List<short[]> randomSequences(int count) {
+        Random r = new Random(5);
+        List<short[]> sequences = new ArrayList<>();
+        while (sequences.size() < count) {
+            short[] sequence = new short[1 + r.nextInt(Placement.SHAPES)];
+            int shapes = 0;
+            for (int i = 0; i < sequence.length; i++) {
+                int shape;
+                do {
+                    shape = r.nextInt(Placement.SHAPES);
+                } while ((shapes & 1 << shape) != 0);
+                shapes |= 1 << shape;
+                sequence[i] = Placement.of(shape, r.nextInt(2), r.nextInt(3));
+            }
+            sequences.add(sequence);
+        }
+        return sequences;
+    }
+
+    private static void checkSorted(PlacementStore store, List<short[]> sequences) {
+        TreeSet<short[]> expected = new TreeSet<>(Arrays::compare);
+        expected.addAll(sequences);
+        assertTrue("Expected " + expected.size() + " distinct sequences, but got " + store.size(), store.size() == expected.size());
+        long index = 0;
+        for (short[] sequence : expected) {
+            short[] stored = store.get(index);
+            assertTrue("Sequence " + index + " should be " + Placement.toString(sequence) + ", but got " + Placement.toString(stored), Arrays.equals(stored, sequence));
+            assertTrue("Sequence " + Placement.toString(sequence) + " should be found at " + index, store.indexOf(sequence, sequence.length) == index);
+            index++;
+        }
+    }
+
+    @Test
+    public void testSort() {
+        List<short[]> sequences = randomSequences(20000);
+        try (PlacementStore store = new PlacementStore(16)) {
+            for (short[] sequence : sequences)
+                store.add(sequence);
+            assertTrue("Expected " + sequences.size() + " sequences, but got " + store.size(), store.size() == sequences.size());
+            assertTrue("Random sequences should not be sorted", !store.isSorted());
+            for (int i = 0; i < sequences.size(); i += 997)
+                assertTrue("Sequence " + i + " should be stored as added", Arrays.equals(store.get(i), sequences.get(i)));
+            store.sort(true);
+            checkSorted(store, sequences);
+
+            // Prefixes of the stored sequences, and sequences which are not stored
+            for (short[] sequence : sequences.subList(0, 200)) {
+                for (int length = 1; length <= sequence.length; length++) {
+                    final int prefix = length;
+                    long expected = store.sequences(new short[0], 0).filter(s -> s.length >= prefix && Arrays.equals(s, 0, prefix, sequence, 0, prefix)).count();
+                    assertTrue("Expected " + expected + " sequences starting with " + Placement.toString(sequence, length) + ", but got " + store.count(sequence, length), store.count(sequence, length) == expected);
+                }
+            }
+            short[] missing = {Placement.of(0, 7, 49)};
+            assertTrue("A sequence which was never added should not be found", store.indexOf(missing, 1) == -1 && store.count(missing, 1) == 0);
+        } catch (IOException e) {
+            throw new AssertionError(e);
+        }
+    }
+
+    @Test
+    public void testSolutions() throws IOException {
+        SolutionIndex index = SolutionIndex.standard();
+        try (PlacementStore store = new PlacementStore()) {
+            List<short[]> solutions = index.solutions(new short[0], 0).collect(Collectors.toList());
+            for (int i = solutions.size() - 1; i >= 0; i--)
+                store.add(solutions.get(i));
+            store.sort(false);
+            assertTrue("Expected " + index.size() + " solutions, but got " + store.size(), store.size() == index.size());
+            for (short[] solution : solutions)
+                for (int length = 1; length <= solution.length; length++)
+                    assertTrue("The store should count the solutions starting with " + Placement.toString(solution, length) + " as the index does",
+                            store.count(solution, length) == index.count(solution, length));
+        }
+    }
+
+    @Test
+    public void testSpill() throws IOException {
+        List<short[]> sequences = randomSequences(10000);
+        Path file = Files.createTempFile("placements", ".store");
+        try {
+            try (PlacementStore store = new PlacementStore()) {
+                for (short[] sequence : sequences.subList(0, 3000))
+                    store.add(sequence);
+                store.spill(file);
+                assertTrue("The store should be in a file", store.isSpilled());
+                // Growing the file beyond its first mapping
+                for (short[] sequence : sequences.subList(3000, 6000))
+                    store.add(sequence);
+                store.sort(false);
+            }
+            assertTrue("The file should be trimmed to its records", Files.size(file) == 6000L * PlacementStore.RECORD);
+            try (PlacementStore store = PlacementStore.open(file)) {
+                assertTrue("A sorted file should open sorted", store.isSorted() && store.size() == 6000);
+                for (short[] sequence : sequences.subList(6000, sequences.size()))
+                    store.add(sequence);
+                store.sort(true);
+                checkSorted(store, sequences);
+            }
+            Files.write(file, new byte[PlacementStore.RECORD + 1]);
+            boolean thrown = false;
+            try {
+                PlacementStore.open(file).close();
+            } catch (IOException e) {
+                thrown = true;
+            }
+            assertTrue("A file of part of a record should not open", thrown);
+        } finally {
+            Files.delete(file);
+        }
+    }
+
+    @Test
+    public void testUntrimmed() throws IOException {
+        List<short[]> sequences = randomSequences(5000);
+        Path file = Files.createTempFile("placements", ".store"), copy = Files.createTempFile("placements", ".copy");
+        try {
+            try (PlacementStore store = new PlacementStore()) {
+                store.spill(file);
+                for (short[] sequence : sequences)
+                    store.add(sequence);
+                // The file as a crash would leave it, mapped beyond its records
+                Files.copy(file, copy, StandardCopyOption.REPLACE_EXISTING);
+                assertTrue("The file should be mapped beyond its records", Files.size(copy) > 5000L * PlacementStore.RECORD);
+                try (PlacementStore untrimmed = PlacementStore.open(copy)) {
+                    assertTrue("Expected 5000 sequences in an untrimmed file, but got " + untrimmed.size(), untrimmed.size() == 5000);
+                    for (int i = 0; i < 5000; i += 97)
+                        assertTrue("Sequence " + i + " should be kept", Arrays.equals(untrimmed.get(i), sequences.get(i)));
+                }
+                // Sequences dropped as repeated are not found again either
+                store.sort(true);
+                Files.copy(file, copy, StandardCopyOption.REPLACE_EXISTING);
+                try (PlacementStore untrimmed = PlacementStore.open(copy)) {
+                    checkSorted(untrimmed, sequences);
+                }
+            }
+        } finally {
+            Files.delete(file);
+            Files.delete(copy);
+        }
+    }
+}
@@ -0,0 +1,359 @@
+package game;
+
+import java.util.Arrays;
+
+/**
+ * The geometry of a board: its width and height in locations, which locations have a peg, and the
+ * pieces played on it (see PieceSet).  Location n lies in row n / width and column n % width, so
+ * the standard board (STANDARD) is 10 wide and 5 high with pegs on alternate locations, the top
+ * left one included, and takes the game's own pieces.
+ * <p>
+ * Piece placements on a board are coded like packed placements (see Placement), with the board's
+ * locations in place of the standard 50: (shape * 8 + orientation) * cells + home.  The masks of
+ * the locations used by every placement are compiled with the board, in words of 64 locations, so
+ * that a sequence is validated on any board with the same few bitwise operations per piece as
+ * PlacementMasks, which takes its masks from the standard board.  A symmetric piece is placeable in
+ * all eight orientations, those in which it looks the same sharing their masks, so a sequence is valid
+ * whichever of them it names; a search should still try only PieceSet.orientations, and canonical()
+ * maps the others onto them.
+ * <p>
+ * The pegs decide which placements are on pegs: those with their bottom rings on pegs and their upper
+ * rings over holes, as the rules require of a piece.  Validation does not ask for it, as
+ * StepsGame.isPlacementSequenceValid never has, so a sequence is valid wherever its rings fit; the
+ * Solver only tries placements on pegs.  The solver and the solution streams work on the 50 locations
+ * of the standard board in one long, so a search on any other board is not supported: other boards
+ * are compiled and validated on, which is what BoardBenchmark measures.
+ */
+public final class BoardGeometry {
+
+    // Offsets of the locations beside a location: up, left, right, down
+    private static final int[][] BESIDE = {{-1, 0}, {0, -1}, {0, 1}, {1, 0}};
+
+    public static final BoardGeometry STANDARD = checkerboard(10, 5);
+
+    private final int width;
+    private final int height;
+    private final boolean[] pegs;
+    private final PieceSet pieces;
+    private final int words;
+
+    // The masks of each placement code, words longs each
+    private final boolean[] placeable;
+    private final boolean[] onPegs;
+    private final long[] bottom;
+    private final long[] upper;
+    private final long[] obstructed;
+
+    /**
+     * Create a board for the game's own pieces.
+     *
+     * @param width  The number of columns, at least 3
+     * @param height The number of rows, at least 3
+     * @param pegs   Whether each location has a peg, in row order
+     * @throws IllegalArgumentException if the board is too small or the pegs do not cover it
+     */
+    public BoardGeometry(int width, int height, boolean[] pegs) {
+        this(width, height, pegs, PieceSet.standard());
+    }
+
+    /**
+     * @param width  The number of columns, at least 3
+     * @param height The number of rows, at least 3
+     * @param pegs   Whether each location has a peg, in row order
+     * @param pieces The pieces played on the board
+     * @throws IllegalArgumentException if the board is too small or the pegs do not cover it
+     */
+    public BoardGeometry(int width, int height, boolean[] pegs, PieceSet pieces) {
+        if (width < 3 || height < 3)
+            throw new IllegalArgumentException("Bad board size: " + width + "x" + height);
+        if (pegs.length != width * height)
+            throw new IllegalArgumentException("Expected " + width * height + " pegs, but got " + pegs.length);
+        this.width = width;
+        this.height = height;
+        this.pegs = pegs.clone();
+        this.pieces = pieces;
+        this.words = (pegs.length + 63) / 64;
+
+        // Play every placement onto an empty board
+        int count = placements();
+        placeable = new boolean[count];
+        onPegs = new boolean[count];
+        bottom = new long[count * words];
+        upper = new long[count * words];
+        obstructed = new long[count * words];
+        int[] board = new int[pegs.length];
+        for (int shape = 0; shape < pieces.size(); shape++) {
+            for (int orientation = 0; orientation < Placement.ORIENTATIONS; orientation++) {
+                int same = pieces.canonical(shape, orientation);
+                if (same != orientation) {
+                    // Looks the same as an orientation already compiled
+                    int from = code(shape, same, 0), to = code(shape, orientation, 0);
+                    System.arraycopy(placeable, from, placeable, to, pegs.length);
+                    System.arraycopy(onPegs, from, onPegs, to, pegs.length);
+                    System.arraycopy(bottom, from * words, bottom, to * words, pegs.length * words);
+                    System.arraycopy(upper, from * words, upper, to * words, pegs.length * words);
+                    System.arraycopy(obstructed, from * words, obstructed, to * words, pegs.length * words);
+                    continue;
+                }
+                String state = pieces.state(shape, orientation);
+                for (int home = 0; home < pegs.length; home++) {
+                    if (isOffBoard(home, state))
+                        continue;
+                    Arrays.fill(board, 0);
+                    if (!checkCollision(board, home, state))
+                        continue;
+                    int code = code(shape, orientation, home);
+                    placeable[code] = true;
+                    onPegs[code] = true;
+                    int offset = code * words;
+                    for (int i = 0; i < board.length; i++) {
+                        long bit = 1L << i;
+                        if (board[i] == 1)
+                            bottom[offset + i / 64] |= bit;
+                        else if (board[i] == 2)
+                            upper[offset + i / 64] |= bit;
+                        else if (board[i] == 3)
+                            obstructed[offset + i / 64] |= bit;
+                        // A bottom ring needs a peg, and an upper ring a hole
+                        if (board[i] == 1 && !pegs[i] || board[i] == 2 && pegs[i])
+                            onPegs[code] = false;
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Create a board for the game's own pieces with pegs on alternate locations, starting with a
+     * peg at the top left.
+     */
+    public static BoardGeometry checkerboard(int width, int height) {
+        return checkerboard(width, height, PieceSet.standard());
+    }
+
+    /**
+     * Create a board with pegs on alternate locations, starting with a peg at the top left.
+     */
+    public static BoardGeometry checkerboard(int width, int height, PieceSet pieces) {
+        boolean[] pegs = new boolean[Math.max(0, width * height)];
+        for (int i = 0; i < pegs.length; i++)
+            pegs[i] = (i / width + i % width) % 2 == 0;
+        return new BoardGeometry(width, height, pegs, pieces);
+    }
+
+    public int width() {
+        return width;
+    }
+
+    public int height() {
+        return height;
+    }
+
+    /**
+     * Get the number of locations on the board.
+     */
+    public int cells() {
+        return pegs.length;
+    }
+
+    /**
+     * Get the number of longs in a mask of the board's locations.
+     */
+    public int words() {
+        return words;
+    }
+
+    public boolean hasPeg(int location) {
+        return pegs[location];
+    }
+
+    public PieceSet pieces() {
+        return pieces;
+    }
+
+    /**
+     * Get the number of placement codes on the board, placeable or not.
+     */
+    public int placements() {
+        return pieces.size() * Placement.ORIENTATIONS * pegs.length;
+    }
+
+    /**
+     * Code a piece placement.
+     *
+     * @param shape       The shape of the piece, 0 .. 7
+     * @param orientation The orientation of the piece, 0 .. 7
+     * @param home        The location of the centre of the piece
+     * @return (shape * 8 + orientation) * cells + home
+     */
+    public int code(int shape, int orientation, int home) {
+        return (shape * Placement.ORIENTATIONS + orientation) * pegs.length + home;
+    }
+
+    /**
+     * Get the code of the placement which puts the same rings in the same locations, using the
+     * first of the orientations in which its piece looks the same.
+     */
+    public int canonical(int code) {
+        int home = code % pegs.length;
+        int orientation = code / pegs.length % Placement.ORIENTATIONS;
+        int shape = code / pegs.length / Placement.ORIENTATIONS;
+        return code(shape, pieces.canonical(shape, orientation), home);
+    }
+
+    private boolean isOnBoard(int row, int column) {
+        return row >= 0 && row < height && column >= 0 && column < width;
+    }
+
+    /**
+     * Check whether any ring gets out of the board.
+     *
+     * @param home  The home location of the piece
+     * @param state The state of the piece (see PieceSet.state)
+     * @return True if any ring gets out of the board
+     */
+    boolean isOffBoard(int home, String state) {
+        int row = home / width, column = home % width;
+        for (int i = 0; i < 9; i++)
+            if (state.charAt(i) != '0' && !isOnBoard(row + i / 3 - 1, column + i % 3 - 1))
+                return true;
+        return false;
+    }
+
+    /**
+     * Check collision among piece placements:
+     * - Each of the bottom rings must be placed onto vacant pegs (pegs that are not occupied by already played pieces).
+     * - None of the bottom rings may be obstructed by the upper layer of pieces already played.
+     * - Each of the upper rings must be placed onto locations without an upper ring, and obstructs
+     * the vacant locations beside it which are not part of the piece.
+     * State map:
+     * 0: vacant,  1: bottom ring,  2: upper ring,  3: obstructed by an upper ring
+     *
+     * @param board The states of the locations, updated with the piece placement
+     * @param home  The home location of the piece, assumed to be on the board
+     * @param state The state of the piece (see PieceSet.state)
+     * @return True if no collision between the piece placement and any other piece placements
+     */
+    boolean checkCollision(int[] board, int home, String state) {
+        int row = home / width, column = home % width;
+        for (int i = 0; i < 9; i++) {
+            char ring = state.charAt(i);
+            if (ring == '0')
+                continue;
+            int r = row + i / 3 - 1, c = column + i % 3 - 1;
+            int location = r * width + c;
+            if (ring == '1') {
+                if (board[location] != 0)
+                    return false;
+                board[location] = 1;
+                continue;
+            }
+            if (board[location] == 2)
+                return false;
+            board[location] = 2;
+            for (int[] step : BESIDE) {
+                int nr = r + step[0], nc = c + step[1];
+                if (!isOnBoard(nr, nc) || board[nr * width + nc] != 0)
+                    continue;
+                // Within the piece, only its empty locations
+                int pr = nr - row + 1, pc = nc - column + 1;
+                if (pr >= 0 && pr < 3 && pc >= 0 && pc < 3 && state.charAt(pr * 3 + pc) != '0')
+                    continue;
+                board[nr * width + nc] = 3;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Determine whether a placement fits onto an empty board.
+     */
+    public boolean isPlaceable(int code) {
+        return placeable[code];
+    }
+
+    /**
+     * Determine whether a placement fits onto an empty board with its bottom rings on pegs and its
+     * upper rings over holes.
+     */
+    public boolean isOnPegs(int code) {
+        return onPegs[code];
+    }
+
+    // A word of the masks of a placement, for PlacementMasks and the tests
+    long bottom(int code, int word) {
+        return bottom[code * words + word];
+    }
+
+    long upper(int code, int word) {
+        return upper[code * words + word];
+    }
+
+    long obstructed(int code, int word) {
+        return obstructed[code * words + word];
+    }
+
+    /**
+     * Determine whether a placement can be played after others, as StepsGame.canFollow does on
+     * the standard board.
+     *
+     * @param code       The placement code
+     * @param bottom     The bottom rings on the board, words long
+     * @param upper      The upper rings on the board
+     * @param obstructed The obstructed pegs on the board
+     * @return True if the placement can be played next
+     */
+    public boolean canFollow(int code, long[] bottom, long[] upper, long[] obstructed) {
+        if (!placeable[code])
+            return false;
+        int offset = code * words;
+        for (int w = 0; w < words; w++)
+            if ((this.bottom[offset + w] & (bottom[w] | upper[w] | obstructed[w])) != 0 || (this.upper[offset + w] & upper[w]) != 0)
+                return false;
+        return true;
+    }
+
+    /**
+     * Add a placement to the masks of a board.
+     */
+    public void play(int code, long[] bottom, long[] upper, long[] obstructed) {
+        int offset = code * words;
+        for (int w = 0; w < words; w++) {
+            bottom[w] |= this.bottom[offset + w];
+            upper[w] |= this.upper[offset + w];
+            obstructed[w] |= this.obstructed[offset + w];
+        }
+    }
+
+    /**
+     * Determine whether a sequence of placement codes can be played in order.
+     *
+     * @param codes  The placement codes
+     * @param length The number of codes used from the array
+     * @return True if every placement can follow the ones before it, and no shape is used twice
+     */
+    public boolean isPlacementSequenceValid(int[] codes, int length) {
+        return isPlacementSequenceValid(codes, length, new long[words], new long[words], new long[words]);
+    }
+
+    // The same, on masks of the caller's which are cleared first, so that a worker can reuse its own
+    boolean isPlacementSequenceValid(int[] codes, int length, long[] bottom, long[] upper, long[] obstructed) {
+        Arrays.fill(bottom, 0);
+        Arrays.fill(upper, 0);
+        Arrays.fill(obstructed, 0);
+        int shapes = 0;
+        for (int i = 0; i < length; i++) {
+            int shape = codes[i] / (Placement.ORIENTATIONS * pegs.length);
+            if ((shapes & 1 << shape) != 0 || !canFollow(codes[i], bottom, upper, obstructed))
+                return false;
+            shapes |= 1 << shape;
+            play(codes[i], bottom, upper, obstructed);
+        }
+        return true;
+    }
+
+    @Override
+    public String toString() {
+        return width + "x" + height;
+    }
+}
@@ -0,0 +1,208 @@
+package game;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.function.IntPredicate;
+import java.util.function.Supplier;
+import java.util.stream.Stream;
+
+/**
+ * Validates large collections of placement sequences on every core, as StepsGame.isPlacementSequenceValid
+ * would one at a time.
+ * <p>
+ * The sequences are split into ranges of whole 64-sequence words, which the workers of a fork/join pool
+ * validate into a shared array of words.  Each range gets its own parse buffer and board masks, so no
+ * worker touches the state of another, and no two ranges write the same word; the words become the
+ * result, a BitSet with a bit set for each valid sequence (BitSet.stream lists their indices).  Streams
+ * and files are read in batches, so that they need not fit in memory.
+ * <p>
+ * A validator owns its threads until it is closed.
+ */
+public final class BulkValidator implements AutoCloseable {
+
+    // Sequences a task validates without splitting the range further, a whole number of words
+    private static final int LEAF = 4096;
+
+    // Sequences read from a stream before validating them, a whole number of words
+    private static final int BATCH = 1 << 16;
+
+    private final ForkJoinPool pool;
+
+    /**
+     * Create a validator using all the cores.
+     */
+    public BulkValidator() {
+        this(Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * @param threads The number of worker threads
+     * @throws IllegalArgumentException if threads is not positive
+     */
+    public BulkValidator(int threads) {
+        if (threads < 1)
+            throw new IllegalArgumentException("Bad number of threads: " + threads);
+        pool = new ForkJoinPool(threads);
+    }
+
+    public int threads() {
+        return pool.getParallelism();
+    }
+
+    /**
+     * Validate placement strings.
+     *
+     * @param placements The placement strings, preferably a list with fast random access
+     * @return The indices of the valid placements
+     */
+    public BitSet validate(List<String> placements) {
+        return run(placements.size(), () -> {
+            short[] buffer = new short[Placement.SHAPES];
+            return i -> isValid(placements.get(i), buffer);
+        });
+    }
+
+    /**
+     * Validate packed placement sequences.
+     *
+     * @return The indices of the valid sequences
+     */
+    public BitSet validate(short[][] placements) {
+        return run(placements.length, () -> i -> StepsGame.isPlacementSequenceValid(placements[i]));
+    }
+
+    /**
+     * Validate sequences of placement codes on a board (see BoardGeometry.code).
+     *
+     * @return The indices of the valid sequences
+     */
+    public BitSet validate(BoardGeometry board, int[][] sequences) {
+        return run(sequences.length, () -> {
+            long[] bottom = new long[board.words()], upper = new long[board.words()], obstructed = new long[board.words()];
+            return i -> board.isPlacementSequenceValid(sequences[i], sequences[i].length, bottom, upper, obstructed);
+        });
+    }
+
+    /**
+     * Validate a stream of placement strings, a batch at a time.
+     *
+     * @return The indices of the valid placements, in the order of the stream
+     */
+    public BitSet validate(Stream<String> placements) {
+        Iterator<String> it = placements.iterator();
+        long[] words = new long[0];
+        int offset = 0;
+        for (List<String> batch = nextBatch(it); !batch.isEmpty(); batch = nextBatch(it)) {
+            long[] batchWords = validate(batch).toLongArray();
+            // Every batch but the last fills whole words, so its words follow on from the ones before
+            if (words.length < offset + batchWords.length)
+                words = Arrays.copyOf(words, Math.max(2 * words.length, offset + batchWords.length));
+            System.arraycopy(batchWords, 0, words, offset, batchWords.length);
+            offset += BATCH / 64;
+        }
+        return BitSet.valueOf(words);
+    }
+
+    /**
+     * Validate a file of placement strings, one per line.
+     *
+     * @return The indices of the valid placements, by line number from 0
+     * @throws IOException if the file cannot be read
+     */
+    public BitSet validate(Path file) throws IOException {
+        try (Stream<String> lines = Files.lines(file)) {
+            return validate(lines);
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+
+    /**
+     * Keep the valid placement strings of a stream, validating it lazily a batch at a time.
+     *
+     * @return The valid placements, in the order of the stream
+     */
+    public Stream<String> filter(Stream<String> placements) {
+        Iterator<String> it = placements.iterator();
+        return Stream.generate(() -> nextBatch(it))
+                .takeWhile(batch -> !batch.isEmpty())
+                .flatMap(batch -> validate(batch).stream().mapToObj(batch::get))
+                .onClose(placements::close);
+    }
+
+    @Override
+    public void close() {
+        pool.shutdown();
+    }
+
+    private static List<String> nextBatch(Iterator<String> it) {
+        List<String> batch = new ArrayList<>(BATCH);
+        while (batch.size() < BATCH && it.hasNext())
+            batch.add(it.next());
+        return batch;
+    }
+
+    // StepsGame.isPlacementSequenceValid, parsing into a buffer of the worker's
+    private static boolean isValid(String placement, short[] buffer) {
+        if (placement == null || placement.length() % 3 != 0)
+            return false;
+        int length = placement.length() / 3;
+        if (length < 1 || length > buffer.length)
+            return false;
+        for (int i = 0; i < length; i++) {
+            short piece = Placement.parse(placement, 3 * i);
+            if (piece == Placement.NONE)
+                return false;
+            buffer[i] = piece;
+        }
+        return StepsGame.isPlacementSequenceValid(buffer, length);
+    }
+
+    private BitSet run(int count, Supplier<IntPredicate> checkers) {
+        long[] words = new long[(count + 63) / 64];
+        if (count > 0)
+            pool.invoke(new Range(0, count, words, checkers));
+        return BitSet.valueOf(words);
+    }
+
+    // Validates sequences start .. end - 1, each leaf with a checker of its own.  A task is never
+    // serialized, its fields are transient only as the checkers are not serializable
+    private static final class Range extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final transient int start;
+        private final transient int end;
+        private final transient long[] words;
+        private final transient Supplier<IntPredicate> checkers;
+
+        Range(int start, int end, long[] words, Supplier<IntPredicate> checkers) {
+            this.start = start;
+            this.end = end;
+            this.words = words;
+            this.checkers = checkers;
+        }
+
+        @Override
+        protected void compute() {
+            if (end - start <= LEAF) {
+                IntPredicate valid = checkers.get();
+                for (int i = start; i < end; i++)
+                    if (valid.test(i))
+                        words[i >>> 6] |= 1L << i;
+                return;
+            }
+            // Split on a word boundary, so that the halves share no word
+            int middle = (start + (end - start) / 2) & ~63;
+            invokeAll(new Range(start, middle, words, checkers), new Range(middle, end, words, checkers));
+        }
+    }
+}
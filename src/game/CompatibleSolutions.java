@@ -0,0 +1,286 @@
+package game;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Collectors;
+
+/**
+ * The solutions of a game which are still compatible with the player's moves: those holding every
+ * piece placement on the board.
+ * <p>
+ * The solutions are numbered when the game starts, and each placement in them gets a bitset of the
+ * solutions holding it.  The live solutions are the intersection of the bitsets of the placed pieces,
+ * narrowed by one bitset when a piece is placed and rebuilt from at most eight when one is removed,
+ * so both take time in proportion to the words of a bitset.  Their number is kept as well, so whether
+ * the player is off track is known at once.  A piece placed where no solution has it leaves none.
+ * <p>
+ * The best hint is the next piece after which the most solutions can still be finished.  How many
+ * solutions a position can be finished as is memoised by its pieces (see Placement.positionKey), so
+ * that the hints of later moves, and candidates leading to the same position, reuse the counts.
+ * <p>
+ * A tracker is used by one thread at a time, but may be copied on another while it is: to hint in the
+ * background while the player moves on, a copy is taken there.  Copies share the solutions and the
+ * memoised counts, which are safe to share.
+ */
+public final class CompatibleSolutions {
+
+    private final short[][] solutions;
+    private final int words;
+
+    // The row of each placement code in holding, or -1 if no solution holds it
+    private final short[] rows;
+
+    // For each row, words longs with a bit set for each solution holding the placement
+    private final long[] holding;
+
+    // The pieces the player has placed, in order
+    private final short[] placed = new short[Placement.SHAPES];
+    private int length;
+
+    private final long[] live;
+    private int count;
+
+    // The number of solutions each position met so far can be finished as
+    private final Map<String, Integer> reachable;
+
+    /**
+     * Track the solutions of a game from the solution index.
+     *
+     * @param start The packed starting placement of the game
+     */
+    public CompatibleSolutions(short[] start) {
+        this(SolutionIndex.standard().solutions(start, start.length).collect(Collectors.toList()));
+    }
+
+    /**
+     * @param solutions The packed solutions of the game
+     */
+    public CompatibleSolutions(List<short[]> solutions) {
+        this.solutions = solutions.toArray(new short[0][]);
+        words = Math.max(1, (this.solutions.length + 63) / 64);
+        rows = new short[Placement.COUNT];
+        Arrays.fill(rows, (short) -1);
+        int distinct = 0;
+        for (short[] solution : this.solutions)
+            for (short piece : solution)
+                if (rows[piece] < 0)
+                    rows[piece] = (short) distinct++;
+        holding = new long[distinct * words];
+        for (int s = 0; s < this.solutions.length; s++)
+            for (short piece : this.solutions[s])
+                holding[rows[piece] * words + s / 64] |= 1L << s;
+        live = new long[words];
+        reachable = new ConcurrentHashMap<>();
+        reset();
+    }
+
+    private CompatibleSolutions(CompatibleSolutions other) {
+        solutions = other.solutions;
+        words = other.words;
+        rows = other.rows;
+        holding = other.holding;
+        System.arraycopy(other.placed, 0, placed, 0, other.length);
+        length = other.length;
+        live = other.live.clone();
+        count = other.count;
+        reachable = other.reachable;
+    }
+
+    /**
+     * Get a copy tracking the same moves, which can be used on another thread.  It may be taken there
+     * while the tracker is in use on its own.
+     */
+    public synchronized CompatibleSolutions copy() {
+        return new CompatibleSolutions(this);
+    }
+
+    // Every solution is compatible with the starting placement
+    private void reset() {
+        Arrays.fill(live, 0);
+        for (int s = 0; s < solutions.length; s++)
+            live[s / 64] |= 1L << s;
+        count = solutions.length;
+    }
+
+    /**
+     * Narrow the solutions to those holding a piece placed on the board.
+     *
+     * @throws IllegalArgumentException if the shape of the piece is on the board already
+     */
+    public synchronized void place(short piece) {
+        if (Placement.indexOfShape(placed, length, Placement.shape(piece)) >= 0)
+            throw new IllegalArgumentException("Piece " + Placement.toString(piece) + " is placed already");
+        placed[length++] = piece;
+        narrow(piece);
+    }
+
+    private void narrow(short piece) {
+        int row = rows[piece];
+        count = 0;
+        for (int w = 0; w < words; w++) {
+            live[w] &= row < 0 ? 0 : holding[row * words + w];
+            count += Long.bitCount(live[w]);
+        }
+    }
+
+    /**
+     * Widen the solutions again after a piece is taken off the board.
+     *
+     * @throws IllegalArgumentException if the piece is not one the player placed
+     */
+    public synchronized void remove(short piece) {
+        int index = -1;
+        for (int i = 0; i < length; i++)
+            if (placed[i] == piece)
+                index = i;
+        if (index < 0)
+            throw new IllegalArgumentException("Piece " + Placement.toString(piece) + " is not placed");
+        System.arraycopy(placed, index + 1, placed, index, length - index - 1);
+        length--;
+        reset();
+        for (int i = 0; i < length; i++)
+            narrow(placed[i]);
+    }
+
+    /**
+     * Get the number of solutions of the game.
+     */
+    public int size() {
+        return solutions.length;
+    }
+
+    /**
+     * Get the number of solutions holding every piece on the board.
+     */
+    public int count() {
+        return count;
+    }
+
+    /**
+     * Determine whether no solution holds every piece on the board, so the player has to take one off.
+     */
+    public boolean isOffTrack() {
+        return count == 0;
+    }
+
+    /**
+     * Get the pieces the player has placed, in order.
+     */
+    public short[] getPlaced() {
+        return Arrays.copyOf(placed, length);
+    }
+
+    /**
+     * Get a compatible solution.
+     *
+     * @param k The solution to get, 0 .. count() - 1, in the order of the solutions of the game
+     * @return A packed solution
+     */
+    public short[] get(int k) {
+        if (k < 0 || k >= count)
+            throw new IndexOutOfBoundsException("Solution " + k + " of " + count);
+        for (int w = 0; ; w++) {
+            int bits = Long.bitCount(live[w]);
+            if (k < bits) {
+                long word = live[w];
+                for (int i = 0; i < k; i++)
+                    word &= word - 1;
+                return solutions[w * 64 + Long.numberOfTrailingZeros(word)].clone();
+            }
+            k -= bits;
+        }
+    }
+
+    /**
+     * Choose a piece to play next on the way to a compatible solution, starting from a random one.
+     * A compatible solution may be out of reach all the same, when a piece on the board has to go
+     * after one which is not, so the others are tried in turn until one can be finished.
+     *
+     * @param placement The placement on the board, a valid sequence
+     * @param random    The source of the first solution to try
+     * @return A viable piece placement, or Placement.NONE if no compatible solution can be finished
+     */
+    public short hint(short[] placement, Random random) {
+        if (count == 0)
+            return Placement.NONE;
+        int first = random.nextInt(count);
+        for (int k = 0; k < count; k++) {
+            short[] solution = get((first + k) % count);
+            short piece = StepsGame.getFirstViablePiecePlacement(placement, solution, StepsGame.byDependency(solution));
+            if (piece != Placement.NONE)
+                return piece;
+        }
+        return Placement.NONE;
+    }
+
+    /**
+     * Count the solutions of the game which a position can still be finished as: those holding every
+     * piece on the board, whose other pieces can all be played after them.
+     *
+     * @param placement A valid placement sequence drawn from the game
+     * @return The number of solutions
+     */
+    public int countReachable(short[] placement) {
+        String key = Placement.positionKey(placement, placement.length);
+        Integer known = reachable.get(key);
+        if (known != null)
+            return known;
+        long[] holds = new long[words];
+        for (int s = 0; s < solutions.length; s++)
+            holds[s / 64] |= 1L << s;
+        for (short piece : placement)
+            for (int w = 0; w < words; w++)
+                holds[w] &= rows[piece] < 0 ? 0 : holding[rows[piece] * words + w];
+        int total = 0;
+        for (int w = 0; w < words; w++) {
+            for (long word = holds[w]; word != 0; word &= word - 1) {
+                short[] solution = solutions[w * 64 + Long.numberOfTrailingZeros(word)];
+                if (placement.length == solution.length || StepsGame.getFirstViablePiecePlacement(placement, solution, null) != Placement.NONE)
+                    total++;
+            }
+        }
+        reachable.put(key, total);
+        return total;
+    }
+
+    /**
+     * Choose the piece to play next after which the most solutions can still be finished.  Of pieces
+     * keeping as many, the most forced one is chosen: the one whose shape has the fewest legal
+     * placements on the board.
+     *
+     * @param placement The placement on the board, a valid sequence
+     * @return The best piece placement, or Placement.NONE if no compatible solution can be finished
+     */
+    public short bestHint(short[] placement) {
+        short best = Placement.NONE;
+        int bestScore = 0, bestChoices = 0;
+        boolean[] tried = new boolean[Placement.COUNT];
+        for (int w = 0; w < words; w++) {
+            for (long word = live[w]; word != 0; word &= word - 1) {
+                for (short piece : solutions[w * 64 + Long.numberOfTrailingZeros(word)]) {
+                    if (tried[piece] || Placement.indexOfShape(placement, placement.length, Placement.shape(piece)) >= 0)
+                        continue;
+                    tried[piece] = true;
+                    short[] next = Placement.append(placement, piece);
+                    if (!StepsGame.isPlacementSequenceValid(next))
+                        continue;
+                    int score = countReachable(next);
+                    if (score == 0 || score < bestScore)
+                        continue;
+                    int choices = 0;
+                    for (int orientation = 0; orientation < Placement.ORIENTATIONS; orientation++)
+                        choices += Long.bitCount(StepsGame.getLegalLocations(placement, placement.length, Placement.shape(piece), orientation));
+                    if (score > bestScore || choices < bestChoices || choices == bestChoices && piece < best) {
+                        best = piece;
+                        bestScore = score;
+                        bestChoices = choices;
+                    }
+                }
+            }
+        }
+        return best;
+    }
+}
@@ -0,0 +1,332 @@
+package game;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+/**
+ * An append-only binary journal of a player's games.
+ * <p>
+ * The file is a 16-byte header followed by fixed 16-byte records:
+ * - long  time      when the record was made, in milliseconds since the epoch
+ * - byte  type      START, PLACE, REMOVE, ROTATE, FLIP, HINT or SNAPSHOT
+ * - byte  argument  the difficulty of a START, the number of pieces placed for a SNAPSHOT
+ * - short piece     the packed piece placement the record is about, the difficulty for a SNAPSHOT
+ * - int   extra     the number of starting pieces for a SNAPSHOT
+ * A SNAPSHOT record is followed by a body record holding the packed placement of the game
+ * as eight shorts, padded with Placement.NONE.  Record types are letters, so they are never
+ * confused with the first byte of a body.
+ * <p>
+ * Records are buffered and written in batches by flush(), and every batch ends with a
+ * snapshot.  A journal is therefore resumed in constant time by reading its last two records,
+ * however long it has grown, and a batch torn by a crash is discarded when it is reopened.
+ * Flushing a journal with nothing new costs nothing, and otherwise costs a single write.
+ */
+public final class GameJournal implements Closeable {
+
+    public static final int RECORD_BYTES = 16;
+
+    public static final byte START = 'N';
+    public static final byte PLACE = 'P';
+    public static final byte REMOVE = 'R';
+    public static final byte ROTATE = 'T';
+    public static final byte FLIP = 'F';
+    public static final byte HINT = 'H';
+    public static final byte SNAPSHOT = 'S';
+
+    private static final int MAGIC = 0x4951534A; // "IQSJ"
+    private static final short VERSION = 1;
+
+    // Records buffered before a batch is written, leaving room for its snapshot
+    private static final int BATCH = 64;
+
+    private final FileChannel channel;
+    private final ByteBuffer pending = ByteBuffer.allocate((BATCH + 2) * RECORD_BYTES);
+
+    // State of the game as of the last record
+    private final short[] placement = new short[Placement.SHAPES];
+    private int placed, startingCount, difficulty = -1;
+
+    private GameJournal(FileChannel channel) {
+        this.channel = channel;
+    }
+
+    /**
+     * Open a journal for appending, creating it if it does not exist, and resume the game
+     * in its tail snapshot, if it holds a valid one.
+     *
+     * @param path The journal file
+     * @return The journal
+     * @throws IOException if the file cannot be opened or is not a journal
+     */
+    public static GameJournal open(Path path) throws IOException {
+        FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        GameJournal journal = new GameJournal(channel);
+        try {
+            if (channel.size() == 0) {
+                ByteBuffer header = ByteBuffer.allocate(RECORD_BYTES).putInt(MAGIC).putShort(VERSION);
+                header.clear();
+                channel.write(header, 0);
+            }
+            Records records = new Records(channel);
+            int tail = records.lastSnapshot();
+            if (tail >= 0)
+                journal.restore(records, tail);
+            // Drop anything written after the last complete snapshot
+            long end = RECORD_BYTES * (tail < 0 ? 1L : tail + 3L);
+            if (channel.size() > end)
+                channel.truncate(end);
+            channel.position(end);
+        } catch (IOException e) {
+            channel.close();
+            throw e;
+        }
+        return journal;
+    }
+
+    /**
+     * Map a journal read-only, to replay its records.
+     *
+     * @param path The journal file
+     * @return The records of the journal
+     * @throws IOException if the file cannot be read or is not a journal
+     */
+    public static Records map(Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            return new Records(channel);
+        }
+    }
+
+    // Resume the game in a snapshot, unless it is not a valid game, as in a damaged file, which leaves
+    // no game to resume
+    private void restore(Records records, int snapshot) {
+        int placed = records.argument(snapshot), startingCount = records.extra(snapshot);
+        if (placed < 1 || placed > Placement.SHAPES || startingCount < 1 || startingCount > placed)
+            return;
+        for (int i = 0; i < placed; i++)
+            placement[i] = records.body(snapshot, i);
+        if (!StepsGame.isPlacementSequenceValid(placement, placed))
+            return;
+        this.placed = placed;
+        this.startingCount = startingCount;
+        difficulty = records.piece(snapshot);
+    }
+
+    /**
+     * Determine whether the journal holds a game which has not been completed.
+     */
+    public synchronized boolean canResume() {
+        return difficulty >= 0 && placed < Placement.SHAPES;
+    }
+
+    /**
+     * Get the packed placement of the current game, starting pieces first.
+     */
+    public synchronized short[] getPlacement() {
+        return Arrays.copyOf(placement, placed);
+    }
+
+    public synchronized int getStartingCount() {
+        return startingCount;
+    }
+
+    public synchronized int getDifficulty() {
+        return difficulty;
+    }
+
+    /**
+     * Record the start of a new game.
+     *
+     * @param starting   The packed starting placement
+     * @param difficulty The difficulty it was chosen for
+     */
+    public synchronized void start(short[] starting, int difficulty) {
+        System.arraycopy(starting, 0, placement, 0, starting.length);
+        placed = startingCount = starting.length;
+        this.difficulty = difficulty;
+        append(START, (byte) difficulty, Placement.NONE, 0);
+    }
+
+    /**
+     * Record a piece placed on the board.
+     */
+    public synchronized void place(short piece) {
+        if (placed < Placement.SHAPES)
+            placement[placed++] = piece;
+        append(PLACE, (byte) 0, piece, 0);
+    }
+
+    /**
+     * Record a piece taken back off the board.
+     */
+    public synchronized void remove(short piece) {
+        int index = Placement.indexOfShape(placement, placed, Placement.shape(piece));
+        if (index >= startingCount) {
+            System.arraycopy(placement, index + 1, placement, index, placed - index - 1);
+            placed--;
+        }
+        append(REMOVE, (byte) 0, piece, 0);
+    }
+
+    /**
+     * Record a piece turned to a new orientation, with its location unused.
+     */
+    public synchronized void rotate(short piece) {
+        append(ROTATE, (byte) 0, piece, 0);
+    }
+
+    /**
+     * Record a piece flipped over, with its location unused.
+     */
+    public synchronized void flip(short piece) {
+        append(FLIP, (byte) 0, piece, 0);
+    }
+
+    /**
+     * Record a hint requested by the player.
+     *
+     * @param piece The piece placement hinted, or Placement.NONE if there was none
+     */
+    public synchronized void hint(short piece) {
+        append(HINT, (byte) 0, piece, 0);
+    }
+
+    private void append(byte type, byte argument, short piece, int extra) {
+        if (pending.position() == BATCH * RECORD_BYTES) {
+            try {
+                flush();
+            } catch (IOException e) {
+                // Keep the newest records, the next flush will report the failure again
+                e.printStackTrace();
+                pending.clear();
+            }
+        }
+        pending.putLong(System.currentTimeMillis()).put(type).put(argument).putShort(piece).putInt(extra);
+    }
+
+    /**
+     * Write the buffered records, followed by a snapshot of the game.
+     *
+     * @throws IOException if the records cannot be written
+     */
+    public synchronized void flush() throws IOException {
+        int records = pending.position();
+        if (records == 0)
+            return;
+        long end = channel.position();
+        pending.putLong(System.currentTimeMillis()).put(SNAPSHOT).put((byte) placed).putShort((short) difficulty).putInt(startingCount);
+        for (int i = 0; i < Placement.SHAPES; i++)
+            pending.putShort(i < placed ? placement[i] : Placement.NONE);
+        pending.flip();
+        boolean written = false;
+        try {
+            while (pending.hasRemaining())
+                channel.write(pending);
+            written = true;
+        } finally {
+            if (written) {
+                pending.clear();
+            } else {
+                // Keep the records without the snapshot, so that appending carries on and the next flush
+                // writes the whole batch again over whatever part of it reached the file
+                pending.limit(pending.capacity()).position(records);
+                try {
+                    channel.position(end);
+                } catch (IOException e) {
+                    // The channel is unusable, and the write's failure is the one reported
+                }
+            }
+        }
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        try {
+            flush();
+        } finally {
+            channel.close();
+        }
+    }
+
+    /**
+     * A read-only view of the records of a journal, mapped into memory.
+     */
+    public static final class Records {
+        private final MappedByteBuffer buffer;
+        private final int size;
+
+        private Records(FileChannel channel) throws IOException {
+            long length = channel.size();
+            if (length < RECORD_BYTES)
+                throw new IOException("Not a game journal");
+            if (length / RECORD_BYTES > Integer.MAX_VALUE)
+                throw new IOException("Game journal too large");
+            // A torn record at the end is ignored
+            size = (int) (length / RECORD_BYTES) - 1;
+            buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, RECORD_BYTES * (size + 1L));
+            if (buffer.getInt(0) != MAGIC || buffer.getShort(4) != VERSION)
+                throw new IOException("Not a game journal");
+        }
+
+        /**
+         * Get the number of records, counting the body of each snapshot as a record.
+         */
+        public int size() {
+            return size;
+        }
+
+        public long time(int record) {
+            return buffer.getLong(offset(record));
+        }
+
+        public byte type(int record) {
+            return buffer.get(offset(record) + 8);
+        }
+
+        public int argument(int record) {
+            return buffer.get(offset(record) + 9);
+        }
+
+        public short piece(int record) {
+            return buffer.getShort(offset(record) + 10);
+        }
+
+        public int extra(int record) {
+            return buffer.getInt(offset(record) + 12);
+        }
+
+        /**
+         * Get a piece placement from the body of a snapshot.
+         *
+         * @param snapshot The index of the SNAPSHOT record
+         * @param index    The index of the piece placement, 0 .. 7
+         */
+        public short body(int snapshot, int index) {
+            return buffer.getShort(offset(snapshot + 1) + 2 * index);
+        }
+
+        /**
+         * Find the last complete snapshot.  Each batch ends with one, so this only searches
+         * backwards past a batch torn by a crash.
+         *
+         * @return The index of its SNAPSHOT record, or -1 if there is none
+         */
+        public int lastSnapshot() {
+            for (int i = size - 2; i >= 0; i--)
+                if (type(i) == SNAPSHOT)
+                    return i;
+            return -1;
+        }
+
+        private int offset(int record) {
+            if (record < 0 || record >= size)
+                throw new IndexOutOfBoundsException("Record " + record + " of " + size);
+            return RECORD_BYTES * (record + 1);
+        }
+    }
+}
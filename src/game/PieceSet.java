@@ -0,0 +1,190 @@
+package game;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * A set of piece definitions, read from a text file (assets/pieces for the game's own pieces).
+ * <p>
+ * Each line defines a piece: its letter, then its rings face up as three rows of three locations
+ * around its home, the centre, with 0 for no ring, 1 for a bottom ring and 2 for an upper ring.
+ * Blank lines and lines starting with # are skipped.  The eight orientations are generated when
+ * the set is loaded: A - D turn the face-up side 0, 90, 180 and 270 degrees clockwise, and E - H
+ * turn the flip side, its mirror image with the two layers swapped.
+ * <p>
+ * A symmetric piece looks the same in some of its orientations.  Only the first of each is
+ * distinct, so that a search over the distinct orientations never tries the same rings twice;
+ * the number of distinct orientations is the piece's symmetry class, 8 for an asymmetric piece.
+ */
+public final class PieceSet {
+
+    // The most pieces a set may hold, as shapes are kept in int bitmasks
+    public static final int MAX_PIECES = 32;
+
+    private static PieceSet standard;
+
+    private final char[] names;
+
+    // The state of every orientation of each piece, in the form of StepsGame.getExactState
+    private final String[][] states;
+
+    // The orientation each orientation looks like first, itself when distinct
+    private final int[][] canonical;
+
+    // The distinct orientations of each piece
+    private final int[][] distinct;
+
+    private PieceSet(char[] names, String[] faces) {
+        this.names = names;
+        states = new String[names.length][Placement.ORIENTATIONS];
+        canonical = new int[names.length][Placement.ORIENTATIONS];
+        distinct = new int[names.length][];
+        for (int piece = 0; piece < names.length; piece++) {
+            String flip = flip(faces[piece]);
+            int count = 0;
+            int[] orientations = new int[Placement.ORIENTATIONS];
+            for (int orientation = 0; orientation < Placement.ORIENTATIONS; orientation++) {
+                String state = StepsGame.getExactState(orientation < 4 ? faces[piece] : flip, orientation);
+                states[piece][orientation] = state;
+                canonical[piece][orientation] = orientation;
+                for (int earlier = 0; earlier < orientation; earlier++) {
+                    if (states[piece][earlier].equals(state)) {
+                        canonical[piece][orientation] = earlier;
+                        break;
+                    }
+                }
+                if (canonical[piece][orientation] == orientation)
+                    orientations[count++] = orientation;
+            }
+            distinct[piece] = Arrays.copyOf(orientations, count);
+        }
+    }
+
+    // The mirror image of a face, left to right, with its two layers swapped
+    private static String flip(String face) {
+        char[] flipped = new char[9];
+        for (int i = 0; i < 9; i++) {
+            char ring = face.charAt(i / 3 * 3 + 2 - i % 3);
+            flipped[i] = ring == '1' ? '2' : ring == '2' ? '1' : '0';
+        }
+        return new String(flipped);
+    }
+
+    /**
+     * Get the game's own pieces, loading them on first use.
+     *
+     * @throws IllegalStateException if they cannot be read, as no game can be played without them
+     */
+    public static synchronized PieceSet standard() {
+        if (standard == null) {
+            try (InputStream is = StepsGame.class.getResourceAsStream("gui/assets/pieces")) {
+                if (is == null)
+                    throw new IOException("No piece definitions");
+                standard = load(is);
+            } catch (IOException e) {
+                throw new IllegalStateException("Cannot load the pieces", e);
+            }
+        }
+        return standard;
+    }
+
+    /**
+     * Read a piece set from a stream.
+     *
+     * @throws IOException if the stream cannot be read or a piece definition is not well-formed
+     */
+    public static PieceSet load(InputStream is) throws IOException {
+        List<String> lines = new ArrayList<>();
+        BufferedReader br = new BufferedReader(new InputStreamReader(is));
+        String line;
+        while ((line = br.readLine()) != null)
+            lines.add(line);
+        return parse(lines);
+    }
+
+    /**
+     * Read a piece set from a file.
+     *
+     * @throws IOException if the file cannot be read or a piece definition is not well-formed
+     */
+    public static PieceSet open(Path path) throws IOException {
+        return parse(Files.readAllLines(path));
+    }
+
+    private static PieceSet parse(List<String> lines) throws IOException {
+        List<Character> names = new ArrayList<>();
+        List<String> faces = new ArrayList<>();
+        for (int n = 0; n < lines.size(); n++) {
+            String line = lines.get(n).trim();
+            if (line.isEmpty() || line.startsWith("#"))
+                continue;
+            String[] fields = line.split("\\s+");
+            String face = fields.length == 4 ? fields[1] + fields[2] + fields[3] : "";
+            if (fields[0].length() != 1 || !face.matches("[012]{9}") || face.equals("000000000"))
+                throw new IOException("Bad piece definition at line " + (n + 1) + ": " + line);
+            if (names.contains(fields[0].charAt(0)))
+                throw new IOException("Piece " + fields[0] + " defined twice at line " + (n + 1));
+            names.add(fields[0].charAt(0));
+            faces.add(face);
+        }
+        if (names.isEmpty() || names.size() > MAX_PIECES)
+            throw new IOException("Expected 1 to " + MAX_PIECES + " pieces, but got " + names.size());
+        char[] letters = new char[names.size()];
+        for (int i = 0; i < letters.length; i++)
+            letters[i] = names.get(i);
+        return new PieceSet(letters, faces.toArray(new String[0]));
+    }
+
+    /**
+     * Get the number of pieces in the set.
+     */
+    public int size() {
+        return names.length;
+    }
+
+    /**
+     * Get the letter of a piece.
+     */
+    public char name(int piece) {
+        return names[piece];
+    }
+
+    /**
+     * Get the rings of a piece in an orientation.
+     *
+     * @param piece       The index of the piece
+     * @param orientation The orientation, 0 .. 7
+     * @return Its state string, row by row around the home: 0 for no ring, 1 for a bottom ring, 2 for an upper ring
+     */
+    public String state(int piece, int orientation) {
+        return states[piece][orientation];
+    }
+
+    /**
+     * Get the first orientation in which a piece looks the same as in an orientation.
+     */
+    public int canonical(int piece, int orientation) {
+        return canonical[piece][orientation];
+    }
+
+    /**
+     * Get the distinct orientations of a piece, in ascending order.
+     */
+    public int[] orientations(int piece) {
+        return distinct[piece].clone();
+    }
+
+    /**
+     * Get the number of distinct orientations of a piece: 8, 4, 2 or 1.
+     */
+    public int symmetry(int piece) {
+        return distinct[piece].length;
+    }
+}
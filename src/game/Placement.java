@@ -0,0 +1,240 @@
+package game;
+
+import java.util.Arrays;
+
+/**
+ * Packed representation of piece placements.
+ * <p>
+ * A piece placement such as "BGS" is packed into a single short:
+ * (shape * 8 + orientation) * 50 + location
+ * <p>
+ * Every piece placement therefore has a dense code in the range 0 .. 3199,
+ * which the engine uses directly as an index into its lookup tables.  Codes
+ * sort in the same order as the corresponding placement strings.
+ * A placement sequence is a short[] of such codes, in the order they are played.
+ */
+public final class Placement {
+
+    public static final int SHAPES = 8;
+    public static final int ORIENTATIONS = 8;
+    public static final int LOCATIONS = 50;
+
+    // Number of distinct piece placements
+    public static final int COUNT = SHAPES * ORIENTATIONS * LOCATIONS;
+
+    // Used where a placement is expected but there is none
+    public static final short NONE = -1;
+
+    private Placement() {
+    }
+
+    /**
+     * Pack a piece placement.
+     *
+     * @param shape       The shape, 0 .. 7 for A .. H
+     * @param orientation The orientation, 0 .. 7 for A .. H
+     * @param location    The location, 0 .. 49 for A .. Y and a .. y
+     * @return The packed piece placement
+     */
+    public static short of(int shape, int orientation, int location) {
+        return (short) ((shape * ORIENTATIONS + orientation) * LOCATIONS + location);
+    }
+
+    public static int shape(short placement) {
+        return placement / (ORIENTATIONS * LOCATIONS);
+    }
+
+    public static int orientation(short placement) {
+        return placement / LOCATIONS % ORIENTATIONS;
+    }
+
+    public static int location(short placement) {
+        return placement % LOCATIONS;
+    }
+
+    /**
+     * Get the index of the shape and orientation of a placement (0 .. 63), as
+     * used by the piece images AA .. HH.
+     */
+    public static int pieceOrientation(short placement) {
+        return placement / LOCATIONS;
+    }
+
+    /**
+     * Convert a location character (A .. Y, a .. y) into a location index.
+     *
+     * @return The location index, or -1 if the character is not a location
+     */
+    public static int locationIndex(char location) {
+        if (location >= 'A' && location <= 'Y')
+            return location - 'A';
+        if (location >= 'a' && location <= 'y')
+            return location - 'a' + 25;
+        return -1;
+    }
+
+    public static char locationChar(int location) {
+        return (char) (location < 25 ? 'A' + location : 'a' + location - 25);
+    }
+
+    /**
+     * Determine whether a packed piece placement is within range.
+     */
+    public static boolean isWellFormed(short placement) {
+        return placement >= 0 && placement < COUNT;
+    }
+
+    /**
+     * Determine whether a packed placement sequence is well-formed:
+     * - it consists of 1 .. 8 piece placements
+     * - each piece placement is well-formed
+     * - no shape appears more than once
+     *
+     * @param placement A packed placement sequence
+     * @param length    The number of piece placements used from the array
+     * @return True if the sequence is well-formed
+     */
+    public static boolean isSequenceWellFormed(short[] placement, int length) {
+        if (placement == null || length < 1 || length > SHAPES || length > placement.length)
+            return false;
+        int appeared = 0;
+        for (int i = 0; i < length; i++) {
+            if (!isWellFormed(placement[i]))
+                return false;
+            int bit = 1 << shape(placement[i]);
+            if ((appeared & bit) != 0)
+                return false;
+            appeared |= bit;
+        }
+        return true;
+    }
+
+    /**
+     * Pack the three characters of a piece placement starting at a given offset.
+     *
+     * @param placement A placement string
+     * @param offset    Index of the first character of the piece placement
+     * @return The packed piece placement, or NONE if it is not well-formed
+     */
+    public static short parse(CharSequence placement, int offset) {
+        if (offset < 0 || offset + 3 > placement.length())
+            return NONE;
+        int shape = placement.charAt(offset) - 'A';
+        int orientation = placement.charAt(offset + 1) - 'A';
+        int location = locationIndex(placement.charAt(offset + 2));
+        if (shape < 0 || shape >= SHAPES || orientation < 0 || orientation >= ORIENTATIONS || location < 0)
+            return NONE;
+        return of(shape, orientation, location);
+    }
+
+    /**
+     * Pack a three-character piece placement string.
+     *
+     * @return The packed piece placement, or NONE if it is not well-formed
+     */
+    public static short parse(String piecePlacement) {
+        if (piecePlacement == null || piecePlacement.length() != 3)
+            return NONE;
+        return parse(piecePlacement, 0);
+    }
+
+    /**
+     * Pack a placement string into an existing array, so that hot callers do
+     * not need to allocate.
+     *
+     * @param placement   A placement string
+     * @param destination The array receiving the packed piece placements
+     * @return The number of piece placements written
+     * @throws IllegalArgumentException if the string is not a sequence of well-formed piece placements
+     */
+    public static int parseSequence(CharSequence placement, short[] destination) {
+        if (placement.length() % 3 != 0 || placement.length() / 3 > destination.length)
+            throw new IllegalArgumentException("Bad placement string: " + placement);
+        int length = placement.length() / 3;
+        for (int i = 0; i < length; i++) {
+            short piece = parse(placement, 3 * i);
+            if (piece == NONE)
+                throw new IllegalArgumentException("Bad piece placement in: " + placement);
+            destination[i] = piece;
+        }
+        return length;
+    }
+
+    /**
+     * Pack a placement string.
+     *
+     * @param placement A placement string
+     * @return The packed placement sequence
+     * @throws IllegalArgumentException if the string is not a sequence of well-formed piece placements
+     */
+    public static short[] parseSequence(CharSequence placement) {
+        short[] sequence = new short[placement.length() / 3];
+        parseSequence(placement, sequence);
+        return sequence;
+    }
+
+    /**
+     * Append a piece placement to a packed sequence.
+     *
+     * @return A new array holding the sequence followed by the piece placement
+     */
+    public static short[] append(short[] placement, short piece) {
+        short[] sequence = new short[placement.length + 1];
+        System.arraycopy(placement, 0, sequence, 0, placement.length);
+        sequence[placement.length] = piece;
+        return sequence;
+    }
+
+    /**
+     * Find the piece placement of a given shape in a packed sequence.
+     *
+     * @return Its index in the sequence, or -1 if the shape has not been placed
+     */
+    public static int indexOfShape(short[] placement, int length, int shape) {
+        for (int i = 0; i < length; i++)
+            if (shape(placement[i]) == shape)
+                return i;
+        return -1;
+    }
+
+    /**
+     * Key a position by its piece placements in ascending order, one char each, as positions with
+     * the same pieces on the board can be finished in the same ways whatever order they were played in.
+     */
+    static String positionKey(short[] placement, int length) {
+        char[] pieces = new char[length];
+        for (int i = 0; i < length; i++)
+            pieces[i] = (char) placement[i];
+        Arrays.sort(pieces);
+        return new String(pieces);
+    }
+
+    public static void appendTo(StringBuilder sb, short placement) {
+        sb.append((char) ('A' + shape(placement)))
+                .append((char) ('A' + orientation(placement)))
+                .append(locationChar(location(placement)));
+    }
+
+    /**
+     * Convert a packed piece placement back into its three-character string.
+     */
+    public static String toString(short placement) {
+        StringBuilder sb = new StringBuilder(3);
+        appendTo(sb, placement);
+        return sb.toString();
+    }
+
+    public static String toString(short[] placement) {
+        return toString(placement, placement.length);
+    }
+
+    /**
+     * Convert the first length piece placements of a packed sequence back into a placement string.
+     */
+    public static String toString(short[] placement, int length) {
+        StringBuilder sb = new StringBuilder(3 * length);
+        for (int i = 0; i < length; i++)
+            appendTo(sb, placement[i]);
+        return sb.toString();
+    }
+}
@@ -0,0 +1,40 @@
+package game;
+
+/**
+ * Masks of the locations used by every packed piece placement (see Placement), indexed by its code.
+ * Bit n stands for location n.
+ * <p>
+ * The masks are taken from the standard board (see BoardGeometry), which compiles them by playing
+ * each piece placement onto an empty board, so validating a sequence only needs a few bitwise
+ * operations per piece.  A piece can follow the pieces already played when:
+ * - it is placeable at all;
+ * - its bottom rings avoid the bottom rings, upper rings and obstructed pegs of the pieces played;
+ * - its upper rings avoid the upper rings of the pieces played.
+ */
+final class PlacementMasks {
+
+    // Fits onto an empty board
+    static final boolean[] PLACEABLE = new boolean[Placement.COUNT];
+
+    // Locations of the bottom rings
+    static final long[] BOTTOM = new long[Placement.COUNT];
+
+    // Locations of the upper rings
+    static final long[] UPPER = new long[Placement.COUNT];
+
+    // Vacant pegs obstructed by the upper rings
+    static final long[] OBSTRUCTED = new long[Placement.COUNT];
+
+    static {
+        BoardGeometry board = BoardGeometry.STANDARD;
+        for (int code = 0; code < Placement.COUNT; code++) {
+            PLACEABLE[code] = board.isPlaceable(code);
+            BOTTOM[code] = board.bottom(code, 0);
+            UPPER[code] = board.upper(code, 0);
+            OBSTRUCTED[code] = board.obstructed(code, 0);
+        }
+    }
+
+    private PlacementMasks() {
+    }
+}
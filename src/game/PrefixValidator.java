@@ -0,0 +1,212 @@
+package game;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.List;
+
+/**
+ * Validates placement sequences which share prefixes, as StepsGame.isPlacementSequenceValid would one
+ * at a time, without checking a prefix again for the sequence after it.
+ * <p>
+ * The sequences are walked in order, keeping the board masks of the prefix each one shares with the
+ * next, so that the next only checks its own pieces after it, and is invalid without checking anything
+ * if it shares the piece which made the last one invalid.  When the sequences sharing a prefix are
+ * adjacent, as in permutations generated depth first or sorted files, each distinct prefix is checked
+ * once.  Comparing sequences costs about as much as checking the pieces it saves when they share less
+ * than half of their pieces, as unrelated sequences and lists of solutions do, so such runs of
+ * sequences are validated one at a time, sampling them now and then to walk them again once they share
+ * more.  Each piece is checked to be well formed before it is played, so a sequence which is not is
+ * invalid, however it is packed.
+ * <p>
+ * A validator counts the pieces it has checked, and is not safe for use by several threads at once.
+ */
+public final class PrefixValidator {
+
+    // Sequences are taken in blocks, the first walked sharing prefixes, and each after it walked if the one
+    // before shared at least half of its pieces with the sequences next to them, judging a block validated
+    // one at a time by its first sequences
+    private static final int BLOCK = 4096;
+    private static final int SAMPLE = 64;
+
+    // The shapes and masks of each prefix of the last sequence walked, by length, the empty board first,
+    // as far as it shares them with the next sequence
+    private final int[] shapes = new int[Placement.SHAPES + 1];
+    private final long[] bottom = new long[Placement.SHAPES + 1];
+    private final long[] upper = new long[Placement.SHAPES + 1];
+    private final long[] obstructed = new long[Placement.SHAPES + 1];
+
+    // The number of pieces of the last sequence walked which could be played, and the prefix it shares
+    // with the next sequence, 0 if it was validated on its own
+    private int played;
+    private int shared;
+
+    private long checks;
+
+    /**
+     * Validate packed placement sequences.
+     *
+     * @param placements The sequences, any of which may be null or not well formed
+     * @return The indices of the valid sequences
+     */
+    public BitSet validate(short[][] placements) {
+        long[] words = new long[(placements.length + 63) / 64];
+        played = shared = 0;
+        boolean walking = true;
+        for (int from = 0; from < placements.length; from += BLOCK) {
+            int to = Math.min(from + BLOCK, placements.length);
+            walking = walking ? walk(placements, from, to, words) : validateEach(placements, from, to, words);
+        }
+        return BitSet.valueOf(words);
+    }
+
+    // Walk a block sharing prefixes, and tell whether it shared enough to walk the next one
+    private boolean walk(short[][] placements, int from, int to, long[] words) {
+        long pieces = 0, kept = 0;
+        for (int i = next(placements, from); i < to; ) {
+            short[] sequence = placements[i];
+            int j = next(placements, i + 1);
+            int keep = j < placements.length ? shared(sequence, placements[j]) : 0;
+            int depth = Math.min(shared, played + 1);
+            // Unless it has the piece which the last sequence could not play, after the same prefix
+            if (depth <= played)
+                played = play(sequence, depth, keep);
+            if (played == sequence.length)
+                words[i >>> 6] |= 1L << i;
+            shared = keep;
+            pieces += sequence.length;
+            kept += keep;
+            i = j;
+        }
+        return kept * 2 >= pieces;
+    }
+
+    // Validate a block one sequence at a time, and tell whether its first sequences share enough to walk the next
+    private boolean validateEach(short[][] placements, int from, int to, long[] words) {
+        long pieces = 0, kept = 0;
+        for (int i = next(placements, from); i < to; ) {
+            short[] sequence = placements[i];
+            int j = next(placements, i + 1);
+            int length = playable(sequence);
+            checks += length < sequence.length ? length + 1 : length;
+            if (length == sequence.length)
+                words[i >>> 6] |= 1L << i;
+            if (i < from + SAMPLE && j < placements.length) {
+                pieces += sequence.length;
+                kept += shared(sequence, placements[j]);
+            }
+            i = j;
+        }
+        // The next block starts from the empty board
+        shared = 0;
+        return kept * 2 >= pieces;
+    }
+
+    // The first sequence from an index which can be walked: one to eight pieces long
+    private static int next(short[][] placements, int i) {
+        while (i < placements.length && (placements[i] == null || placements[i].length == 0 || placements[i].length > Placement.SHAPES))
+            i++;
+        return i;
+    }
+
+    // The length of the prefix two sequences share
+    private static int shared(short[] sequence, short[] next) {
+        int length = Math.min(sequence.length, next.length);
+        int depth = Arrays.mismatch(sequence, 0, length, next, 0, length);
+        return depth < 0 ? length : depth;
+    }
+
+    // Play the pieces of a sequence after a valid prefix, keeping the masks of its prefixes up to a length,
+    // and give the number which could be played.  Each piece is checked as Placement.isSequenceWellFormed
+    // would before its masks are read
+    private int play(short[] sequence, int depth, int keep) {
+        int s = shapes[depth];
+        long b = bottom[depth], u = upper[depth], o = obstructed[depth];
+        int from = depth;
+        for (; depth < sequence.length; depth++) {
+            short piece = sequence[depth];
+            if (!Placement.isWellFormed(piece))
+                break;
+            int shape = 1 << Placement.shape(piece);
+            if ((s & shape) != 0 || !StepsGame.canFollow(piece, b, u, o))
+                break;
+            s |= shape;
+            b |= PlacementMasks.BOTTOM[piece];
+            u |= PlacementMasks.UPPER[piece];
+            o |= PlacementMasks.OBSTRUCTED[piece];
+            if (depth < keep) {
+                shapes[depth + 1] = s;
+                bottom[depth + 1] = b;
+                upper[depth + 1] = u;
+                obstructed[depth + 1] = o;
+            }
+        }
+        // Every piece played, and the one which could not be
+        checks += depth < sequence.length ? depth - from + 1 : depth - from;
+        return depth;
+    }
+
+    // The number of pieces of a sequence which can be played in turn from the empty board, as play() counts
+    // them without keeping any masks
+    private static int playable(short[] sequence) {
+        int shapes = 0;
+        long bottom = 0, upper = 0, obstructed = 0;
+        int depth = 0;
+        for (; depth < sequence.length; depth++) {
+            short piece = sequence[depth];
+            if (!Placement.isWellFormed(piece))
+                break;
+            int shape = 1 << Placement.shape(piece);
+            if ((shapes & shape) != 0 || !StepsGame.canFollow(piece, bottom, upper, obstructed))
+                break;
+            shapes |= shape;
+            bottom |= PlacementMasks.BOTTOM[piece];
+            upper |= PlacementMasks.UPPER[piece];
+            obstructed |= PlacementMasks.OBSTRUCTED[piece];
+        }
+        return depth;
+    }
+
+    /**
+     * Validate placement strings.
+     *
+     * @return The indices of the valid placements
+     */
+    public BitSet validate(List<String> placements) {
+        short[][] packed = new short[placements.size()][];
+        for (int i = 0; i < packed.length; i++)
+            packed[i] = parse(placements.get(i));
+        return validate(packed);
+    }
+
+    /**
+     * Validate a file of placement strings, one per line.
+     *
+     * @return The indices of the valid placements, by line number from 0
+     * @throws IOException if the file cannot be read
+     */
+    public BitSet validate(Path file) throws IOException {
+        return validate(Files.readAllLines(file));
+    }
+
+    /**
+     * Get the number of pieces checked so far: each piece played onto the board of the pieces before
+     * it, up to the first which could not be played.
+     */
+    public long getChecks() {
+        return checks;
+    }
+
+    // Placement.parseSequence, giving null for a placement which is not well formed
+    private static short[] parse(String placement) {
+        if (placement == null || placement.length() % 3 != 0)
+            return null;
+        short[] packed = new short[placement.length() / 3];
+        for (int i = 0; i < packed.length; i++)
+            if ((packed[i] = Placement.parse(placement, 3 * i)) == Placement.NONE)
+                return null;
+        return packed;
+    }
+}
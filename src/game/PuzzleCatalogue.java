@@ -0,0 +1,221 @@
+package game;
+
+import java.io.BufferedReader;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * An indexed catalogue of puzzles, rated by difficulty (assets/starting.cat).
+ * <p>
+ * The file starts with a header:
+ * - int   magic         "IQSC"
+ * - short version
+ * - short difficulties  the number of difficulty levels, n
+ * - int[n + 1] offsets  the index of the first puzzle of each level, then the number of puzzles
+ * followed by a fixed 16-byte record for each puzzle, ordered by difficulty: its packed starting
+ * placement as eight shorts, padded with Placement.NONE.  Any puzzle is therefore read directly
+ * from its index, however large the catalogue is.
+ * <p>
+ * The catalogue is generated from a text file of starting placements with main().
+ */
+public final class PuzzleCatalogue {
+
+    public static final int RECORD_BYTES = 16;
+
+    private static final int MAGIC = 0x49515343; // "IQSC"
+    private static final short VERSION = 1;
+
+    private static PuzzleCatalogue standard;
+
+    private final ByteBuffer buffer;
+    private final int[] offsets;
+    private final int firstRecord;
+
+    private PuzzleCatalogue(ByteBuffer buffer) throws IOException {
+        this.buffer = buffer;
+        if (buffer.limit() < 8 || buffer.getInt(0) != MAGIC || buffer.getShort(4) != VERSION)
+            throw new IOException("Not a puzzle catalogue");
+        int difficulties = buffer.getShort(6);
+        firstRecord = 8 + 4 * (difficulties + 1);
+        if (difficulties < 0 || buffer.limit() < firstRecord)
+            throw new IOException("Bad puzzle catalogue header");
+        offsets = new int[difficulties + 1];
+        for (int i = 0; i <= difficulties; i++) {
+            offsets[i] = buffer.getInt(8 + 4 * i);
+            if (offsets[i] < (i == 0 ? 0 : offsets[i - 1]))
+                throw new IOException("Bad puzzle catalogue header");
+        }
+        if (buffer.limit() < firstRecord + (long) RECORD_BYTES * offsets[difficulties])
+            throw new IOException("Puzzle catalogue too short");
+    }
+
+    /**
+     * Get the catalogue of puzzles shipped with the game, loading it on first use.
+     */
+    public static synchronized PuzzleCatalogue standard() {
+        if (standard == null) {
+            try (InputStream is = StepsGame.class.getResourceAsStream("gui/assets/starting.cat")) {
+                standard = load(is);
+            } catch (IOException e) {
+                e.printStackTrace();
+                ByteBuffer empty = ByteBuffer.allocate(12).putInt(MAGIC).putShort(VERSION).putShort((short) 0).putInt(0);
+                try {
+                    standard = new PuzzleCatalogue(empty);
+                } catch (IOException impossible) {
+                    throw new IllegalStateException(impossible);
+                }
+            }
+        }
+        return standard;
+    }
+
+    /**
+     * Read a catalogue from a stream into memory.
+     *
+     * @throws IOException if the stream cannot be read or is not a catalogue
+     */
+    public static PuzzleCatalogue load(InputStream is) throws IOException {
+        if (is == null)
+            throw new IOException("No puzzle catalogue");
+        return new PuzzleCatalogue(ByteBuffer.wrap(is.readAllBytes()));
+    }
+
+    /**
+     * Map a catalogue file into memory, so that only the puzzles used are read.
+     *
+     * @throws IOException if the file cannot be read or is not a catalogue
+     */
+    public static PuzzleCatalogue open(Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            return new PuzzleCatalogue(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+        }
+    }
+
+    /**
+     * Get the number of difficulty levels.
+     */
+    public int difficulties() {
+        return offsets.length - 1;
+    }
+
+    /**
+     * Get the number of puzzles in the catalogue.
+     */
+    public int size() {
+        return offsets[offsets.length - 1];
+    }
+
+    /**
+     * Get the number of puzzles of a difficulty level.
+     */
+    public int count(int difficulty) {
+        checkDifficulty(difficulty);
+        return offsets[difficulty + 1] - offsets[difficulty];
+    }
+
+    /**
+     * Get the starting placement of a puzzle.
+     *
+     * @param difficulty The difficulty level
+     * @param index      The index of the puzzle within the level
+     * @return The packed starting placement
+     */
+    public short[] get(int difficulty, int index) {
+        if (index < 0 || index >= count(difficulty))
+            throw new IndexOutOfBoundsException("Puzzle " + index + " of " + count(difficulty));
+        int offset = firstRecord + RECORD_BYTES * (offsets[difficulty] + index);
+        short[] placement = new short[Placement.SHAPES];
+        int length = 0;
+        while (length < Placement.SHAPES && (placement[length] = buffer.getShort(offset + 2 * length)) != Placement.NONE)
+            length++;
+        return Arrays.copyOf(placement, length);
+    }
+
+    /**
+     * Choose a puzzle of a difficulty level at random.
+     *
+     * @return Its starting placement string, or null if the level has no puzzles
+     */
+    public String random(int difficulty, Random random) {
+        int count = count(difficulty);
+        return count == 0 ? null : Placement.toString(get(difficulty, random.nextInt(count)));
+    }
+
+    private void checkDifficulty(int difficulty) {
+        if (difficulty < 0 || difficulty >= difficulties())
+            throw new IllegalArgumentException("Bad difficulty: " + difficulty);
+    }
+
+    /**
+     * Write a catalogue.
+     *
+     * @param puzzles The starting placement strings of each difficulty level
+     * @param out     The stream to write to
+     * @throws IOException              if the stream cannot be written
+     * @throws IllegalArgumentException if a starting placement is not well-formed
+     */
+    public static void write(List<? extends List<String>> puzzles, OutputStream out) throws IOException {
+        DataOutputStream data = new DataOutputStream(out);
+        data.writeInt(MAGIC);
+        data.writeShort(VERSION);
+        data.writeShort(puzzles.size());
+        int offset = 0;
+        data.writeInt(offset);
+        for (List<String> level : puzzles) {
+            offset += level.size();
+            data.writeInt(offset);
+        }
+        short[] placement = new short[Placement.SHAPES];
+        for (List<String> level : puzzles) {
+            for (String starting : level) {
+                if (!StepsGame.isPlacementWellFormed(starting))
+                    throw new IllegalArgumentException("Bad starting placement: " + starting);
+                int length = Placement.parseSequence(starting, placement);
+                for (int i = 0; i < Placement.SHAPES; i++)
+                    data.writeShort(i < length ? placement[i] : Placement.NONE);
+            }
+        }
+        data.flush();
+    }
+
+    /**
+     * Generate a catalogue from a text file of starting placements, one per line,
+     * listed by difficulty in bands of equal size.
+     * <p>
+     * Usage: PuzzleCatalogue starting catalogue [band]
+     */
+    public static void main(String[] args) throws IOException {
+        if (args.length < 2) {
+            System.out.println("Usage: PuzzleCatalogue starting catalogue [band]");
+            return;
+        }
+        int band = args.length > 2 ? Integer.parseInt(args[2]) : 24;
+        List<List<String>> puzzles = new ArrayList<>();
+        try (BufferedReader br = Files.newBufferedReader(Paths.get(args[0]))) {
+            String line;
+            while ((line = br.readLine()) != null) {
+                if (line.isEmpty())
+                    continue;
+                if (puzzles.isEmpty() || puzzles.get(puzzles.size() - 1).size() == band)
+                    puzzles.add(new ArrayList<>());
+                puzzles.get(puzzles.size() - 1).add(line);
+            }
+        }
+        try (OutputStream out = Files.newOutputStream(Paths.get(args[1]))) {
+            write(puzzles, out);
+        }
+        System.out.println(puzzles.size() + " difficulty levels, " + puzzles.stream().mapToInt(List::size).sum() + " puzzles");
+    }
+}
@@ -0,0 +1,149 @@
+package game;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A limit on a search, so that interactive callers get an answer in bounded time even from a
+ * position which takes long to search: a number of nodes, a deadline, or both, and a flag which
+ * another thread may set to cancel the search.
+ * <p>
+ * A search spends a node of its budget at each state it visits, and stops as soon as the budget is
+ * refused, returning what it has found so far.  Its result is complete unless the budget is then
+ * exhausted, so the budget is also the completeness flag of the result:
+ * - solutions and viable piece placements found are all correct, but there may be more;
+ * - a search for one solution which found none has not shown that there is none.
+ * A budget may be shared by several queries in turn, which then share its nodes and deadline, but not
+ * by two at once.  The time is read every few nodes, so a search may run a little past the deadline.
+ * <p>
+ * How often budgets run out is counted across all of them, by cause (see getExhausted).
+ */
+public final class SearchBudget {
+
+    // Nodes between reading the clock
+    private static final int CLOCK_INTERVAL = 256;
+
+    private static final AtomicLong created = new AtomicLong();
+    private static final AtomicLong outOfNodes = new AtomicLong();
+    private static final AtomicLong outOfTime = new AtomicLong();
+    private static final AtomicLong cancelledCount = new AtomicLong();
+
+    private final long maxNodes;
+    private final long deadline;
+    private long nodes;
+    private volatile boolean cancelled;
+    private volatile boolean exhausted;
+
+    /**
+     * @param maxNodes The most nodes to visit, or Long.MAX_VALUE for no limit
+     * @param millis   The milliseconds from now until the deadline, or Long.MAX_VALUE for no deadline
+     * @throws IllegalArgumentException if either is negative
+     */
+    public SearchBudget(long maxNodes, long millis) {
+        if (maxNodes < 0 || millis < 0)
+            throw new IllegalArgumentException("Bad budget: " + maxNodes + " nodes, " + millis + " ms");
+        this.maxNodes = maxNodes;
+        // A deadline further away than the clock can count is none
+        long nanos = TimeUnit.MILLISECONDS.toNanos(millis), now = System.nanoTime();
+        deadline = now > 0 && nanos >= Long.MAX_VALUE - now ? Long.MAX_VALUE : now + nanos;
+        created.incrementAndGet();
+    }
+
+    /**
+     * Create a budget of a number of nodes, with no deadline.
+     */
+    public static SearchBudget ofNodes(long maxNodes) {
+        return new SearchBudget(maxNodes, Long.MAX_VALUE);
+    }
+
+    /**
+     * Create a budget of a number of milliseconds from now, with no limit on nodes.
+     */
+    public static SearchBudget ofMillis(long millis) {
+        return new SearchBudget(Long.MAX_VALUE, millis);
+    }
+
+    /**
+     * Spend a node, unless the budget is exhausted.
+     *
+     * @return True if the search may visit the node, false if it has to stop
+     */
+    boolean spend() {
+        if (exhausted)
+            return false;
+        if (cancelled)
+            return exhaust(cancelledCount);
+        if (nodes >= maxNodes)
+            return exhaust(outOfNodes);
+        if (deadline != Long.MAX_VALUE && nodes % CLOCK_INTERVAL == 0 && System.nanoTime() - deadline >= 0)
+            return exhaust(outOfTime);
+        nodes++;
+        return true;
+    }
+
+    private boolean exhaust(AtomicLong cause) {
+        exhausted = true;
+        cause.incrementAndGet();
+        return false;
+    }
+
+    /**
+     * Ask the search using the budget to stop at its next node.  May be called from any thread.
+     */
+    public void cancel() {
+        cancelled = true;
+    }
+
+    public boolean isCancelled() {
+        return cancelled;
+    }
+
+    /**
+     * Determine whether a search was stopped by the budget, so that its result may be partial.
+     */
+    public boolean isExhausted() {
+        return exhausted;
+    }
+
+    /**
+     * Get the number of nodes spent.
+     */
+    public long getNodes() {
+        return nodes;
+    }
+
+    /**
+     * Get the number of budgets created.
+     */
+    public static long getCreated() {
+        return created.get();
+    }
+
+    /**
+     * Get the number of budgets which stopped a search, of any cause.
+     */
+    public static long getExhausted() {
+        return outOfNodes.get() + outOfTime.get() + cancelledCount.get();
+    }
+
+    /**
+     * Get the number of budgets which ran out of nodes.
+     */
+    public static long getOutOfNodes() {
+        return outOfNodes.get();
+    }
+
+    /**
+     * Get the number of budgets which passed their deadline.
+     */
+    public static long getOutOfTime() {
+        return outOfTime.get();
+    }
+
+    /**
+     * Get the number of budgets which stopped a search as they were cancelled.
+     */
+    public static long getCancelled() {
+        return cancelledCount.get();
+    }
+}
@@ -0,0 +1,142 @@
+package game;
+
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.function.Supplier;
+
+/**
+ * Coalesces requests for values which take a while to compute, such as hints asked for again and
+ * again while the hint key is held.
+ * <p>
+ * Requests are keyed by everything the value depends on.  A request for the key being computed
+ * shares that computation, and one for the key last computed shares its value, so repeating a request
+ * costs nothing.  At most one computation runs at a time, and at most one waits to run after it: a
+ * request for another key takes the place of the one waiting, whose future is cancelled, so requests
+ * made faster than values are computed never queue up.  A computation which throws is not remembered.
+ * <p>
+ * Requests may come from any thread; the futures complete on the thread of the executor.
+ *
+ * @param <K> The key of a value, with equals and hashCode
+ * @param <V> The value
+ */
+public final class SingleFlight<K, V> {
+
+    private final Executor executor;
+
+    // The computation running, if any
+    private K runningKey;
+    private CompletableFuture<V> running;
+
+    // The computation waiting to run after it, if any
+    private K waitingKey;
+    private Supplier<V> waitingComputation;
+    private CompletableFuture<V> waiting;
+
+    // The value last computed
+    private K lastKey;
+    private CompletableFuture<V> last;
+
+    private long requests;
+    private long computations;
+    private long superseded;
+
+    /**
+     * @param executor The executor to compute values on
+     */
+    public SingleFlight(Executor executor) {
+        this.executor = Objects.requireNonNull(executor);
+    }
+
+    /**
+     * Request the value of a key, computing it unless it is being or was last computed.
+     *
+     * @param key         The key of the value
+     * @param computation Computes the value, if it has to be
+     * @return The value once computed, shared by all requests for the key meanwhile; cancelled if
+     * another key is requested before its computation starts
+     */
+    public synchronized CompletableFuture<V> request(K key, Supplier<V> computation) {
+        requests++;
+        if (last != null && lastKey.equals(key))
+            return last;
+        if (running != null && runningKey.equals(key))
+            return running;
+        if (running == null) {
+            CompletableFuture<V> future = new CompletableFuture<>();
+            start(key, computation, future);
+            return future;
+        }
+        if (waiting != null) {
+            if (waitingKey.equals(key))
+                return waiting;
+            superseded++;
+            waiting.cancel(false);
+        }
+        waitingKey = key;
+        waitingComputation = computation;
+        waiting = new CompletableFuture<>();
+        return waiting;
+    }
+
+    private void start(K key, Supplier<V> computation, CompletableFuture<V> future) {
+        computations++;
+        runningKey = key;
+        running = future;
+        executor.execute(() -> {
+            V value = null;
+            Throwable error = null;
+            try {
+                value = computation.get();
+            } catch (Throwable e) {
+                error = e;
+            }
+            finish(key, future, error);
+            // Completed outside the lock, as the callers' stages may run here
+            if (error == null)
+                future.complete(value);
+            else
+                future.completeExceptionally(error);
+        });
+    }
+
+    // Remember the value just computed, and start the computation waiting
+    private synchronized void finish(K key, CompletableFuture<V> future, Throwable error) {
+        running = null;
+        runningKey = null;
+        if (error == null) {
+            lastKey = key;
+            last = future;
+        }
+        if (waiting != null) {
+            CompletableFuture<V> next = waiting;
+            K nextKey = waitingKey;
+            Supplier<V> nextComputation = waitingComputation;
+            waiting = null;
+            waitingKey = null;
+            waitingComputation = null;
+            start(nextKey, nextComputation, next);
+        }
+    }
+
+    /**
+     * Get the number of requests made.
+     */
+    public synchronized long getRequests() {
+        return requests;
+    }
+
+    /**
+     * Get the number of computations started, at most one for each request.
+     */
+    public synchronized long getComputations() {
+        return computations;
+    }
+
+    /**
+     * Get the number of waiting requests cancelled by a request for another key.
+     */
+    public synchronized long getSuperseded() {
+        return superseded;
+    }
+}
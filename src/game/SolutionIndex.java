@@ -0,0 +1,130 @@
+package game;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Stream;
+
+/**
+ * An index of the placement sequences of the game's solutions (assets/solutions).
+ * <p>
+ * The sequences are held packed and sorted, so all solutions starting with a given
+ * placement are found by binary search and streamed lazily from that range.  The streams
+ * split evenly when run in parallel, and callers taking the first few solutions only pay
+ * for the ones they consume.
+ */
+public final class SolutionIndex {
+
+    private static SolutionIndex standard;
+
+    // Packed placement sequences, in ascending order
+    private final short[][] sequences;
+
+    private SolutionIndex(short[][] sequences) {
+        this.sequences = sequences;
+    }
+
+    /**
+     * Get the index of the solutions shipped with the game, loading it on first use.
+     */
+    public static synchronized SolutionIndex standard() {
+        if (standard == null) {
+            try (InputStream is = StepsGame.class.getResourceAsStream("gui/assets/solutions")) {
+                if (is == null)
+                    throw new IOException("No solution index");
+                standard = load(is);
+            } catch (IOException e) {
+                e.printStackTrace();
+                standard = new SolutionIndex(new short[0][]);
+            }
+        }
+        return standard;
+    }
+
+    /**
+     * Build an index from one placement string per line.  Blank lines are skipped.
+     *
+     * @param is The stream to read from
+     * @return The index
+     * @throws IOException              if the stream cannot be read
+     * @throws IllegalArgumentException if a line is not a well-formed placement
+     */
+    public static SolutionIndex load(InputStream is) throws IOException {
+        List<short[]> list = new ArrayList<>();
+        BufferedReader br = new BufferedReader(new InputStreamReader(is));
+        String line;
+        while ((line = br.readLine()) != null) {
+            if (!line.isEmpty())
+                list.add(Placement.parseSequence(line));
+        }
+        short[][] sequences = list.toArray(new short[0][]);
+        Arrays.sort(sequences, Arrays::compare);
+        return new SolutionIndex(sequences);
+    }
+
+    public int size() {
+        return sequences.length;
+    }
+
+    /**
+     * Count the solutions starting with a placement, without visiting them.
+     *
+     * @param placement A packed placement sequence
+     * @param length    The number of piece placements used from the array
+     * @return The number of solutions starting with the placement
+     */
+    public int count(short[] placement, int length) {
+        return upperBound(placement, length) - lowerBound(placement, length);
+    }
+
+    /**
+     * Stream the solutions starting with a placement.  Each element is a fresh copy
+     * of a packed placement sequence, created as the stream is consumed.
+     *
+     * @param placement A packed placement sequence
+     * @param length    The number of piece placements used from the array
+     * @return A lazy, splittable stream of the solutions in ascending order
+     */
+    public Stream<short[]> solutions(short[] placement, int length) {
+        return Arrays.stream(sequences, lowerBound(placement, length), upperBound(placement, length)).map(short[]::clone);
+    }
+
+    // Index of the first sequence not sorting before the placement
+    private int lowerBound(short[] placement, int length) {
+        int low = 0, high = sequences.length;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (comparePrefix(sequences[mid], placement, length) < 0)
+                low = mid + 1;
+            else
+                high = mid;
+        }
+        return low;
+    }
+
+    // Index of the first sequence sorting after every sequence starting with the placement
+    private int upperBound(short[] placement, int length) {
+        int low = 0, high = sequences.length;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (comparePrefix(sequences[mid], placement, length) <= 0)
+                low = mid + 1;
+            else
+                high = mid;
+        }
+        return low;
+    }
+
+    // Compare the start of a sequence with a placement, 0 if the sequence starts with it
+    private static int comparePrefix(short[] sequence, short[] placement, int length) {
+        int common = Math.min(sequence.length, length);
+        for (int i = 0; i < common; i++)
+            if (sequence[i] != placement[i])
+                return Short.compare(sequence[i], placement[i]);
+        return sequence.length < length ? -1 : 0;
+    }
+}
@@ -0,0 +1,120 @@
+package game;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+
+/**
+ * Remembers which positions can still be finished, so that checking the position after every move
+ * only searches the board (see Solver, with pruning) the first time the position is reached.
+ * <p>
+ * Whether a position can be finished depends on the pieces on the board, not on the order they were
+ * played in, so positions are keyed by their placements in ascending order.  The most recently used
+ * positions are kept, up to the capacity.  A cache may be shared by any number of threads.
+ * <p>
+ * A search may be given a budget (see SearchBudget).  Only answers it settles are remembered: a
+ * search stopped by its budget before finding a solution is tried again the next time.
+ */
+public final class SolvabilityCache {
+
+    private final Map<String, Boolean> known;
+    private long hits;
+    private long misses;
+
+    /**
+     * @param capacity The number of positions to remember
+     * @throws IllegalArgumentException if capacity is not positive
+     */
+    public SolvabilityCache(int capacity) {
+        if (capacity < 1)
+            throw new IllegalArgumentException("Bad capacity: " + capacity);
+        known = new LinkedHashMap<String, Boolean>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Boolean> eldest) {
+                return size() > capacity;
+            }
+        };
+    }
+
+    /**
+     * Determine whether a placement can still be finished.
+     *
+     * @param placement A packed placement sequence
+     * @param length    The number of piece placements used from the array
+     * @return True if the placement is valid and some solution starts with its pieces
+     */
+    public boolean isSolvable(short[] placement, int length) {
+        return isSolvable(placement, length, null);
+    }
+
+    /**
+     * Determine whether a placement can still be finished, stopping when the budget is exhausted.
+     *
+     * @param budget The budget of the search, or null for none
+     * @return True if the placement is valid and some solution starts with its pieces; false if not,
+     * or if the budget is exhausted before a solution is found
+     */
+    public boolean isSolvable(short[] placement, int length, SearchBudget budget) {
+        if (length > 0 && !StepsGame.isPlacementSequenceValid(placement, length))
+            return false;
+        String key = Placement.positionKey(placement, length);
+        synchronized (this) {
+            Boolean solvable = known.get(key);
+            if (solvable != null) {
+                hits++;
+                return solvable;
+            }
+            misses++;
+        }
+        // Searched outside the lock, so that other positions are answered meanwhile
+        boolean solvable = new Solver(true).isSolvable(placement, length, budget);
+        if (solvable || budget == null || !budget.isExhausted()) {
+            synchronized (this) {
+                known.put(key, solvable);
+            }
+        }
+        return solvable;
+    }
+
+    /**
+     * Determine in the background whether a placement can still be finished.
+     *
+     * @param placement A packed placement sequence, copied before this returns
+     * @param executor  The executor to search on
+     * @return The answer of isSolvable, once known
+     */
+    public CompletableFuture<Boolean> isSolvableAsync(short[] placement, Executor executor) {
+        return isSolvableAsync(placement, executor, null);
+    }
+
+    /**
+     * Determine in the background whether a placement can still be finished, stopping when the
+     * budget is exhausted.  Cancelling the budget stops the search, if it has started.
+     *
+     * @param budget The budget of the search, or null for none
+     * @return The answer of isSolvable with the budget, once known
+     */
+    public CompletableFuture<Boolean> isSolvableAsync(short[] placement, Executor executor, SearchBudget budget) {
+        short[] copy = placement.clone();
+        return CompletableFuture.supplyAsync(() -> isSolvable(copy, copy.length, budget), executor);
+    }
+
+    public synchronized int size() {
+        return known.size();
+    }
+
+    /**
+     * Get the number of positions answered from the cache.
+     */
+    public synchronized long getHits() {
+        return hits;
+    }
+
+    /**
+     * Get the number of positions searched.
+     */
+    public synchronized long getMisses() {
+        return misses;
+    }
+}
@@ -0,0 +1,477 @@
+package game;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * A backtracking solver working directly on the placement masks (see PlacementMasks), for
+ * positions the solution index does not cover.
+ * <p>
+ * The pieces still to be placed are chosen by geometry alone: their bottom rings go onto pegs and
+ * their upper rings over holes (see StepsGame.isPlacementSequenceValid), so a piece can join the
+ * board when its rings avoid the rings of the pieces chosen so far and the pegs obstructed by the
+ * pieces already played.  Once all eight pieces are chosen they are put into an order in which
+ * each can be played, a piece going first when one of its bottom rings is on a peg another would
+ * obstruct, and they make a solution when there is such an order.  The pieces already played are
+ * taken as they are.
+ * <p>
+ * With pruning, a state is abandoned as soon as it cannot be finished:
+ * - a remaining piece has no placement left on the board;
+ * - more empty pegs can no longer be reached by a bottom ring of any remaining piece than the
+ *   remaining pieces must leave empty, or the same for holes and upper rings;
+ * - together, the unreachable pegs and holes outnumber those left empty at the end.
+ * A region of the board too small or too misshapen to take any piece is caught by these rules,
+ * since none of its locations can be reached.
+ * <p>
+ * The search either branches on the next piece in order A - H, or on the empty peg which the
+ * fewest placements left can take: each of them in turn, then leaving the peg empty if the
+ * remaining pieces can spare it.  For the latter the placements left are kept in lists by
+ * location, with their counts per location and per shape updated as pieces are chosen and
+ * taken back, so the most constrained peg and the rules above cost little at each state.
+ */
+public final class Solver {
+
+    // Locations with a peg
+    static final long PEGS;
+
+    // Locations without a peg
+    static final long HOLES;
+
+    // Placements of each shape with their bottom rings on pegs and upper rings over holes
+    private static final short[][] CANDIDATES = new short[Placement.SHAPES][];
+
+    // Locations of the rings of each placement of CANDIDATES
+    private static final byte[][] RING_LOCATIONS = new byte[Placement.COUNT][];
+
+    // Placements of CANDIDATES with a ring at each location
+    private static final short[][] CELL_CANDIDATES = new short[Placement.LOCATIONS][];
+
+    // Rings of each shape, and the fewest bottom and upper rings in any of its orientations
+    private static final int[] RINGS = new int[Placement.SHAPES];
+    private static final int[] MIN_BOTTOMS = new int[Placement.SHAPES];
+    private static final int[] MIN_UPPERS = new int[Placement.SHAPES];
+
+    static {
+        long pegs = 0;
+        for (int i = 0; i < Placement.LOCATIONS; i++)
+            if (BoardGeometry.STANDARD.hasPeg(i))
+                pegs |= 1L << i;
+        PEGS = pegs;
+        HOLES = ~pegs & ((1L << Placement.LOCATIONS) - 1);
+
+        short[] candidates = new short[Placement.COUNT];
+        for (int shape = 0; shape < Placement.SHAPES; shape++) {
+            int count = 0;
+            MIN_BOTTOMS[shape] = MIN_UPPERS[shape] = Integer.MAX_VALUE;
+            for (int orientation = 0; orientation < Placement.ORIENTATIONS; orientation++) {
+                for (int location = 0; location < Placement.LOCATIONS; location++) {
+                    short piece = Placement.of(shape, orientation, location);
+                    if (!isOnPegs(piece))
+                        continue;
+                    candidates[count++] = piece;
+                    long rings = PlacementMasks.BOTTOM[piece] | PlacementMasks.UPPER[piece];
+                    RING_LOCATIONS[piece] = new byte[Long.bitCount(rings)];
+                    for (int i = 0; rings != 0; rings &= rings - 1)
+                        RING_LOCATIONS[piece][i++] = (byte) Long.numberOfTrailingZeros(rings);
+                    int bottoms = Long.bitCount(PlacementMasks.BOTTOM[piece]);
+                    int uppers = Long.bitCount(PlacementMasks.UPPER[piece]);
+                    RINGS[shape] = bottoms + uppers;
+                    MIN_BOTTOMS[shape] = Math.min(MIN_BOTTOMS[shape], bottoms);
+                    MIN_UPPERS[shape] = Math.min(MIN_UPPERS[shape], uppers);
+                }
+            }
+            CANDIDATES[shape] = Arrays.copyOf(candidates, count);
+        }
+
+        for (int location = 0; location < Placement.LOCATIONS; location++) {
+            int count = 0;
+            for (short[] shape : CANDIDATES)
+                for (short piece : shape)
+                    if (((PlacementMasks.BOTTOM[piece] | PlacementMasks.UPPER[piece]) & 1L << location) != 0)
+                        candidates[count++] = piece;
+            CELL_CANDIDATES[location] = Arrays.copyOf(candidates, count);
+        }
+    }
+
+    private final boolean pruning;
+    private final boolean byCell;
+    private long nodes;
+
+    // The pieces played followed by the pieces chosen, and the number of each
+    private final short[] sequence = new short[Placement.SHAPES];
+    private int played;
+
+    // The pegs obstructed by the pieces played, which no bottom ring may take
+    private long obstructed;
+
+    private int limit;
+    private List<short[]> solutions;
+
+    // The budget of the search under way, or null for none
+    private SearchBudget budget;
+
+    // For branching by cell: the placements ruled out, the placements left with a ring at each
+    // location and of each shape, and the locations none of them reaches
+    private final boolean[] out = new boolean[Placement.COUNT];
+    private final int[] cellCounts = new int[Placement.LOCATIONS];
+    private final int[] shapeCounts = new int[Placement.SHAPES];
+    private long unreached;
+
+    // The placements which can join the board at the start, by location and by shape
+    private final short[][] cellCandidates = new short[Placement.LOCATIONS][];
+    private final int[] cellSizes = new int[Placement.LOCATIONS];
+    private final short[][] shapeCandidates = new short[Placement.SHAPES][];
+    private final int[] shapeSizes = new int[Placement.SHAPES];
+
+    // The placements ruled out, in order, to be taken back
+    private final short[] ruledOut = new short[Placement.COUNT];
+    private int ruledOutCount;
+
+    /**
+     * Create a solver branching on the most constrained peg.
+     *
+     * @param pruning True to abandon states which cannot be finished, false for a plain search
+     */
+    public Solver(boolean pruning) {
+        this(pruning, true);
+    }
+
+    /**
+     * @param pruning True to abandon states which cannot be finished, false for a plain search
+     * @param byCell  True to branch on the most constrained peg, false on the pieces in order
+     */
+    public Solver(boolean pruning, boolean byCell) {
+        this.pruning = pruning;
+        this.byCell = byCell;
+        for (int location = 0; location < Placement.LOCATIONS; location++)
+            cellCandidates[location] = new short[CELL_CANDIDATES[location].length];
+        for (int shape = 0; shape < Placement.SHAPES; shape++)
+            shapeCandidates[shape] = new short[CANDIDATES[shape].length];
+    }
+
+    /**
+     * Get the number of states visited since the solver was created.
+     */
+    public long getNodes() {
+        return nodes;
+    }
+
+    /**
+     * Find the solutions starting with a placement.
+     *
+     * @param placement A packed placement sequence
+     * @param length    The number of piece placements used from the array
+     * @param limit     The most solutions to find
+     * @return The solutions, each a full packed placement sequence starting with the placement,
+     * empty if the placement is not valid
+     */
+    public List<short[]> solve(short[] placement, int length, int limit) {
+        return solve(placement, length, limit, null);
+    }
+
+    /**
+     * Find the solutions starting with a placement, stopping when the budget is exhausted.
+     *
+     * @param budget The budget of the search, spent a node at each state, or null for none
+     * @return The solutions found, all of them unless the budget is exhausted
+     */
+    public List<short[]> solve(short[] placement, int length, int limit, SearchBudget budget) {
+        this.budget = budget;
+        solutions = new ArrayList<>();
+        this.limit = limit;
+        if (limit > 0 && (length == 0 || StepsGame.isPlacementSequenceValid(placement, length))) {
+            System.arraycopy(placement, 0, sequence, 0, length);
+            played = length;
+            long bottom = 0, upper = 0;
+            int remaining = (1 << Placement.SHAPES) - 1;
+            obstructed = 0;
+            for (int i = 0; i < length; i++) {
+                bottom |= PlacementMasks.BOTTOM[placement[i]];
+                upper |= PlacementMasks.UPPER[placement[i]];
+                obstructed |= PlacementMasks.OBSTRUCTED[placement[i]];
+                remaining &= ~(1 << Placement.shape(placement[i]));
+            }
+            if (byCell) {
+                initCounts(remaining, bottom, upper);
+                searchCells(remaining, length, bottom, upper, 0);
+            } else {
+                search(remaining, length, bottom, upper);
+            }
+        }
+        List<short[]> found = solutions;
+        solutions = null;
+        this.budget = null;
+        return found;
+    }
+
+    /**
+     * Determine whether a placement has its bottom rings on pegs and its upper rings over holes,
+     * as the rules require of every piece (orientations A - D at locations with a peg).
+     */
+    public static boolean isOnPegs(short piece) {
+        return BoardGeometry.STANDARD.isOnPegs(piece);
+    }
+
+    /**
+     * Determine whether a placement can be finished, stopping at the first solution.
+     *
+     * @param placement A packed placement sequence
+     * @param length    The number of piece placements used from the array
+     * @return True if there is a solution starting with the placement
+     */
+    public boolean isSolvable(short[] placement, int length) {
+        return !solve(placement, length, 1).isEmpty();
+    }
+
+    /**
+     * Determine whether a placement can be finished, stopping at the first solution or when the
+     * budget is exhausted.
+     *
+     * @param budget The budget of the search, or null for none
+     * @return True if there is a solution starting with the placement; false if there is none, or if
+     * the budget is exhausted before one is found
+     */
+    public boolean isSolvable(short[] placement, int length, SearchBudget budget) {
+        return !solve(placement, length, 1, budget).isEmpty();
+    }
+
+    // Spend a node of the budget, if there is one
+    private boolean spend() {
+        return budget == null || budget.spend();
+    }
+
+    // Whether to stop searching, having found enough solutions or run out of budget
+    private boolean isDone() {
+        return solutions.size() >= limit || budget != null && budget.isExhausted();
+    }
+
+    private void search(int remaining, int chosen, long bottom, long upper) {
+        if (!spend())
+            return;
+        nodes++;
+        if (remaining == 0) {
+            short[] solution = order(chosen);
+            if (solution != null)
+                solutions.add(solution);
+            return;
+        }
+        if (pruning && isDead(remaining, bottom, upper, obstructed))
+            return;
+        int shape = Integer.numberOfTrailingZeros(remaining);
+        for (short piece : CANDIDATES[shape]) {
+            if (!fits(piece, bottom, upper, obstructed))
+                continue;
+            sequence[chosen] = piece;
+            search(remaining & ~(1 << shape), chosen + 1, bottom | PlacementMasks.BOTTOM[piece], upper | PlacementMasks.UPPER[piece]);
+            if (isDone())
+                return;
+        }
+    }
+
+    private void searchCells(int remaining, int chosen, long bottom, long upper, long empty) {
+        if (!spend())
+            return;
+        nodes++;
+        if (remaining == 0) {
+            short[] solution = order(chosen);
+            if (solution != null)
+                solutions.add(solution);
+            return;
+        }
+        long pegs = PEGS & ~(bottom | upper | empty);
+        if (pruning && isDeadByCounts(remaining, pegs, HOLES & ~upper))
+            return;
+
+        int cell = -1;
+        for (long left = pegs; left != 0; left &= left - 1) {
+            int location = Long.numberOfTrailingZeros(left);
+            if (cell < 0 || cellCounts[location] < cellCounts[cell])
+                cell = location;
+        }
+        if (cell < 0)
+            return;
+
+        int mark = ruledOutCount;
+        short[] candidates = cellCandidates[cell];
+        for (int i = 0; i < cellSizes[cell]; i++) {
+            short piece = candidates[i];
+            if (out[piece])
+                continue;
+            sequence[chosen] = piece;
+            ruleOutAround(piece);
+            searchCells(remaining & ~(1 << Placement.shape(piece)), chosen + 1, bottom | PlacementMasks.BOTTOM[piece], upper | PlacementMasks.UPPER[piece], empty);
+            restore(mark);
+            if (isDone())
+                return;
+        }
+        // Leave the peg empty, if the remaining pieces can do without it
+        if (Long.bitCount(pegs) > minBottoms(remaining)) {
+            for (int i = 0; i < cellSizes[cell]; i++)
+                if (!out[candidates[i]])
+                    ruleOut(candidates[i]);
+            searchCells(remaining, chosen, bottom, upper, empty | 1L << cell);
+            restore(mark);
+        }
+    }
+
+    // List and count the placements of the remaining shapes which can join the board
+    private void initCounts(int remaining, long bottom, long upper) {
+        Arrays.fill(cellSizes, 0);
+        Arrays.fill(shapeSizes, 0);
+        ruledOutCount = 0;
+        for (int shape = 0; shape < Placement.SHAPES; shape++) {
+            if ((remaining & 1 << shape) == 0)
+                continue;
+            for (short piece : CANDIDATES[shape]) {
+                out[piece] = !fits(piece, bottom, upper, obstructed);
+                if (out[piece])
+                    continue;
+                shapeCandidates[shape][shapeSizes[shape]++] = piece;
+                for (byte location : RING_LOCATIONS[piece])
+                    cellCandidates[location][cellSizes[location]++] = piece;
+            }
+        }
+        System.arraycopy(cellSizes, 0, cellCounts, 0, Placement.LOCATIONS);
+        System.arraycopy(shapeSizes, 0, shapeCounts, 0, Placement.SHAPES);
+        unreached = 0;
+        for (int location = 0; location < Placement.LOCATIONS; location++)
+            if (cellCounts[location] == 0)
+                unreached |= 1L << location;
+    }
+
+    // Rule out the placements sharing a location with a chosen piece, and the rest of its shape
+    private void ruleOutAround(short piece) {
+        for (byte location : RING_LOCATIONS[piece]) {
+            short[] others = cellCandidates[location];
+            for (int i = 0; i < cellSizes[location]; i++)
+                if (!out[others[i]])
+                    ruleOut(others[i]);
+        }
+        int shape = Placement.shape(piece);
+        for (int i = 0; i < shapeSizes[shape]; i++)
+            if (!out[shapeCandidates[shape][i]])
+                ruleOut(shapeCandidates[shape][i]);
+    }
+
+    private void ruleOut(short piece) {
+        out[piece] = true;
+        ruledOut[ruledOutCount++] = piece;
+        shapeCounts[Placement.shape(piece)]--;
+        for (byte location : RING_LOCATIONS[piece])
+            if (--cellCounts[location] == 0)
+                unreached |= 1L << location;
+    }
+
+    // Take back the placements ruled out since a mark
+    private void restore(int mark) {
+        while (ruledOutCount > mark) {
+            short piece = ruledOut[--ruledOutCount];
+            out[piece] = false;
+            shapeCounts[Placement.shape(piece)]++;
+            for (byte location : RING_LOCATIONS[piece])
+                if (cellCounts[location]++ == 0)
+                    unreached &= ~(1L << location);
+        }
+    }
+
+    // The rules in the class comment, from the counts of the placements left
+    private boolean isDeadByCounts(int remaining, long pegs, long holes) {
+        for (int shapes = remaining; shapes != 0; shapes &= shapes - 1)
+            if (shapeCounts[Integer.numberOfTrailingZeros(shapes)] == 0)
+                return true;
+        return isOutnumbered(remaining, pegs, holes, ~unreached & PEGS, ~unreached & HOLES);
+    }
+
+    private static int minBottoms(int remaining) {
+        int minBottoms = 0;
+        for (int shapes = remaining; shapes != 0; shapes &= shapes - 1)
+            minBottoms += MIN_BOTTOMS[Integer.numberOfTrailingZeros(shapes)];
+        return minBottoms;
+    }
+
+    // Determine whether a placement can join the board, in some order after the pieces played
+    private static boolean fits(short piece, long bottom, long upper, long obstructed) {
+        return (PlacementMasks.BOTTOM[piece] & (bottom | upper | obstructed)) == 0 && (PlacementMasks.UPPER[piece] & upper) == 0;
+    }
+
+    /**
+     * Put the chosen pieces into an order in which they can be played after the pieces played.
+     *
+     * @return The full sequence, or null if there is no such order
+     */
+    private short[] order(int chosen) {
+        short[] solution = sequence.clone();
+        for (int next = played; next < chosen; next++) {
+            // A piece can go next when no other remaining piece has a bottom ring on a peg it obstructs
+            long bottoms = 0;
+            for (int i = next; i < chosen; i++)
+                bottoms |= PlacementMasks.BOTTOM[solution[i]];
+            int found = -1;
+            for (int i = next; i < chosen && found < 0; i++)
+                if ((PlacementMasks.OBSTRUCTED[solution[i]] & (bottoms & ~PlacementMasks.BOTTOM[solution[i]])) == 0)
+                    found = i;
+            if (found < 0)
+                return null;
+            short piece = solution[found];
+            System.arraycopy(solution, next, solution, next + 1, found - next);
+            solution[next] = piece;
+        }
+        return StepsGame.isPlacementSequenceValid(solution, chosen) ? solution : null;
+    }
+
+    /**
+     * Determine whether a state cannot be finished, by the rules in the class comment.
+     *
+     * @param remaining  The shapes still to be placed, bit n for shape n
+     * @param bottom     The bottom rings on the board
+     * @param upper      The upper rings on the board
+     * @param obstructed The pegs obstructed for good
+     * @return True if no solution can be reached
+     */
+    static boolean isDead(int remaining, long bottom, long upper, long obstructed) {
+        long pegsReached = 0, holesReached = 0;
+        for (int shapes = remaining; shapes != 0; shapes &= shapes - 1) {
+            int shape = Integer.numberOfTrailingZeros(shapes);
+            boolean fits = false;
+            for (short piece : CANDIDATES[shape]) {
+                if (fits(piece, bottom, upper, obstructed)) {
+                    fits = true;
+                    pegsReached |= PlacementMasks.BOTTOM[piece];
+                    holesReached |= PlacementMasks.UPPER[piece];
+                }
+            }
+            if (!fits)
+                return true;
+        }
+        // A piece played off its pegs leaves bottom rings in holes, which upper rings may still cover
+        return isOutnumbered(remaining, PEGS & ~(bottom | upper), HOLES & ~upper, pegsReached, holesReached);
+    }
+
+    /**
+     * Determine whether more pegs and holes are out of reach than the remaining pieces can leave
+     * empty.
+     *
+     * @param remaining    The shapes still to be placed, bit n for shape n
+     * @param pegs         The pegs free for bottom rings
+     * @param holes        The holes free for upper rings
+     * @param pegsReached  The pegs a bottom ring of a remaining piece can still reach
+     * @param holesReached The holes an upper ring of a remaining piece can still reach
+     * @return True if no solution can be reached
+     */
+    private static boolean isOutnumbered(int remaining, long pegs, long holes, long pegsReached, long holesReached) {
+        int minBottoms = 0, minUppers = 0, rings = 0;
+        for (int shapes = remaining; shapes != 0; shapes &= shapes - 1) {
+            int shape = Integer.numberOfTrailingZeros(shapes);
+            minBottoms += MIN_BOTTOMS[shape];
+            minUppers += MIN_UPPERS[shape];
+            rings += RINGS[shape];
+        }
+        int deadPegs = Long.bitCount(pegs & ~pegsReached);
+        int deadHoles = Long.bitCount(holes & ~holesReached);
+        int pegsLeft = Long.bitCount(pegs) - minBottoms;
+        int holesLeft = Long.bitCount(holes) - minUppers;
+        int cellsLeft = Long.bitCount(pegs) + Long.bitCount(holes) - rings;
+        return deadPegs > pegsLeft || deadHoles > holesLeft || deadPegs + deadHoles > cellsLeft;
+    }
+}
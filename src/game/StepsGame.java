@@ -1,11 +1,7 @@
 package game;
 
-import game.gui.Board;
-
-import java.io.BufferedReader;
-import java.io.InputStream;
-import java.io.InputStreamReader;
 import java.util.*;
+import java.util.stream.Stream;
 
 /**
  * This class provides the text interface for the Steps Game
@@ -15,21 +11,13 @@ import java.util.*;
  */
 public class StepsGame {
 
+    private final String startingPositions;
     private String[] finalPositions;
 
     public StepsGame(String currentPositions) {
-        this.finalPositions = getSolutions(currentPositions);
+        this.startingPositions = currentPositions;
     }
 
-    // Initialize the board which has 50 locations
-    private static int[] board = new int[50];
-
-    /*
-      State strings of the following piece placements: AA, AE, BA, BE, CA, CE ... HA, HE.
-      0: vacant,  1: bottom ring,  2: upper ring
-     */
-    public static final String[] states = {"120212100", "012121002", "020012021", "010120210", "020012120", "010120012", "020210021", "010021210", "020210120", "010021012", "001012120", "200120012", "021012120", "210120012", "021210021", "210021210"};
-
 
     /**
      * Determine whether a piece placement is well-formed according to the following:
@@ -101,27 +89,71 @@ public class StepsGame {
      */
     public static boolean isPlacementSequenceValid(String placement) {
         // Determine whether a placement sequence is valid
-        // Reset the board
-        Arrays.fill(board, 0);
         if (!isPlacementWellFormed(placement))
             return false;
-        for (int i = 0; i < placement.length() / 3; i++) {
-            String piece = placement.substring(3 * i, 3 * i + 3);
-            int homeCoordinate = piece.charAt(2) - ((int) piece.charAt(2) < 90 ? 65 : 72);
-            int firstCharIndex = piece.charAt(0) - 65;
-            int secondCharIndex = piece.charAt(1) - 65;
-            int pieceIndex = 2 * firstCharIndex + (secondCharIndex < 4 ? 0 : 1);
-            String rawState = states[pieceIndex];
-            String state = getExactState(rawState, secondCharIndex);
-            if (isOffBoard(homeCoordinate, state))
-                return false;
-            if (!checkCollision(homeCoordinate, state))
+        return isPlacementSequenceValid(Placement.parseSequence(placement));
+    }
+
+    /**
+     * Determine whether a packed placement sequence is valid.
+     *
+     * @param placement A packed placement sequence
+     * @return True if the placement sequence is valid
+     */
+    public static boolean isPlacementSequenceValid(short[] placement) {
+        return placement != null && isPlacementSequenceValid(placement, placement.length);
+    }
+
+    /**
+     * Determine whether the first length piece placements of a packed sequence are valid.
+     * Bottom rings may not go onto locations that are taken or obstructed, and upper rings
+     * may not go onto locations taken by other upper rings.
+     *
+     * @param placement A packed placement sequence
+     * @param length    The number of piece placements to check
+     * @return True if the placement sequence is valid
+     */
+    public static boolean isPlacementSequenceValid(short[] placement, int length) {
+        if (!Placement.isSequenceWellFormed(placement, length))
+            return false;
+        long bottom = 0, upper = 0, obstructed = 0;
+        for (int i = 0; i < length; i++) {
+            short piece = placement[i];
+            if (!canFollow(piece, bottom, upper, obstructed))
                 return false;
+            bottom |= PlacementMasks.BOTTOM[piece];
+            upper |= PlacementMasks.UPPER[piece];
+            obstructed |= PlacementMasks.OBSTRUCTED[piece];
         }
-
         return true;
     }
 
+    /**
+     * Find the locations where a piece in a given orientation can be played next.
+     *
+     * @param placement   A packed placement sequence, assumed to be valid
+     * @param length      The number of piece placements used from the array
+     * @param shape       The shape of the piece, 0 .. 7
+     * @param orientation The orientation of the piece, 0 .. 7
+     * @return A mask with bit i set if the piece can be played at location i, 0 if its shape is already placed
+     */
+    public static long getLegalLocations(short[] placement, int length, int shape, int orientation) {
+        long bottom = 0, upper = 0, obstructed = 0;
+        for (int i = 0; i < length; i++) {
+            short piece = placement[i];
+            if (Placement.shape(piece) == shape)
+                return 0;
+            bottom |= PlacementMasks.BOTTOM[piece];
+            upper |= PlacementMasks.UPPER[piece];
+            obstructed |= PlacementMasks.OBSTRUCTED[piece];
+        }
+        long legal = 0;
+        for (int location = 0; location < Placement.LOCATIONS; location++)
+            if (canFollow(Placement.of(shape, orientation, location), bottom, upper, obstructed))
+                legal |= 1L << location;
+        return legal;
+    }
+
 
     /**
      * Get the state of piece placement after rotating.
@@ -135,257 +167,31 @@ public class StepsGame {
         int rotateTime = secondChar - (secondChar < 4 ? 0 : 4);
         if (rotateTime == 1 || rotateTime == 5)
             // Rotate 90° clockwise
-            return rawState.substring(6, 7) + rawState.substring(3, 4) + rawState.substring(0, 1) + rawState.substring(7, 8) + rawState.substring(4, 5) + rawState.substring(1, 2) + rawState.substring(8, 9) + rawState.substring(5, 6) + rawState.substring(2, 3);
+            return pick(rawState, 6, 3, 0, 7, 4, 1, 8, 5, 2);
         else if (rotateTime == 2 || rotateTime == 6)
             // Rotate 180° clockwise
             return new StringBuilder(rawState).reverse().toString();
         else if (rotateTime == 3 || rotateTime == 7)
             // Rotate 270° clockwise
-            return rawState.substring(2, 3) + rawState.substring(5, 6) + rawState.substring(8, 9) + rawState.substring(1, 2) + rawState.substring(4, 5) + rawState.substring(7, 8) + rawState.substring(0, 1) + rawState.substring(3, 4) + rawState.substring(6, 7);
+            return pick(rawState, 2, 5, 8, 1, 4, 7, 0, 3, 6);
         else
             // Don't need to rotate
             return rawState;
     }
 
-
     /**
-     * Check whether any ring gets out of the board.
+     * Build a state string from the characters of another one.
+     * Used instead of string concatenation, since every state is rotated while a piece set is loaded (see PieceSet).
      *
-     * @param home  The home coordinate of the piece
-     * @param state To describe the state of current piece
-     * @return True if any ring gets out of the board
+     * @param rawState The state string to read from
+     * @param indexes  The index of the character to take for each position
+     * @return The new state string
      */
-    private static boolean isOffBoard(int home, String state) {
-        if (home < 1 || home > 48 || home == 9 || home == 40)
-            return true;
-        // ASCII code of '0' is 48
-        int upleft = state.charAt(0) - 48;
-        int up = state.charAt(1) - 48;
-        int upright = state.charAt(2) - 48;
-        int left = state.charAt(3) - 48;
-        int right = state.charAt(5) - 48;
-        int downleft = state.charAt(6) - 48;
-        int down = state.charAt(7) - 48;
-        int downright = state.charAt(8) - 48;
-        if (upleft == 0 && up == 0 && upright == 0) {
-            if (!(home > 0 && home < 39 && home % 10 != 0 && home % 10 != 9))
-                return true;
-        } else if (downleft == 0 && down == 0 && downright == 0) {
-            if (!(home > 10 && home < 49 && home % 10 != 0 && home % 10 != 9))
-                return true;
-        } else if (upright == 0 && right == 0 && downright == 0) {
-            if (!(home > 10 && home < 40 && home % 10 != 0))
-                return true;
-        } else if (upleft == 0 && left == 0 && downleft == 0) {
-            if (!(home > 9 && home < 39 && home % 10 != 9))
-                return true;
-        } else if (!(home > 10 && home < 39 && home % 10 != 0 && home % 10 != 9))
-            return true;
-        return false;
-    }
-
-
-    /**
-     * Check collision among piece placements:
-     * - Each of the bottom rings must be placed onto vacant pegs (pegs that are not occupied by already played pieces).
-     * - None of the bottom rings may be obstructed by the upper layer of pieces already played. Notice that for each peg, it may be obstructed by up to four upper-level locations.
-     * - Each of the upper rings must be placed onto vacant locations (locations that are not occupied by already played pieces).
-     * State map:
-     * 0: vacant,  1: bottom ring,  2: upper ring， 3：be obstructed by upper ring
-     * －－－－－－－－－－－－－－－－－
-     * | upleft |  up   | upright |
-     * |  left  | center|  right  |
-     * |downleft| down  |downright|
-     * －－－－－－－－－－－－－－－－－
-     *
-     * @param home  The home coordinate of the piece
-     * @param state To describe the state of current piece placement
-     * @return True if no collision between current piece placement and any other piece placements
-     */
-    private static boolean checkCollision(int home, String state) {
-        int upleft = state.charAt(0) - 48;
-        int up = state.charAt(1) - 48;
-        int upright = state.charAt(2) - 48;
-        int left = state.charAt(3) - 48;
-        int center = state.charAt(4) - 48;
-        int right = state.charAt(5) - 48;
-        int downleft = state.charAt(6) - 48;
-        int down = state.charAt(7) - 48;
-        int downright = state.charAt(8) - 48;
-
-        if (upleft == 1)
-            if (board[home - 11] != 0)
-                return false;
-            else
-                board[home - 11] = 1;
-        else if (upleft == 2) {
-            if (board[home - 11] == 2)
-                return false;
-            else {
-                board[home - 11] = 2;
-                if ((home - 11) % 10 != 0 && board[home - 11 - 1] == 0)
-                    board[home - 12] = 3;
-                if ((home - 11) > 9 && board[home - 11 - 10] == 0)
-                    board[home - 11 - 10] = 3;
-                if (up == 0 && board[home - 10] == 0)
-                    board[home - 10] = 3;
-                if (left == 0 && board[home - 1] == 0)
-                    board[home - 1] = 3;
-            }
-        }
-        if (up == 1)
-            if (board[home - 10] != 0)
-                return false;
-            else
-                board[home - 10] = 1;
-        else if (up == 2) {
-            if (board[home - 10] == 2)
-                return false;
-            else {
-                board[home - 10] = 2;
-                if ((home - 10) % 10 != 0 && board[home - 11] == 0 && upleft == 0)
-                    board[home - 11] = 3;
-                if ((home - 10) > 9 && board[home - 10 - 10] == 0)
-                    board[home - 10 - 10] = 3;
-                if ((home - 10) % 10 != 9 && board[home - 9] == 0 && upright == 0)
-                    board[home - 9] = 3;
-            }
-        }
-        if (upright == 1)
-            if (board[home - 9] != 0)
-                return false;
-            else
-                board[home - 9] = 1;
-        else if (upright == 2) {
-            if (board[home - 9] == 2)
-                return false;
-            else {
-                board[home - 9] = 2;
-                if (up == 0 && board[home - 10] == 0)
-                    board[home - 10] = 3;
-                if ((home - 9) > 9 && board[home - 9 - 10] == 0)
-                    board[home - 9 - 10] = 3;
-                if ((home - 9) % 10 != 9 && board[home - 9 + 1] == 0)
-                    board[home - 9 + 1] = 3;
-                if (right == 0 && board[home + 1] == 0)
-                    board[home + 1] = 3;
-            }
-        }
-        if (left == 1)
-            if (board[home - 1] != 0)
-                return false;
-            else
-                board[home - 1] = 1;
-        else if (left == 2) {
-            if (board[home - 1] == 2)
-                return false;
-            else {
-                board[home - 1] = 2;
-                if ((home - 1) % 10 != 0 && board[home - 1 - 1] == 0)
-                    board[home - 1 - 1] = 3;
-                if ((home - 1) > 9 && board[home - 1 - 10] == 0 && upleft == 0)
-                    board[home - 1 - 10] = 3;
-                if ((home - 1) < 40 && board[home - 1 + 10] == 0 && downleft == 0)
-                    board[home - 1 + 10] = 3;
-            }
-        }
-        if (center == 1)
-            if (board[home] != 0)
-                return false;
-            else
-                board[home] = 1;
-        else if (center == 2) {
-            if (board[home] == 2)
-                return false;
-            else {
-                board[home] = 2;
-                if (home % 10 != 0 && board[home - 1] == 0 && left == 0)
-                    board[home - 1] = 3;
-                if (home > 9 && board[home - 10] == 0 && up == 0)
-                    board[home - 10] = 3;
-                if (home < 40 && board[home + 10] == 0 && down == 0)
-                    board[home + 10] = 3;
-                if (home % 10 != 9 && board[home + 1] == 0 && right == 0)
-                    board[home + 1] = 3;
-            }
-        }
-        if (right == 1)
-            if (board[home + 1] != 0)
-                return false;
-            else
-                board[home + 1] = 1;
-        else if (right == 2) {
-            if (board[home + 1] == 2)
-                return false;
-            else {
-                board[home + 1] = 2;
-                if ((home + 1) > 9 && board[home - 9] == 0 && upright == 0)
-                    board[home - 9] = 3;
-                if ((home + 1) % 10 != 9 && board[home + 1 + 1] == 0)
-                    board[home + 1 + 1] = 3;
-                if ((home + 1) < 40 && board[home + 1 + 10] == 0 && downright == 0)
-                    board[home + 1 + 10] = 3;
-            }
-        }
-        if (downleft == 1)
-            if (board[home + 9] != 0)
-                return false;
-            else
-                board[home + 9] = 1;
-        else if (downleft == 2) {
-            if (board[home + 9] == 2)
-                return false;
-            else {
-                board[home + 9] = 2;
-                if ((home + 9) % 10 != 0 && board[home + 9 - 1] == 0)
-                    board[home + 9 - 1] = 3;
-                if (board[home - 1] == 0 && left == 0)
-                    board[home - 1] = 3;
-                if (board[home + 10] == 0 && down == 0)
-                    board[home + 10] = 3;
-                if ((home + 9) < 40 && board[home + 9 + 10] == 0)
-                    board[home + 9 + 10] = 3;
-            }
-        }
-        if (down == 1)
-            if (board[home + 10] != 0)
-                return false;
-            else
-                board[home + 10] = 1;
-        else if (down == 2) {
-            if (board[home + 10] == 2)
-                return false;
-            else {
-                board[home + 10] = 2;
-                if ((home + 10) % 10 != 0 && board[home + 9] == 0 && downleft == 0)
-                    board[home + 9] = 3;
-                if ((home + 10) % 10 != 9 && board[home + 11] == 0 && downright == 0)
-                    board[home + 11] = 3;
-                if ((home + 10) < 40 && board[home + 10 + 10] == 0)
-                    board[home + 10 + 10] = 3;
-            }
-        }
-        if (downright == 1)
-            if (board[home + 11] != 0)
-                return false;
-            else
-                board[home + 11] = 1;
-        else if (downright == 2) {
-            if (board[home + 11] == 2)
-                return false;
-            else {
-                board[home + 11] = 2;
-                if (board[home + 10] == 0 && down == 0)
-                    board[home + 10] = 3;
-                if (board[home + 1] == 0 && right == 0)
-                    board[home + 1] = 3;
-                if ((home + 11) % 10 != 9 && board[home + 11 + 1] == 0)
-                    board[home + 11 + 1] = 3;
-                if ((home + 11) < 40 && board[home + 11 + 10] == 0)
-                    board[home + 11 + 10] = 3;
-            }
-        }
-        return true;
+    private static String pick(String rawState, int... indexes) {
+        char[] chars = new char[indexes.length];
+        for (int i = 0; i < indexes.length; i++)
+            chars[i] = rawState.charAt(indexes[i]);
+        return new String(chars);
     }
 
 
@@ -401,35 +207,383 @@ public class StepsGame {
      * @return An set of viable piece placements
      */
     public static Set<String> getViablePiecePlacements(String placement, String objective) {
+        return getViablePiecePlacements(placement, objective, null);
+    }
+
+    /**
+     * Find the viable piece placements as getViablePiecePlacements does, stopping when the budget is
+     * exhausted.
+     *
+     * @param budget The budget of the search, or null for none
+     * @return The viable piece placements found, all of them unless the budget is exhausted
+     */
+    public static Set<String> getViablePiecePlacements(String placement, String objective, SearchBudget budget) {
         // Determine the correct order of piece placements
-        HashMap<String, String> map = new HashMap<>();
-        for (int i = 0; i < placement.length() / 3; i++) {
-            String piece = placement.substring(3 * i, 3 * i + 3);
-            if (!objective.contains(piece))
+        short[] viable = getViablePiecePlacements(Placement.parseSequence(placement), Placement.parseSequence(objective), budget);
+        if (viable == null)
+            return null;
+        Set<String> result = new TreeSet<>();
+        for (short piece : viable)
+            result.add(Placement.toString(piece));
+        return result;
+    }
+
+    /**
+     * Packed version of getViablePiecePlacements.
+     *
+     * @param placement A valid packed sequence of piece placements drawn from the objective
+     * @param objective A packed game objective, in any order
+     * @return The viable piece placements in ascending order, or null if the placement is not drawn from the objective
+     */
+    public static short[] getViablePiecePlacements(short[] placement, short[] objective) {
+        return getViablePiecePlacements(placement, objective, null);
+    }
+
+    /**
+     * Find the viable piece placements, stopping when the budget is exhausted.  A set of pieces played
+     * spends a node.
+     *
+     * @param budget The budget of the search, or null for none
+     * @return The viable piece placements found, all of them unless the budget is exhausted, in
+     * ascending order, or null if the placement is not drawn from the objective
+     */
+    public static short[] getViablePiecePlacements(short[] placement, short[] objective, SearchBudget budget) {
+        for (short piece : placement)
+            if (indexOf(objective, piece) < 0)
                 return null;
-            map.put(piece, "");
+        short[] rest = unplaced(placement, objective);
+        int[] before = rest == null ? null : precedence(placement, rest);
+        if (before == null)
+            return new short[0];
+        long[] orders = completionOrders(before, budget);
+        // A piece is viable if no other has to go before it, and the others can all follow it
+        short[] result = new short[rest.length];
+        int count = 0;
+        for (int i = 0; i < rest.length; i++)
+            if (before[i] == 0 && orders[1 << i] > 0)
+                result[count++] = rest[i];
+        return Arrays.copyOf(result, count);
+    }
+
+    /**
+     * Count the orders in which the rest of an unordered objective can be played after a placement.
+     *
+     * @param placement A valid sequence of piece placements drawn from the objective
+     * @param objective A valid game objective, in any order
+     * @return The number of orders, 1 if every piece is placed, or 0 if the placement is not valid and drawn from the objective
+     */
+    public static long countCompletionOrders(String placement, String objective) {
+        return countCompletionOrders(Placement.parseSequence(placement), Placement.parseSequence(objective));
+    }
+
+    /**
+     * Packed version of countCompletionOrders.
+     */
+    public static long countCompletionOrders(short[] placement, short[] objective) {
+        short[] rest = unplaced(placement, objective);
+        int[] before = rest == null ? null : precedence(placement, rest);
+        return before == null ? 0 : completionOrders(before, null)[0];
+    }
+
+    /**
+     * Count the orders in which the rest of the pieces can be played after each set of them.  A piece
+     * can be played after a set once every piece which has to go before it is in the set (see
+     * precedence), so the count of a set is the sum of the counts of the sets one piece larger which it
+     * can reach.  Counts are memoised by set, and only the sets which can be reached from the placement
+     * are visited: at most 2^8 sets of 8 pieces, compared as masks, after the 8 * 8 pairs of pieces are
+     * tried on the board, instead of trying 8! orders.
+     *
+     * @param before For each unplaced piece, a mask of the unplaced pieces which have to go before it
+     * @param budget The budget of the search, spent a node at each set, or null for none
+     * @return Indexed by bitmask of the unplaced pieces played, the number of orders of the others which
+     * can follow, or -1 for a set which cannot be reached.  If the budget is exhausted, the numbers
+     * are only the orders found, but any above 0 is right to be so
+     */
+    private static long[] completionOrders(int[] before, SearchBudget budget) {
+        long[] orders = new long[1 << before.length];
+        Arrays.fill(orders, -1);
+        completionOrders(before, 0, orders, budget);
+        return orders;
+    }
+
+    private static long completionOrders(int[] before, int played, long[] orders, SearchBudget budget) {
+        if (orders[played] >= 0)
+            return orders[played];
+        if (budget != null && !budget.spend())
+            return 0;
+        long count = played == orders.length - 1 ? 1 : 0;
+        for (int i = 0; i < before.length; i++)
+            if ((played & 1 << i) == 0 && (before[i] & ~played) == 0)
+                count += completionOrders(before, played | 1 << i, orders, budget);
+        return orders[played] = count;
+    }
+
+    /**
+     * Find an order in which to play the rest of an unordered objective after a placement.
+     *
+     * @param placement A valid sequence of piece placements drawn from the objective
+     * @param objective A valid game objective, in any order
+     * @return The unplaced piece placements in an order which can be played, or null if there is none
+     */
+    public static String getPlayOrder(String placement, String objective) {
+        short[] order = getPlayOrder(Placement.parseSequence(placement), Placement.parseSequence(objective));
+        return order == null ? null : Placement.toString(order);
+    }
+
+    /**
+     * Packed version of getPlayOrder.  Whether a piece can be played after another depends on those
+     * two pieces alone, so the pairs of pieces which can only go one way round are found first, then
+     * sorted topologically, in time quadratic in the number of pieces rather than trying every order.
+     * Of the pieces which can go next, the lowest comes first.
+     *
+     * @param placement A valid packed sequence of piece placements drawn from the objective
+     * @param objective A packed game objective, in any order
+     * @return The unplaced piece placements in an order which can be played, or null if there is none
+     */
+    public static short[] getPlayOrder(short[] placement, short[] objective) {
+        short[] rest = unplaced(placement, objective);
+        int[] before = rest == null ? null : precedence(placement, rest);
+        if (before == null)
+            return null;
+        short[] order = new short[rest.length];
+        int played = 0;
+        for (int count = 0; count < rest.length; count++) {
+            int next = 0;
+            while (next < rest.length && ((played & 1 << next) != 0 || (before[next] & ~played) != 0))
+                next++;
+            // Every piece left has to go after another one left
+            if (next == rest.length)
+                return null;
+            order[count] = rest[next];
+            played |= 1 << next;
         }
+        return order;
+    }
 
-        String[] rest = new String[(objective.length() - placement.length()) / 3];
-        int index = 0;
+    /**
+     * Find every order in which to play the rest of an unordered objective after a placement.
+     *
+     * @param placement A valid sequence of piece placements drawn from the objective
+     * @param objective A valid game objective, in any order
+     * @return The orders of the unplaced piece placements which can be played, each as a placement string
+     */
+    public static List<String> getPlayOrders(String placement, String objective) {
+        List<String> orders = new ArrayList<>();
+        for (short[] order : getPlayOrders(Placement.parseSequence(placement), Placement.parseSequence(objective)))
+            orders.add(Placement.toString(order));
+        return orders;
+    }
+
+    /**
+     * Packed version of getPlayOrders, generating the orders from the same pairs as getPlayOrder.
+     *
+     * @return The orders of the unplaced piece placements which can be played, in ascending order
+     */
+    public static List<short[]> getPlayOrders(short[] placement, short[] objective) {
+        List<short[]> orders = new ArrayList<>();
+        short[] rest = unplaced(placement, objective);
+        int[] before = rest == null ? null : precedence(placement, rest);
+        if (before != null)
+            playOrders(rest, before, 0, new short[rest.length], 0, orders);
+        return orders;
+    }
+
+    private static void playOrders(short[] rest, int[] before, int played, short[] order, int count, List<short[]> orders) {
+        if (count == rest.length) {
+            orders.add(order.clone());
+            return;
+        }
+        for (int i = 0; i < rest.length; i++) {
+            if ((played & 1 << i) != 0 || (before[i] & ~played) != 0)
+                continue;
+            order[count] = rest[i];
+            playOrders(rest, before, played | 1 << i, order, count + 1, orders);
+        }
+    }
+
+    // The pieces of the objective which are not placed, in ascending order, or null if the placement
+    // is not valid and drawn from the objective, or the objective uses a shape twice
+    private static short[] unplaced(short[] placement, short[] objective) {
+        if (placement.length > 0 && !isPlacementSequenceValid(placement))
+            return null;
+        for (short piece : placement)
+            if (indexOf(objective, piece) < 0)
+                return null;
+        short[] sequence = new short[placement.length + objective.length];
+        System.arraycopy(placement, 0, sequence, 0, placement.length);
+        int end = placement.length;
+        for (short piece : objective)
+            if (indexOf(placement, piece) < 0)
+                sequence[end++] = piece;
+        if (end > Placement.SHAPES || (end > 0 && !Placement.isSequenceWellFormed(sequence, end)))
+            return null;
+        short[] rest = Arrays.copyOfRange(sequence, placement.length, end);
+        Arrays.sort(rest);
+        return rest;
+    }
 
-        for (int i = 0; i < objective.length() / 3; i++) {
-            String piece = objective.substring(3 * i, 3 * i + 3);
-            if (map.get(piece) == null) {
-                rest[index] = piece;
-                index++;
+    /**
+     * Find the pieces which have to be played before each other piece: those it cannot be played
+     * after, as its bottom rings would go onto their rings or obstructed pegs, or its upper rings onto
+     * their upper rings.
+     *
+     * @param placement The placed piece placements
+     * @param rest      The unplaced piece placements
+     * @return For each unplaced piece, a mask of the indices of the unplaced pieces which have to go
+     * before it, or null if some piece cannot follow the placement, or two pieces cannot follow each
+     * other either way round
+     */
+    private static int[] precedence(short[] placement, short[] rest) {
+        long bottom = 0, upper = 0, obstructed = 0;
+        for (short piece : placement) {
+            bottom |= PlacementMasks.BOTTOM[piece];
+            upper |= PlacementMasks.UPPER[piece];
+            obstructed |= PlacementMasks.OBSTRUCTED[piece];
+        }
+        int[] before = new int[rest.length];
+        for (int i = 0; i < rest.length; i++) {
+            if (!canFollow(rest[i], bottom, upper, obstructed))
+                return null;
+            for (int j = i + 1; j < rest.length; j++) {
+                boolean iAfterJ = canFollow(rest[i], PlacementMasks.BOTTOM[rest[j]], PlacementMasks.UPPER[rest[j]], PlacementMasks.OBSTRUCTED[rest[j]]);
+                boolean jAfterI = canFollow(rest[j], PlacementMasks.BOTTOM[rest[i]], PlacementMasks.UPPER[rest[i]], PlacementMasks.OBSTRUCTED[rest[i]]);
+                if (!iAfterJ && !jAfterI)
+                    return null;
+                if (!iAfterJ)
+                    before[j] |= 1 << i;
+                if (!jAfterI)
+                    before[i] |= 1 << j;
             }
         }
+        return before;
+    }
+
+    private static int indexOf(short[] placement, short piece) {
+        for (int i = 0; i < placement.length; i++)
+            if (placement[i] == piece)
+                return i;
+        return -1;
+    }
+
+    /**
+     * Return one viable next piece placement as soon as it is proven, instead of the whole set
+     * computed by getViablePiecePlacements.  Without a preference, it is the first element of that set.
+     *
+     * @param placement  A valid sequence of piece placements where each piece placement is drawn from the objective
+     * @param objective  A valid game objective, but not necessarily a valid placement string
+     * @param preference The order in which to try the unplaced piece placements, or null for their natural order
+     * @return A viable piece placement, or null if there is none
+     */
+    public static String getFirstViablePiecePlacement(String placement, String objective, Comparator<String> preference) {
+        Comparator<Short> order = preference == null ? null : (a, b) -> preference.compare(Placement.toString(a), Placement.toString(b));
+        short viable = getFirstViablePiecePlacement(Placement.parseSequence(placement), Placement.parseSequence(objective), order);
+        return viable == Placement.NONE ? null : Placement.toString(viable);
+    }
+
+    /**
+     * Packed version of getFirstViablePiecePlacement.
+     *
+     * @return A viable piece placement, or Placement.NONE if there is none
+     */
+    public static short getFirstViablePiecePlacement(short[] placement, short[] objective, Comparator<Short> preference) {
+        if (placement.length > 0 && !isPlacementSequenceValid(placement))
+            return Placement.NONE;
+        long bottom = 0, upper = 0, obstructed = 0;
+        for (short piece : placement) {
+            if (indexOf(objective, piece) < 0)
+                return Placement.NONE;
+            bottom |= PlacementMasks.BOTTOM[piece];
+            upper |= PlacementMasks.UPPER[piece];
+            obstructed |= PlacementMasks.OBSTRUCTED[piece];
+        }
+
+        Short[] rest = new Short[objective.length - placement.length];
+        int count = 0;
+        for (short piece : objective)
+            if (indexOf(placement, piece) < 0 && count < rest.length)
+                rest[count++] = piece;
+        if (count < rest.length)
+            return Placement.NONE;
+        Arrays.sort(rest, preference);
+
+        short[] pieces = new short[count];
+        for (int i = 0; i < count; i++)
+            pieces[i] = rest[i];
+        // Sets of unplaced pieces already known to lead nowhere, indexed by bitmask
+        boolean[] dead = new boolean[1 << count];
+        for (int i = 0; i < count; i++) {
+            short piece = pieces[i];
+            if (canFollow(piece, bottom, upper, obstructed)
+                    && canComplete(pieces, 1 << i, bottom | PlacementMasks.BOTTOM[piece], upper | PlacementMasks.UPPER[piece], obstructed | PlacementMasks.OBSTRUCTED[piece], dead))
+                return piece;
+        }
+        return Placement.NONE;
+    }
+
+    /**
+     * Determine whether the rest of the pieces can all be played, in some order, after a set of them.
+     * The board only depends on which pieces have been played, not on their order, so sets which
+     * lead nowhere are remembered.
+     *
+     * @param pieces     The unplaced piece placements
+     * @param played     Bitmask of the pieces played so far
+     * @param bottom     The bottom rings on the board
+     * @param upper      The upper rings on the board
+     * @param obstructed The obstructed pegs on the board
+     * @param dead       Bitmasks of the sets of pieces which cannot be completed
+     * @return True if every piece can be played
+     */
+    private static boolean canComplete(short[] pieces, int played, long bottom, long upper, long obstructed, boolean[] dead) {
+        if (played == dead.length - 1)
+            return true;
+        if (dead[played])
+            return false;
+        for (int i = 0; i < pieces.length; i++) {
+            short piece = pieces[i];
+            if ((played & 1 << i) == 0 && canFollow(piece, bottom, upper, obstructed)
+                    && canComplete(pieces, played | 1 << i, bottom | PlacementMasks.BOTTOM[piece], upper | PlacementMasks.UPPER[piece], obstructed | PlacementMasks.OBSTRUCTED[piece], dead))
+                return true;
+        }
+        dead[played] = true;
+        return false;
+    }
 
-        List<String> list = new ArrayList<>();
-        permutation(rest, 0, rest.length - 1, list);
+    /**
+     * Determine whether a piece placement can be played onto a board.
+     */
+    static boolean canFollow(short piece, long bottom, long upper, long obstructed) {
+        return PlacementMasks.PLACEABLE[piece]
+                && (PlacementMasks.BOTTOM[piece] & (bottom | upper | obstructed)) == 0
+                && (PlacementMasks.UPPER[piece] & upper) == 0;
+    }
 
-        Set<String> viable = new TreeSet<>();
-        for (String s : list)
-            if (isPlacementSequenceValid(placement + s))
-                viable.add(s.substring(0, 3));
+    /**
+     * Order piece placements so that those which depend on the fewest other pieces of an objective come first.
+     * A piece depends on another one if it has to be played after it, because one of its upper rings goes
+     * over or next to a bottom ring of the other piece.
+     *
+     * @param objective A valid game objective
+     * @return A preference for getFirstViablePiecePlacement
+     */
+    public static Comparator<String> byDependency(String objective) {
+        Comparator<Short> order = byDependency(Placement.parseSequence(objective));
+        return (a, b) -> order.compare(Placement.parse(a), Placement.parse(b));
+    }
 
-        return viable;
+    /**
+     * Packed version of byDependency.
+     */
+    public static Comparator<Short> byDependency(short[] objective) {
+        return Comparator.<Short>comparingInt(piece -> dependencies(piece, objective)).thenComparing(Comparator.naturalOrder());
+    }
+
+    // Count the pieces of the objective which have to be played before a piece placement
+    private static int dependencies(short piece, short[] objective) {
+        int count = 0;
+        for (short other : objective)
+            if (other != piece && (PlacementMasks.BOTTOM[other] & (PlacementMasks.UPPER[piece] | PlacementMasks.OBSTRUCTED[piece])) != 0)
+                count++;
+        return count;
     }
 
     /**
@@ -474,28 +628,106 @@ public class StepsGame {
      */
     static String[] getSolutions(String placement) {
         // Determine all solutions to the game, given a particular starting placement
-        List<String> list = new ArrayList<>();
-        try {
-            InputStream is = Board.class.getResourceAsStream("assets/solutions");
-            BufferedReader br = new BufferedReader(new InputStreamReader(is));
-            String allSolutions;
-            while ((allSolutions = br.readLine()) != null) {
-                if (allSolutions.startsWith(placement)) {
-                    list.add(allSolutions);
-                }
-            }
-            br.close();
-        } catch (Exception e) {
-            e.printStackTrace();
-        }
-        String[] solutions = new String[list.size()];
-        for (int i = 0; i < list.size(); i++) {
-            solutions[i] = list.get(i);
-        }
-        return solutions;
+        return solutions(placement).toArray(String[]::new);
+    }
+
+    /**
+     * Return the solutions to the game as getSolutions does, stopping when the budget is exhausted.
+     * A solution spends a node.
+     *
+     * @param placement A valid piece placement string.
+     * @param budget    The budget of the search, or null for none
+     * @return The solutions found, the first of them in the order of getSolutions, all of them
+     * unless the budget is exhausted.
+     */
+    public static String[] getSolutions(String placement, SearchBudget budget) {
+        if (budget == null)
+            return getSolutions(placement);
+        return solutions(placement).takeWhile(solution -> budget.spend()).toArray(String[]::new);
+    }
+
+    /**
+     * Stream the solutions to the game given a starting placement, in the same way
+     * as getSolutions.  Solutions are produced lazily from the solution index, so
+     * taking only the first few is cheap, and the stream can run in parallel.
+     *
+     * @param placement A valid piece placement string.
+     * @return A stream of strings, each describing a solution starting with placement.
+     */
+    public static Stream<String> solutions(String placement) {
+        if (!placement.isEmpty() && !isPlacementWellFormed(placement))
+            return Stream.empty();
+        return solutions(Placement.parseSequence(placement)).map(Placement::toString);
+    }
+
+    /**
+     * Packed version of solutions.
+     *
+     * @param placement A packed placement sequence
+     * @return A stream of the packed solutions starting with placement
+     */
+    public static Stream<short[]> solutions(short[] placement) {
+        return SolutionIndex.standard().solutions(placement, placement.length);
+    }
+
+    /**
+     * Determine whether a placement can still be finished.  Unlike the solution index, which only
+     * holds the placements on the way to its solutions, this searches the board (see Solver), so it
+     * answers for any position a player can reach.
+     *
+     * @param placement A placement string
+     * @return True if some solution starts with the placement
+     */
+    public static boolean isSolvable(String placement) {
+        if (!placement.isEmpty() && !isPlacementWellFormed(placement))
+            return false;
+        short[] sequence = Placement.parseSequence(placement);
+        return new Solver(true).isSolvable(sequence, sequence.length);
+    }
+
+    /**
+     * Determine whether a placement can still be finished as isSolvable does, stopping when the budget
+     * is exhausted.
+     *
+     * @param placement A placement string
+     * @param budget    The budget of the search, or null for none
+     * @return True if some solution starts with the placement; false if none does, or if the budget
+     * is exhausted before one is found
+     */
+    public static boolean isSolvable(String placement, SearchBudget budget) {
+        if (!placement.isEmpty() && !isPlacementWellFormed(placement))
+            return false;
+        short[] sequence = Placement.parseSequence(placement);
+        return new Solver(true).isSolvable(sequence, sequence.length, budget);
+    }
+
+    /**
+     * Stream the solutions to this game.
+     */
+    public Stream<String> solutions() {
+        return solutions(startingPositions);
+    }
+
+    /**
+     * Count the solutions to this game without producing them.
+     */
+    public int countSolutions() {
+        if (!startingPositions.isEmpty() && !isPlacementWellFormed(startingPositions))
+            return 0;
+        short[] placement = Placement.parseSequence(startingPositions);
+        return SolutionIndex.standard().count(placement, placement.length);
+    }
+
+    /**
+     * Get any one solution to this game, without looking for the others.
+     */
+    public Optional<String> anySolution() {
+        return solutions().findFirst();
     }
 
-    public String[] returnFinalPositions() {
+    public synchronized String[] returnFinalPositions() {
+        if (finalPositions == null)
+            finalPositions = getSolutions(startingPositions);
         return this.finalPositions;
     }
 }
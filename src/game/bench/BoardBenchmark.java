@@ -0,0 +1,123 @@
+package game.bench;
+
+import game.BoardGeometry;
+import game.PieceSet;
+import game.Placement;
+import game.StepsGame;
+
+import java.io.IOException;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * Benchmark of validation on boards of increasing size, up to 10 wide and 20 high.
+ * <p>
+ * For each board, reports the time taken to compile its piece placements, the number of them which
+ * fit and are on pegs, then the throughput of validating random sequences of eight placements and of
+ * finding every legal next placement after a few pieces.  Searches for solutions only run on the
+ * standard board (see BoardGeometry), so they are not measured here.  On the standard board the packed placements of StepsGame are run too,
+ * as the baseline the board geometry must keep up with.  The boards take the game's own pieces,
+ * or those of a piece set file (see PieceSet) to compare a custom set with them.
+ * <p>
+ * Usage: BoardBenchmark [sequences [pieces]]
+ */
+public class BoardBenchmark {
+
+    private static final int[] HEIGHTS = {5, 10, 15, 20};
+
+    public static void main(String[] args) throws IOException {
+        int sequences = args.length > 0 ? Integer.parseInt(args[0]) : 200000;
+        PieceSet pieces = args.length > 1 ? PieceSet.open(Paths.get(args[1])) : PieceSet.standard();
+
+        System.out.printf("%-22s %12s %10s %12s %10s %14s %10s%n", "", "placements", "on pegs", "compile ms", "valid", "ns/sequence", "ns/legal");
+        for (int round = 0; round < 2; round++) {
+            String label = round == 0 ? " (warm-up)" : "";
+            runStandard("packed 10x5" + label, sequences);
+            for (int height : HEIGHTS) {
+                long start = System.nanoTime();
+                BoardGeometry board = BoardGeometry.checkerboard(10, height, pieces);
+                double compile = (System.nanoTime() - start) / 1e6;
+                run("board " + board + label, board, compile, sequences);
+            }
+        }
+    }
+
+    private static void run(String name, BoardGeometry board, double compile, int sequences) {
+        int[][] codes = randomSequences(board, sequences);
+        int valid = 0;
+        long start = System.nanoTime();
+        for (int[] sequence : codes)
+            if (board.isPlacementSequenceValid(sequence, sequence.length))
+                valid++;
+        long validation = System.nanoTime() - start;
+
+        // Every legal placement after the first three pieces of each sequence
+        int placeable = 0, onPegs = 0, legal = 0;
+        for (int code = 0; code < board.placements(); code++) {
+            if (board.isPlaceable(code))
+                placeable++;
+            if (board.isOnPegs(code))
+                onPegs++;
+        }
+        int positions = Math.max(1, sequences / 1000);
+        long[] bottom = new long[board.words()], upper = new long[board.words()], obstructed = new long[board.words()];
+        start = System.nanoTime();
+        for (int p = 0; p < positions; p++) {
+            Arrays.fill(bottom, 0);
+            Arrays.fill(upper, 0);
+            Arrays.fill(obstructed, 0);
+            for (int i = 0; i < 3; i++)
+                board.play(codes[p][i], bottom, upper, obstructed);
+            for (int code = 0; code < board.placements(); code++)
+                if (board.canFollow(code, bottom, upper, obstructed))
+                    legal++;
+        }
+        long legality = System.nanoTime() - start;
+        if (legal == 0)
+            throw new IllegalStateException(name + ": no legal placements");
+        System.out.printf("%-22s %12d %10d %12.1f %10d %14.1f %10.2f%n", name, placeable, onPegs, compile, valid, (double) validation / sequences, (double) legality / ((long) positions * board.placements()));
+    }
+
+    // The same, with packed placements through StepsGame
+    private static void runStandard(String name, int sequences) {
+        int[][] codes = randomSequences(BoardGeometry.STANDARD, sequences);
+        short[][] packed = new short[sequences][];
+        for (int i = 0; i < sequences; i++) {
+            packed[i] = new short[codes[i].length];
+            for (int j = 0; j < codes[i].length; j++)
+                packed[i][j] = (short) codes[i][j];
+        }
+        int valid = 0;
+        long start = System.nanoTime();
+        for (short[] sequence : packed)
+            if (StepsGame.isPlacementSequenceValid(sequence, sequence.length))
+                valid++;
+        long validation = System.nanoTime() - start;
+
+        int positions = Math.max(1, sequences / 1000), legal = 0;
+        start = System.nanoTime();
+        for (int p = 0; p < positions; p++)
+            for (int shape = 0; shape < Placement.SHAPES; shape++)
+                for (int orientation = 0; orientation < Placement.ORIENTATIONS; orientation++)
+                    legal += Long.bitCount(StepsGame.getLegalLocations(packed[p], 3, shape, orientation));
+        long legality = System.nanoTime() - start;
+        if (legal == 0)
+            throw new IllegalStateException(name + ": no legal placements");
+        System.out.printf("%-22s %12s %10s %12s %10d %14.1f %10.2f%n", name, "", "", "", valid, (double) validation / sequences, (double) legality / ((long) positions * Placement.COUNT));
+    }
+
+    // Random sequences of placeable placements, one of each shape, the first three valid
+    private static int[][] randomSequences(BoardGeometry board, int count) {
+        Random random = new Random(7);
+        int[][] sequences = new int[count][board.pieces().size()];
+        for (int[] sequence : sequences) {
+            for (int shape = 0; shape < sequence.length; shape++) {
+                do {
+                    sequence[shape] = board.code(shape, random.nextInt(Placement.ORIENTATIONS), random.nextInt(board.cells()));
+                } while (!board.isPlaceable(sequence[shape]) || (shape < 3 && !board.isPlacementSequenceValid(sequence, shape + 1)));
+            }
+        }
+        return sequences;
+    }
+}
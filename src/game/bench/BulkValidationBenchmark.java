@@ -0,0 +1,106 @@
+package game.bench;
+
+import game.BulkValidator;
+import game.Placement;
+import game.StepsGame;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Benchmark of bulk validation on 1, 2, 4 ... threads, up to the number of cores.
+ * <p>
+ * Validates random sequences of up to eight placements, about a fifth of them valid, as placement
+ * strings, as packed sequences and from a file of one placement per line, and reports the millions
+ * of sequences validated per second and the speed-up over calling StepsGame.isPlacementSequenceValid
+ * on each string in turn.  Every way must agree with the calls.
+ * <p>
+ * Usage: BulkValidationBenchmark [sequences]
+ */
+public class BulkValidationBenchmark {
+
+    private static final String[] SOLUTIONS = {"BGKFCNCHSAHQHFnEBvGAiDBg", "CEQEHuGEOBDxFGSHCiAALDBg", "AALBBGCAkDBgEAoFDNGHSHCi"};
+
+    public static void main(String[] args) throws IOException {
+        int sequences = args.length > 0 ? Integer.parseInt(args[0]) : 2000000;
+        int cores = Runtime.getRuntime().availableProcessors();
+        List<String> placements = randomPlacements(sequences);
+        short[][] packed = new short[sequences][];
+        for (int i = 0; i < sequences; i++)
+            packed[i] = Placement.parseSequence(placements.get(i));
+        Path file = Files.createTempFile("placements", ".txt");
+        Files.write(file, placements);
+
+        try {
+            System.out.printf("%d sequences on %d cores%n", sequences, cores);
+            System.out.printf("%-22s %8s %10s %10s %10s %10s%n", "", "threads", "valid", "ms", "M/s", "speed-up");
+            for (int round = 0; round < 2; round++) {
+                String label = round == 0 ? " (warm-up)" : "";
+                long start = System.nanoTime();
+                BitSet expected = new BitSet(sequences);
+                for (int i = 0; i < sequences; i++)
+                    if (StepsGame.isPlacementSequenceValid(placements.get(i)))
+                        expected.set(i);
+                long serial = System.nanoTime() - start;
+                report("one at a time" + label, 1, expected, serial, serial, sequences);
+
+                for (int threads = 1; threads <= cores; threads = threads < cores ? Math.min(2 * threads, cores) : threads + 1) {
+                    try (BulkValidator validator = new BulkValidator(threads)) {
+                        start = System.nanoTime();
+                        BitSet valid = validator.validate(placements);
+                        check(valid, expected, "strings");
+                        report("strings" + label, threads, valid, System.nanoTime() - start, serial, sequences);
+
+                        start = System.nanoTime();
+                        valid = validator.validate(packed);
+                        check(valid, expected, "packed");
+                        report("packed" + label, threads, valid, System.nanoTime() - start, serial, sequences);
+
+                        start = System.nanoTime();
+                        valid = validator.validate(file);
+                        check(valid, expected, "file");
+                        report("file" + label, threads, valid, System.nanoTime() - start, serial, sequences);
+                    }
+                }
+            }
+        } finally {
+            Files.delete(file);
+        }
+    }
+
+    private static void check(BitSet valid, BitSet expected, String way) {
+        if (!valid.equals(expected))
+            throw new IllegalStateException(way + ": " + valid.cardinality() + " valid, expected " + expected.cardinality());
+    }
+
+    private static void report(String name, int threads, BitSet valid, long nanos, long serial, int sequences) {
+        System.out.printf("%-22s %8d %10d %10.1f %10.2f %10.2f%n", name, threads, valid.cardinality(), nanos / 1e6, sequences * 1e3 / nanos, (double) serial / nanos);
+    }
+
+    // Prefixes of solutions with their pieces shuffled, and random pieces
+    private static List<String> randomPlacements(int count) {
+        Random random = new Random(3);
+        List<String> placements = new ArrayList<>(count);
+        while (placements.size() < count) {
+            List<String> pieces = new ArrayList<>();
+            if (random.nextBoolean()) {
+                String solution = SOLUTIONS[random.nextInt(SOLUTIONS.length)];
+                for (int i = 0; i < solution.length(); i += 3)
+                    pieces.add(solution.substring(i, i + 3));
+                Collections.shuffle(pieces, random);
+                pieces = pieces.subList(0, 1 + random.nextInt(8));
+            } else {
+                for (int shape = random.nextInt(8); shape < 8; shape++)
+                    pieces.add(Placement.toString(Placement.of(shape, random.nextInt(8), random.nextInt(Placement.LOCATIONS))));
+            }
+            placements.add(String.join("", pieces));
+        }
+        return placements;
+    }
+}
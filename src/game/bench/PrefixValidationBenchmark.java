@@ -0,0 +1,119 @@
+package game.bench;
+
+import game.BulkValidator;
+import game.Placement;
+import game.PrefixValidator;
+import game.StepsGame;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.function.LongSupplier;
+import java.util.function.Supplier;
+
+/**
+ * Benchmark of validating sequences which share prefixes with a PrefixValidator, against validating
+ * each one from an empty board.
+ * <p>
+ * Uses the solutions shipped with the game (assets/solutions), every order of the pieces of some of
+ * them, and those orders shuffled, so that a sequence no longer follows the ones it shares a prefix
+ * with.  For each way, reports the fastest of a few runs in milliseconds and the pieces checked per
+ * sequence.  Every way must agree with isPlacementSequenceValid.
+ * <p>
+ * Usage: PrefixValidationBenchmark [solutions to permute]
+ */
+public class PrefixValidationBenchmark {
+
+    // Runs of each way, of which the fastest is reported
+    private static final int RUNS = 5;
+
+    public static void main(String[] args) throws IOException {
+        int permuted = args.length > 0 ? Integer.parseInt(args[0]) : 20;
+        List<String> solutions = new ArrayList<>();
+        try (InputStream is = StepsGame.class.getResourceAsStream("gui/assets/solutions")) {
+            BufferedReader br = new BufferedReader(new InputStreamReader(is));
+            for (String line = br.readLine(); line != null; line = br.readLine())
+                if (!line.isEmpty())
+                    solutions.add(line);
+        }
+        List<String> permutations = new ArrayList<>();
+        Random random = new Random(7);
+        for (int n = 0; n < permuted; n++) {
+            String solution = solutions.get(random.nextInt(solutions.size()));
+            String[] pieces = new String[Placement.SHAPES];
+            for (int i = 0; i < pieces.length; i++)
+                pieces[i] = solution.substring(3 * i, 3 * i + 3);
+            StepsGame.permutation(pieces, 0, pieces.length - 1, permutations);
+        }
+        List<String> shuffled = new ArrayList<>(permutations);
+        Collections.shuffle(shuffled, random);
+
+        System.out.printf("%-32s %10s %10s %10s %12s%n", "", "sequences", "valid", "ms", "checks/seq");
+        try (BulkValidator bulk = new BulkValidator(1)) {
+            for (int round = 0; round < 3; round++) {
+                String label = round < 2 ? " (warm-up)" : "";
+                run("solutions" + label, repeat(solutions, 200), bulk);
+                run("permutations" + label, permutations, bulk);
+                run("shuffled" + label, shuffled, bulk);
+            }
+        }
+    }
+
+    // The solutions file many times over, each copy parsed afresh
+    private static List<String> repeat(List<String> placements, int times) {
+        List<String> repeated = new ArrayList<>(placements.size() * times);
+        for (int i = 0; i < times; i++)
+            for (String placement : placements)
+                repeated.add(new String(placement));
+        return repeated;
+    }
+
+    private static void run(String name, List<String> placements, BulkValidator bulk) {
+        short[][] packed = new short[placements.size()][];
+        long pieces = 0;
+        for (int i = 0; i < packed.length; i++) {
+            packed[i] = Placement.parseSequence(placements.get(i));
+            pieces += checked(packed[i]);
+        }
+        long total = pieces;
+        BitSet expected = time(name + " one at a time", packed.length, () -> total, null, () -> {
+            BitSet valid = new BitSet();
+            for (int i = 0; i < packed.length; i++)
+                if (StepsGame.isPlacementSequenceValid(packed[i]))
+                    valid.set(i);
+            return valid;
+        });
+        time(name + " bulk", packed.length, () -> total, expected, () -> bulk.validate(packed));
+        PrefixValidator[] prefix = new PrefixValidator[1];
+        time(name + " shared prefixes", packed.length, () -> prefix[0].getChecks(), expected, () -> (prefix[0] = new PrefixValidator()).validate(packed));
+    }
+
+    // The pieces isPlacementSequenceValid checks, up to the first which cannot be played
+    private static int checked(short[] sequence) {
+        for (int length = 1; length <= sequence.length; length++)
+            if (!StepsGame.isPlacementSequenceValid(sequence, length))
+                return length;
+        return sequence.length;
+    }
+
+    // Validate a few times, then report the fastest time and the pieces checked by the last run
+    private static BitSet time(String name, int sequences, LongSupplier checks, BitSet expected, Supplier<BitSet> validate) {
+        BitSet valid = null;
+        long nanos = Long.MAX_VALUE;
+        for (int run = 0; run < RUNS; run++) {
+            long start = System.nanoTime();
+            valid = validate.get();
+            nanos = Math.min(nanos, System.nanoTime() - start);
+        }
+        if (expected != null && !valid.equals(expected))
+            throw new IllegalStateException(name + ": " + valid.cardinality() + " valid, expected " + expected.cardinality());
+        System.out.printf("%-32s %10d %10d %10.1f %12.2f%n", name, sequences, valid.cardinality(), nanos / 1e6, (double) checks.getAsLong() / sequences);
+        return valid;
+    }
+}
@@ -0,0 +1,304 @@
+package game.bench;
+
+import game.Placement;
+import game.PuzzleCatalogue;
+import game.StepsGame;
+
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.lang.management.ManagementFactory;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Load-test harness replaying game sessions against the engine from many threads.
+ * <p>
+ * A session trace is the sequence of engine calls made while playing one puzzle: solving the
+ * starting placement, then for each move a few drag validations at wrong locations, a burst of
+ * hints and the validation of the right move.  Traces are synthesised from the puzzle catalogue,
+ * or read from a file with one call per line:
+ * - "S placement"            getSolutions
+ * - "V placement"            isPlacementSequenceValid
+ * - "H placement objective"  getViablePiecePlacements
+ * Sessions are separated by blank lines.
+ * <p>
+ * Every call is first run on a single thread to record its expected result.  The sessions are
+ * then replayed on N threads, reporting throughput, latency percentiles per call, allocation rate,
+ * and any result which differs from the single-threaded run.
+ * <p>
+ * Usage: SessionReplay [--threads N] [--sessions N] [--hints N] [--trace file] [--record file]
+ */
+public class SessionReplay {
+
+    private static final char SOLVE = 'S';
+    private static final char VALIDATE = 'V';
+    private static final char HINT = 'H';
+    private static final char[] KINDS = {SOLVE, VALIDATE, HINT};
+
+    /**
+     * One engine call of a session, with the result of the single-threaded run.
+     */
+    static class Call {
+        final char kind;
+        final String placement;
+        final String objective;
+        String expected;
+
+        Call(char kind, String placement, String objective) {
+            this.kind = kind;
+            this.placement = placement;
+            this.objective = objective;
+        }
+
+        String run() {
+            switch (kind) {
+                case SOLVE:
+                    String[] solutions = StepsGame.solutions(placement).toArray(String[]::new);
+                    return solutions.length + ":" + Arrays.hashCode(solutions);
+                case VALIDATE:
+                    return String.valueOf(StepsGame.isPlacementSequenceValid(placement));
+                case HINT:
+                    Set<String> viable = StepsGame.getViablePiecePlacements(placement, objective);
+                    return String.valueOf(viable);
+                default:
+                    throw new IllegalStateException("Unknown call " + kind);
+            }
+        }
+
+        @Override
+        public String toString() {
+            return kind + " " + placement + (objective == null ? "" : " " + objective);
+        }
+    }
+
+    /**
+     * Synthesise one session for each puzzle of the catalogue, following its first solution.
+     *
+     * @param hints  The number of hints asked before each move
+     * @param random Chooses the wrong drop locations
+     */
+    static List<List<Call>> synthesise(int hints, Random random) {
+        List<List<Call>> sessions = new ArrayList<>();
+        PuzzleCatalogue catalogue = PuzzleCatalogue.standard();
+        for (int difficulty = 0; difficulty < catalogue.difficulties(); difficulty++) {
+            for (int puzzle = 0; puzzle < catalogue.count(difficulty); puzzle++) {
+                String starting = Placement.toString(catalogue.get(difficulty, puzzle));
+                List<Call> session = new ArrayList<>();
+                session.add(new Call(SOLVE, starting, null));
+                String solution = StepsGame.solutions(starting).findFirst().orElse(null);
+                if (solution != null) {
+                    for (int i = starting.length(); i < solution.length(); i += 3) {
+                        String current = solution.substring(0, i);
+                        String move = solution.substring(i, i + 3);
+                        for (int drag = 0; drag < 3; drag++) {
+                            int location = random.nextInt(50);
+                            char wrong = (char) (location < 25 ? 'A' + location : 'a' + location - 25);
+                            session.add(new Call(VALIDATE, current + move.substring(0, 2) + wrong, null));
+                        }
+                        for (int hint = 0; hint < hints; hint++)
+                            session.add(new Call(HINT, current, solution));
+                        session.add(new Call(VALIDATE, current + move, null));
+                    }
+                }
+                sessions.add(session);
+            }
+        }
+        return sessions;
+    }
+
+    /**
+     * Read a trace of sessions.
+     *
+     * @throws IOException              if the trace cannot be read
+     * @throws IllegalArgumentException if a line is not a call of a known kind with its fields
+     */
+    static List<List<Call>> read(Path trace) throws IOException {
+        List<List<Call>> sessions = new ArrayList<>();
+        List<Call> session = new ArrayList<>();
+        List<String> lines = Files.readAllLines(trace);
+        for (int number = 1; number <= lines.size(); number++) {
+            String line = lines.get(number - 1);
+            String[] fields = line.trim().split("\\s+");
+            if (fields[0].isEmpty()) {
+                if (!session.isEmpty())
+                    sessions.add(session);
+                session = new ArrayList<>();
+                continue;
+            }
+            // A hint has an objective as well as a placement
+            char kind = fields[0].length() == 1 ? fields[0].charAt(0) : 0;
+            int expected = kind == HINT ? 3 : kind == SOLVE || kind == VALIDATE ? 2 : -1;
+            if (fields.length != expected)
+                throw new IllegalArgumentException("Bad call at line " + number + " of " + trace + ": " + line);
+            session.add(new Call(kind, fields[1], kind == HINT ? fields[2] : null));
+        }
+        if (!session.isEmpty())
+            sessions.add(session);
+        return sessions;
+    }
+
+    static void write(List<List<Call>> sessions, Path trace) throws IOException {
+        try (PrintWriter out = new PrintWriter(Files.newBufferedWriter(trace))) {
+            for (List<Call> session : sessions) {
+                for (Call call : session)
+                    out.println(call);
+                out.println();
+            }
+        }
+    }
+
+    /**
+     * The measurements of one replaying thread.
+     */
+    static class Worker implements Runnable {
+        final List<List<Call>> sessions;
+        final int first, count, stride;
+        final CountDownLatch start;
+        final long[][] latencies = new long[KINDS.length][];
+        final int[] recorded = new int[KINDS.length];
+        long calls, divergences, allocated;
+        String firstDivergence;
+
+        Worker(List<List<Call>> sessions, int first, int count, int stride, CountDownLatch start) {
+            this.sessions = sessions;
+            this.first = first;
+            this.count = count;
+            this.stride = stride;
+            this.start = start;
+            for (int i = 0; i < KINDS.length; i++)
+                latencies[i] = new long[1024];
+        }
+
+        @Override
+        public void run() {
+            com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+            try {
+                start.await();
+            } catch (InterruptedException e) {
+                return;
+            }
+            long allocatedBefore = threads.getCurrentThreadAllocatedBytes();
+            for (int n = 0; n < count; n++) {
+                for (Call call : sessions.get((first + n * stride) % sessions.size())) {
+                    long begin = System.nanoTime();
+                    String result = call.run();
+                    record(call.kind, System.nanoTime() - begin);
+                    calls++;
+                    if (!result.equals(call.expected)) {
+                        divergences++;
+                        if (firstDivergence == null)
+                            firstDivergence = call + ": expected " + call.expected + " but got " + result;
+                    }
+                }
+            }
+            allocated = threads.getCurrentThreadAllocatedBytes() - allocatedBefore;
+        }
+
+        private void record(char kind, long nanos) {
+            int k = kind == SOLVE ? 0 : kind == VALIDATE ? 1 : 2;
+            if (recorded[k] == latencies[k].length)
+                latencies[k] = Arrays.copyOf(latencies[k], 2 * recorded[k]);
+            latencies[k][recorded[k]++] = nanos;
+        }
+    }
+
+    public static void main(String[] args) throws Exception {
+        int threads = Runtime.getRuntime().availableProcessors();
+        int sessionCount = 2000;
+        int hints = 4;
+        Path trace = null, record = null;
+        for (int i = 0; i < args.length - 1; i += 2) {
+            switch (args[i]) {
+                case "--threads":
+                    threads = Integer.parseInt(args[i + 1]);
+                    break;
+                case "--sessions":
+                    sessionCount = Integer.parseInt(args[i + 1]);
+                    break;
+                case "--hints":
+                    hints = Integer.parseInt(args[i + 1]);
+                    break;
+                case "--trace":
+                    trace = Paths.get(args[i + 1]);
+                    break;
+                case "--record":
+                    record = Paths.get(args[i + 1]);
+                    break;
+                default:
+                    throw new IllegalArgumentException("Unknown option " + args[i]);
+            }
+        }
+
+        List<List<Call>> sessions = trace == null ? synthesise(hints, new Random(42)) : read(trace);
+        if (record != null)
+            write(sessions, record);
+
+        // Single-threaded reference results, which also warm up the engine
+        long reference = 0;
+        for (List<Call> session : sessions) {
+            for (Call call : session) {
+                call.expected = call.run();
+                reference++;
+            }
+        }
+        System.out.printf("%d sessions of %d calls, replaying %d sessions on %d threads%n", sessions.size(), reference, sessionCount, threads);
+
+        CountDownLatch start = new CountDownLatch(1);
+        Worker[] workers = new Worker[threads];
+        Thread[] running = new Thread[threads];
+        for (int i = 0; i < threads; i++) {
+            int count = sessionCount / threads + (i < sessionCount % threads ? 1 : 0);
+            workers[i] = new Worker(sessions, i, count, threads, start);
+            running[i] = new Thread(workers[i], "replay-" + i);
+            running[i].start();
+        }
+        long begin = System.nanoTime();
+        start.countDown();
+        for (Thread thread : running)
+            thread.join();
+        double seconds = (System.nanoTime() - begin) / 1e9;
+
+        long calls = 0, divergences = 0, allocated = 0;
+        for (Worker worker : workers) {
+            calls += worker.calls;
+            divergences += worker.divergences;
+            allocated += worker.allocated;
+            if (worker.firstDivergence != null)
+                System.out.println("Divergence: " + worker.firstDivergence);
+        }
+        System.out.printf("%d calls in %.2fs: %.0f calls/s, %.0f sessions/s%n", calls, seconds, calls / seconds, sessionCount / seconds);
+        System.out.printf("allocated %.1f MB, %.1f MB/s, %.0f bytes/call%n", allocated / 1e6, allocated / 1e6 / seconds, (double) allocated / Math.max(1, calls));
+        System.out.printf("%-24s %8s %8s %8s %8s %8s %8s%n", "latency (us)", "calls", "p50", "p90", "p99", "p99.9", "max");
+        String[] names = {"getSolutions", "isPlacementSequenceValid", "getViablePiecePlacements"};
+        for (int k = 0; k < KINDS.length; k++) {
+            int total = 0;
+            for (Worker worker : workers)
+                total += worker.recorded[k];
+            long[] all = new long[total];
+            int offset = 0;
+            for (Worker worker : workers) {
+                System.arraycopy(worker.latencies[k], 0, all, offset, worker.recorded[k]);
+                offset += worker.recorded[k];
+            }
+            Arrays.sort(all);
+            System.out.printf("%-24s %8d %8.1f %8.1f %8.1f %8.1f %8.1f%n", names[k], total,
+                    percentile(all, 50), percentile(all, 90), percentile(all, 99), percentile(all, 99.9), total == 0 ? 0 : all[total - 1] / 1e3);
+        }
+        System.out.println(divergences == 0 ? "No divergence from the single-threaded run" : divergences + " results diverged from the single-threaded run");
+    }
+
+    private static double percentile(long[] sorted, double percent) {
+        if (sorted.length == 0)
+            return 0;
+        int index = (int) Math.ceil(percent / 100 * sorted.length) - 1;
+        return sorted[Math.max(0, Math.min(sorted.length - 1, index))] / 1e3;
+    }
+}
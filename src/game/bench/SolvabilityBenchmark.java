@@ -0,0 +1,104 @@
+package game.bench;
+
+import game.Placement;
+import game.PuzzleCatalogue;
+import game.Solver;
+import game.SolvabilityCache;
+import game.StepsGame;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Benchmark of checking after every move whether the position can still be finished, as the game does.
+ * <p>
+ * Plays random games from the puzzles of the catalogue, placing legal pieces and sometimes taking the
+ * last one off again, and checks each position through a SolvabilityCache.  Reports the latency of
+ * the checks which searched the board and of those answered from the cache, at the median, 99th
+ * percentile and worst, and the time taken on the calling thread to hand a check to the background,
+ * which is all a drop waits for.
+ * <p>
+ * Usage: SolvabilityBenchmark [games]
+ */
+public class SolvabilityBenchmark {
+
+    public static void main(String[] args) throws Exception {
+        int games = args.length > 0 ? Integer.parseInt(args[0]) : 2000;
+        List<short[]> puzzles = new ArrayList<>();
+        PuzzleCatalogue catalogue = PuzzleCatalogue.standard();
+        for (int difficulty = 0; difficulty < catalogue.difficulties(); difficulty++)
+            for (int i = 0; i < catalogue.count(difficulty); i++)
+                puzzles.add(catalogue.get(difficulty, i));
+
+        for (int round = 0; round < 2; round++) {
+            String label = round == 0 ? " (warm-up)" : "";
+            Random random = new Random(round);
+            SolvabilityCache cache = new SolvabilityCache(4096);
+            long[] searched = new long[games * 16], cached = new long[games * 16];
+            int searches = 0, hits = 0, solvable = 0;
+            for (int game = 0; game < games; game++) {
+                short[] placement = puzzles.get(random.nextInt(puzzles.size()));
+                for (int move = 0; move < 12 && placement.length < Placement.SHAPES; move++) {
+                    placement = random.nextInt(4) == 0 && placement.length > 1
+                            ? Arrays.copyOf(placement, placement.length - 1) : randomMove(placement, random);
+                    if (placement == null)
+                        break;
+                    long misses = cache.getMisses();
+                    long start = System.nanoTime();
+                    if (cache.isSolvable(placement, placement.length))
+                        solvable++;
+                    long time = System.nanoTime() - start;
+                    if (cache.getMisses() > misses)
+                        searched[searches++] = time;
+                    else
+                        cached[hits++] = time;
+                }
+            }
+            report("searched" + label, searched, searches);
+            report("cached" + label, cached, hits);
+            System.out.printf("%d positions, %d solvable%n", searches + hits, solvable);
+        }
+
+        // What the JavaFX thread waits for on each drop
+        ExecutorService checker = Executors.newSingleThreadExecutor();
+        SolvabilityCache cache = new SolvabilityCache(4096);
+        Random random = new Random(9);
+        long[] handoff = new long[games];
+        CompletableFuture<Boolean> last = null;
+        for (int i = 0; i < games; i++) {
+            short[] placement = randomMove(puzzles.get(random.nextInt(puzzles.size())), random);
+            if (placement == null)
+                placement = puzzles.get(0);
+            long start = System.nanoTime();
+            last = cache.isSolvableAsync(placement, checker);
+            handoff[i] = System.nanoTime() - start;
+        }
+        last.get();
+        checker.shutdown();
+        report("hand-off", handoff, games);
+    }
+
+    // The position after a random legal move with a piece on its pegs, or null if there is none
+    private static short[] randomMove(short[] placement, Random random) {
+        List<Short> moves = new ArrayList<>();
+        for (short piece = 0; piece < Placement.COUNT; piece++)
+            if (Placement.indexOfShape(placement, placement.length, Placement.shape(piece)) < 0 && Solver.isOnPegs(piece)
+                    && StepsGame.isPlacementSequenceValid(Placement.append(placement, piece)))
+                moves.add(piece);
+        return moves.isEmpty() ? null : Placement.append(placement, moves.get(random.nextInt(moves.size())));
+    }
+
+    private static void report(String name, long[] times, int count) {
+        if (count == 0)
+            return;
+        long[] sorted = Arrays.copyOf(times, count);
+        Arrays.sort(sorted);
+        System.out.printf("%-20s %8d checks  p50 %8.3f ms  p99 %8.3f ms  max %8.3f ms%n", name, count,
+                sorted[count / 2] / 1e6, sorted[Math.min(count - 1, count * 99 / 100)] / 1e6, sorted[count - 1] / 1e6);
+    }
+}
@@ -0,0 +1,88 @@
+package game.bench;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Repeatable startup benchmark for the game.
+ * <p>
+ * Launches the game in a fresh JVM a number of times, with startup timing enabled and an
+ * empty home directory so that no saved game is resumed.  Each run exits once the background
+ * loading has finished.  Reports the median and best time to the first frame, measured from
+ * launching the process, and of each startup phase.  Needs a display.
+ * <p>
+ * Usage: StartupBenchmark [runs]
+ */
+public class StartupBenchmark {
+
+    private static final Pattern PHASE = Pattern.compile("startup (.+?)\\s+([\\d.]+) ms, done at\\s+([\\d.]+) ms");
+
+    public static void main(String[] args) throws Exception {
+        int runs = args.length > 0 ? Integer.parseInt(args[0]) : 10;
+        String java = ProcessHandle.current().info().command().orElse("java");
+        String classpath = System.getProperty("java.class.path");
+
+        List<Double> firstFrames = new ArrayList<>();
+        Map<String, List<Double>> phases = new LinkedHashMap<>();
+        for (int run = 0; run < runs; run++) {
+            Path home = Files.createTempDirectory("iqsteps");
+            ProcessBuilder builder = new ProcessBuilder(java, "-cp", classpath,
+                    "-Duser.home=" + home, "-Diqsteps.startup.timing=true", "-Diqsteps.startup.exit=true",
+                    "game.gui.Board");
+            builder.redirectErrorStream(true);
+            long launched = System.nanoTime();
+            Process process = builder.start();
+            try (BufferedReader reader = new BufferedReader(new InputStreamReader(process.getInputStream()))) {
+                String line;
+                while ((line = reader.readLine()) != null) {
+                    Matcher matcher = PHASE.matcher(line);
+                    if (!matcher.find())
+                        continue;
+                    String phase = matcher.group(1);
+                    phases.computeIfAbsent(phase, p -> new ArrayList<>()).add(Double.parseDouble(matcher.group(2)));
+                    if (phase.equals("first frame"))
+                        firstFrames.add((System.nanoTime() - launched) / 1e6);
+                }
+            }
+            if (!process.waitFor(60, TimeUnit.SECONDS)) {
+                process.destroyForcibly();
+                throw new IOException("The game did not exit after starting");
+            }
+            deleteJournal(home);
+        }
+
+        if (firstFrames.isEmpty()) {
+            System.out.println("The game never showed a frame, is there a display?");
+            return;
+        }
+        System.out.printf("%d runs%n", runs);
+        System.out.printf("%-24s %10s %10s%n", "ms", "median", "best");
+        print("first frame (process)", firstFrames);
+        for (Map.Entry<String, List<Double>> phase : phases.entrySet())
+            print(phase.getKey(), phase.getValue());
+    }
+
+    private static void print(String name, List<Double> times) {
+        double[] sorted = times.stream().mapToDouble(Double::doubleValue).toArray();
+        Arrays.sort(sorted);
+        System.out.printf("%-24s %10.1f %10.1f%n", name, sorted[sorted.length / 2], sorted[0]);
+    }
+
+    private static void deleteJournal(Path home) throws IOException {
+        Path directory = home.resolve(".iqsteps");
+        Files.deleteIfExists(directory.resolve("journal"));
+        Files.deleteIfExists(directory);
+        Files.deleteIfExists(home);
+    }
+}
@@ -1,9 +1,21 @@
 package game.gui;
 
+import game.CompatibleSolutions;
+import game.GameJournal;
+import game.Placement;
+import game.PuzzleCatalogue;
+import game.SearchBudget;
+import game.SingleFlight;
+import game.SolutionIndex;
+import game.SolvabilityCache;
 import game.StepsGame;
 import javafx.animation.FadeTransition;
 import javafx.application.Application;
+import javafx.application.Platform;
+import javafx.beans.property.ReadOnlyBooleanProperty;
+import javafx.beans.property.ReadOnlyBooleanWrapper;
 import javafx.scene.Group;
+import javafx.scene.Node;
 import javafx.scene.Scene;
 import javafx.scene.control.Button;
 import javafx.scene.control.Slider;
@@ -28,7 +40,17 @@ import javafx.stage.Stage;
 import javafx.util.Duration;
 
 import java.io.*;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
 import java.util.*;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
 
 import static game.gui.Piece.URI_BASE;
 
@@ -42,35 +64,74 @@ public class Board extends Application {
     private final Group pieces = new Group();
     private final Group draggablePieces = new Group();
 
+    // Highlights the locations where the dragged piece can be dropped
+    private final Group legalDrops = new Group();
+
     // Message on completion
     private final Text completionText = new Text("Congratulations!");
 
     // Message on no hint
     private final Text noHintText = new Text("You're on a wrong way...");
 
-    private Text info = new Text("Press or hold / \nto get hint.\n\nPress P to pause\nor play music.");
+    private Text info = new Text("Press or hold / \nto get hint,\nB for the best one.\nPress P to pause\nor play music.");
 
     //show the difficulty now
     private final Text DiffText = new Text();
 
+    // Loaded in the background, null until then
     private MediaPlayer mp;
 
-    // For retrieving the answers
-    static StepsGame sg;
+    // The solutions still holding every piece the player has placed
+    private static CompatibleSolutions compatible;
+
+    // Whether the pieces on the board can still be finished, checked in the background after every move
+    private final ReadOnlyBooleanWrapper solvable = new ReadOnlyBooleanWrapper(null, "solvable", true);
+    private static final SolvabilityCache solvability = new SolvabilityCache(4096);
+    // The most time a check may take, and the budget of the latest one, cancelled by the next move
+    private static final long SOLVABILITY_MILLIS = 500;
+    private SearchBudget solvabilityBudget;
+    private final ExecutorService checker = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "solvability");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    // Hints are worked out in the background, one position at a time, however fast the hint key repeats
+    private final ExecutorService hinter = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "hints");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private final SingleFlight<String, Short> hints = new SingleFlight<>(hinter);
+    // The hint last journaled, shared by every repeat of the key which asked for it
+    private CompletableFuture<Short> journaledHint;
 
     // Encodes all states of the game
     public static String currentPlacements = "";
-    private static String[] finalPlacements;
     private String initialPlacements = "";
 
-    private static List<Location> pegs = new ArrayList<>();
-    private static List<Location> noPeg = new ArrayList<>();
+    // Records the moves of each game, so it can be resumed after a restart.  Moves are written every few
+    // seconds and when the game closes, rather than one write each
+    private GameJournal journal;
+    private static final long JOURNAL_FLUSH_SECONDS = 5;
+    private final ScheduledExecutorService journalFlusher = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "journal");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private static final LocationGrid locations = new LocationGrid();
+
+    // Reused for checking moves, so dragging a piece does not allocate
+    private final short[] sequence = new short[Placement.SHAPES];
 
     private final Button newGameBtn = new Button("New");
     private final Slider diffSlider = new Slider();
     private final Button visableHintBtn = new Button("Hint");
     private static Piece visableHint = null;
     private static boolean hinting = false;
+    // Whether hints are the pieces keeping the most solutions rather than from a random solution
+    private static boolean bestHints = false;
     private int hintTimer = 0;
     private final int TIME_TO_DISPLAY_HINT = 20;
 
@@ -138,7 +199,10 @@ public class Board extends Application {
             setOnMouseDragged(event -> {
                 if (event.getButton() == MouseButton.PRIMARY) {
                     if (canBeDragged()) {
-                        takeOutPieceFromBoard();
+                        if (!dragging) {
+                            takeOutPieceFromBoard();
+                            showLegalDrops();
+                        }
                         setLayoutX(getLayoutX() + event.getSceneX() - mouseX);
                         setLayoutY(getLayoutY() + event.getSceneY() - mouseY);
                         mouseX = event.getSceneX();
@@ -153,12 +217,20 @@ public class Board extends Application {
             setOnMouseReleased(event -> {
                 if (dragging && event.getButton() == MouseButton.PRIMARY) {
                     dragging = false;
+                    legalDrops.setVisible(false);
                     Location location = getNearestLocation();
                     if (location != null) {
-                        this.placement = this.placement.substring(0, 2) + location.getId();
+                        short piece = Placement.of(placement.charAt(0) - 'A', placement.charAt(1) - 'A', Placement.locationIndex(location.getId().charAt(0)));
                         // Test whether the nearest location is valid
-                        if (StepsGame.isPlacementSequenceValid(currentPlacements + this.placement)) {
+                        int length = Placement.parseSequence(currentPlacements, sequence);
+                        sequence[length] = piece;
+                        if (StepsGame.isPlacementSequenceValid(sequence, length + 1)) {
+                            this.placement = Placement.toString(piece);
                             currentPlacements += this.placement;
+                            compatible.place(piece);
+                            checkSolvability();
+                            if (journal != null)
+                                journal.place(piece);
                             root.getChildren().remove(visableHint);
                             setLayoutX(location.getX() - PIECE_SIDE_LENGTH / 2);
                             setLayoutY(location.getY() - PIECE_SIDE_LENGTH / 2);
@@ -218,12 +290,15 @@ public class Board extends Application {
          * Rotate the piece by scroll up or down.
          */
         private void rotate(boolean scrollDown) {
-            double degree = scrollDown ? getRotate() + 90 : getRotate() + 270;
-            setRotate(degree % 360);
-            int rotate = (int) getRotate() / 90;
-            char secondChar = placement.charAt(1);
-            secondChar = secondChar < 'E' ? (char) (rotate + 'A') : (char) (rotate + 'E');
+            int index = placement.charAt(1) - 'A';
+            int rotate = (index + (scrollDown ? 1 : 3)) % 4;
+            char secondChar = index < 4 ? (char) (rotate + 'A') : (char) (rotate + 'E');
             setPlacement(placement.substring(0, 1) + String.valueOf(secondChar));
+            showOrientation();
+            if (journal != null)
+                journal.rotate(Placement.of(placement.charAt(0) - 'A', secondChar - 'A', 0));
+            if (dragging)
+                showLegalDrops();
         }
 
         /**
@@ -243,8 +318,40 @@ public class Board extends Application {
             secondChar = secondChar < 'E' ? (char) (secondChar + 4) : (char) (secondChar - 4);
             setPlacement(placement.substring(0, 1) + String.valueOf(secondChar));
             int index = placement.charAt(1) - 'A';
-            setImage(new Image(Board.class.getResource(URI_BASE + placement.substring(0, 1) + (index < 4 ? "A" : "E") + ".png").toString()));
-            setRotate(90 * (index < 4 ? placement.charAt(1) - 'A' : placement.charAt(1) - 'E'));
+            showOrientation();
+            if (journal != null)
+                journal.flip(Placement.of(placement.charAt(0) - 'A', index, 0));
+            if (dragging)
+                showLegalDrops();
+        }
+
+        /**
+         * Highlight the locations where the piece can be dropped in its current orientation.
+         * Only done when a drag starts or the piece turns, not as the mouse moves.
+         */
+        private void showLegalDrops() {
+            int length = Placement.parseSequence(currentPlacements, sequence);
+            long legal = StepsGame.getLegalLocations(sequence, length, placement.charAt(0) - 'A', placement.charAt(1) - 'A');
+            for (int i = 0; i < Placement.LOCATIONS; i++)
+                legalDrops.getChildren().get(i).setVisible((legal & 1L << i) != 0);
+            legalDrops.setVisible(true);
+            // Above the pieces on the board, below the one being dragged
+            legalDrops.toFront();
+            draggablePieces.toFront();
+        }
+
+        /**
+         * Put the piece back on the board where a resumed game had it.
+         *
+         * @param placement The piece placement
+         * @param location  Its location on the board
+         */
+        private void restore(String placement, Location location) {
+            setPlacement(placement);
+            showOrientation();
+            resizeToNormal();
+            setLayoutX(location.getX() - PIECE_SIDE_LENGTH / 2);
+            setLayoutY(location.getY() - PIECE_SIDE_LENGTH / 2);
         }
 
         /**
@@ -253,16 +360,15 @@ public class Board extends Application {
          * @return True if it hasn't been placed or obstructed by any other piece.
          */
         private boolean canBeDragged() {
-            if (!currentPlacements.contains(placement.substring(0, 2)))
+            int length = Placement.parseSequence(currentPlacements, sequence);
+            int index = Placement.indexOfShape(sequence, length, placement.charAt(0) - 'A');
+            if (index < 0 || Placement.orientation(sequence[index]) != placement.charAt(1) - 'A')
                 return true;
-            String withPosition = "";
-            for (int i = 0; i < currentPlacements.length() / 3; i++) {
-                String piece = currentPlacements.substring(3 * i, 3 * i + 3);
-                if (piece.substring(0, 2).equals(placement.substring(0, 2)))
-                    withPosition = piece;
-            }
-            String tempCurrent = currentPlacements;
-            return StepsGame.isPlacementSequenceValid(tempCurrent.replace(withPosition, "") + withPosition);
+            // Move the piece to the end of the sequence, it can be taken away if the sequence is still valid
+            short piece = sequence[index];
+            System.arraycopy(sequence, index + 1, sequence, index, length - index - 1);
+            sequence[length - 1] = piece;
+            return StepsGame.isPlacementSequenceValid(sequence, length);
         }
 
         /**
@@ -270,8 +376,19 @@ public class Board extends Application {
          * Used in getting a piece back to unplaced area.
          */
         private void takeOutPieceFromBoard() {
-            if (currentPlacements.contains(placement.substring(0, 2)))
-                currentPlacements = currentPlacements.replace(placement, "");
+            if (placement.length() < 3)
+                return;
+            // Only a piece on the board has a location, and it is only removed once per drag
+            for (int i = 0; i < currentPlacements.length(); i += 3) {
+                if (currentPlacements.startsWith(placement, i)) {
+                    currentPlacements = currentPlacements.substring(0, i) + currentPlacements.substring(i + 3);
+                    compatible.remove(Placement.parse(placement));
+                    checkSolvability();
+                    if (journal != null)
+                        journal.remove(Placement.parse(placement));
+                    return;
+                }
+            }
         }
 
 
@@ -281,29 +398,7 @@ public class Board extends Application {
          * @return A valid location if close enough
          */
         private Location getNearestLocation() {
-            Location nearest = null;
-            double min = 1024;
-            double distance;
-            List<Location> list = placement.charAt(1) < 'E' ? pegs : noPeg;
-            for (Location location : list) {
-                distance = getDistance(location.getX(), location.getY());
-                if (distance < min) {
-                    min = distance;
-                    nearest = location;
-                }
-            }
-            return min < 30 ? nearest : null;
-        }
-
-        /**
-         * Get the distance bewteen the piece and a pair of x and y coordinates.
-         *
-         * @param x x coordinate
-         * @param y y coordinate
-         * @return the distance
-         */
-        private double getDistance(double x, double y) {
-            return Math.sqrt(Math.pow(getLayoutX() + PIECE_SIDE_LENGTH / 2 - x, 2) + Math.pow(getLayoutY() + PIECE_SIDE_LENGTH / 2 - y, 2));
+            return locations.snap(getLayoutX() + PIECE_SIDE_LENGTH / 2, getLayoutY() + PIECE_SIDE_LENGTH / 2, placement.charAt(1) < 'E');
         }
     }
 
@@ -315,33 +410,58 @@ public class Board extends Application {
      * @return A location object for the piece
      */
     public Location getPieceLocation(String placement) {
-        String pl = placement.substring(2, 3);
-        List<Location> list = placement.charAt(1) < 'E' ? pegs : noPeg;
-        for (Location location : list) {
-            if (pl.equals(location.getId()))
-                return location;
-        }
-        return null;
+        return locations.get(placement);
     }
 
 
+    /**
+     * Ask for a hint for the pieces on the board, worked out in the background.  Requests for the same
+     * position and kind of hint, as when the hint key repeats, share one search and its hint, which is
+     * journaled once.
+     *
+     * @param then Given the hint on the JavaFX thread, Placement.NONE if there is none, unless the
+     *             player has moved on meanwhile
+     */
+    private void requestHint(Consumer<Short> then) {
+        // From a random solution still holding the player's pieces which can be finished from here,
+        // or the piece after which the most of them can be finished
+        String placements = currentPlacements;
+        boolean best = bestHints;
+        CompatibleSolutions tracker = compatible;
+        int starting = initialPlacements.length() / 3;
+        CompletableFuture<Short> hint = hints.request((best ? "best " : "") + placements, () -> {
+            // Copied only when a search has to be made, as the player may have moved on since
+            short[] placement = Placement.parseSequence(placements);
+            CompatibleSolutions solutions = tracker.copy();
+            short[] moves = solutions.getPlaced();
+            if (moves.length != placement.length - starting || !Arrays.equals(moves, 0, moves.length, placement, starting, placement.length))
+                throw new CancellationException("The player has moved on from " + placements);
+            return best ? solutions.bestHint(placement) : solutions.hint(placement, new Random());
+        });
+        hint.whenComplete((viable, e) -> Platform.runLater(() -> {
+            if (e == null && placements.equals(currentPlacements)) {
+                if (journal != null && hint != journaledHint)
+                    journal.hint(viable);
+                journaledHint = hint;
+                then.accept(viable);
+            } else {
+                // A hint for a position the player has left is dropped
+                visableHintBtn.setDisable(false);
+                newGameBtn.setDisable(false);
+            }
+        }));
+    }
+
     /**
      * Select a hint from viable pieces (Task 6).
      *
+     * @param viable The hint, or Placement.NONE
      * @return True if existing any hint.
      */
-    boolean setVisableHint() {
-        String randomFinal = finalPlacements[new Random().nextInt(finalPlacements.length)];
-        Set<String> viablePieces = StepsGame.getViablePiecePlacements(currentPlacements, randomFinal);
-        try {
-            Iterator it = viablePieces.iterator();
-            if (it.hasNext())
-                visableHint = new Piece((String) it.next());
-            else
-                return false;
-        } catch (NullPointerException e) {
+    boolean setVisableHint(short viable) {
+        if (viable == Placement.NONE)
             return false;
-        }
+        visableHint = new Piece(Placement.toString(viable));
         Location location = getPieceLocation(visableHint.placement);
         visableHint.setLayoutX(location.getX() - PIECE_SIDE_LENGTH / 2);
         visableHint.setLayoutY(location.getY() - PIECE_SIDE_LENGTH / 2);
@@ -354,8 +474,12 @@ public class Board extends Application {
      * 2. The hint fades out within 3 seconds using FadeTransition.
      */
     void showVisableHint() {
+        requestHint(this::showVisableHint);
+    }
+
+    private void showVisableHint(short viable) {
         // Implement hints
-        if (setVisableHint()) {
+        if (setVisableHint(viable)) {
             root.getChildren().add(visableHint);
             if (Math.random() > 0.5) {
                 FadeTransition ft = new FadeTransition(Duration.millis(850), visableHint);
@@ -449,59 +573,25 @@ public class Board extends Application {
      */
     private void initStartingPlacements() {
         // Implement starting placements
-        String startingPlacements = "";
-        try {
-            InputStream is = Board.class.getResourceAsStream("assets/starting");
-            BufferedReader br = new BufferedReader(new InputStreamReader(is));
-            int countlns = countLines("assets/starting");
-            int select = 0;
-            Random rand = new Random();
-
-            // Generate interesting starting placements
-            switch (difficulty) {
-                case 0:
-                    select = rand.nextInt(24);
-                    break;
-                case 1:
-                    select = rand.nextInt(24) + 24;
-                    break;
-                case 2:
-                    select = rand.nextInt(24) + 48;
-                    break;
-                case 3:
-                    select = rand.nextInt(24) + 72;
-                    break;
-                case 4:
-                    select = rand.nextInt(24) + 96;
-                    if (select > countlns) {
-                        select--;
-                    }
-                    break;
-            }
-            for (int i = 0; i <= select; i++) {
-                startingPlacements = br.readLine();
-            }
-            br.close();
-        } catch (Exception e) {
-            e.printStackTrace();
-        }
+        PuzzleCatalogue catalogue = PuzzleCatalogue.standard();
+        String startingPlacements = null;
+        if (difficulty < catalogue.difficulties())
+            startingPlacements = catalogue.random(difficulty, new Random());
+        showStartingPlacements(startingPlacements == null ? "" : startingPlacements);
+    }
 
+    /**
+     * Put the starting pieces on the board
+     *
+     * @param startingPlacements The starting placement string
+     */
+    private void showStartingPlacements(String startingPlacements) {
         for (int i = 0; i < startingPlacements.length() / 3; i++) {
             String piece = startingPlacements.substring(3 * i, 3 * i + 3);
             Piece p = new Piece(piece);
-            double y = 0;
-            double x = 0;
-            String pl = piece.substring(2, 3);
-            List<Location> list = piece.charAt(1) < 'E' ? pegs : noPeg;
-            for (Location location : list) {
-                if (pl.equals(location.getId())) {
-                    x = location.getX() - PIECE_SIDE_LENGTH / 2;
-                    y = location.getY() - PIECE_SIDE_LENGTH / 2;
-                    break;
-                }
-            }
-            p.setLayoutY(y);
-            p.setLayoutX(x);
+            Location location = locations.get(piece);
+            p.setLayoutY(location == null ? 0 : location.getY() - PIECE_SIDE_LENGTH / 2);
+            p.setLayoutX(location == null ? 0 : location.getX() - PIECE_SIDE_LENGTH / 2);
             p.toFront();
 
             pieces.getChildren().add(p);
@@ -511,59 +601,7 @@ public class Board extends Application {
         initialPlacements = startingPlacements;
     }
 
-    /**
-     * Counts the number of lines in a file
-     * Used to allow for non-hardcoded adjustments to starting positions
-     * Through getting the maximum number of choices allowed
-     */
-    public static int countLines(String filename) {
-        try {
-            LineNumberReader reader = new LineNumberReader(new InputStreamReader(Board.class.getResourceAsStream(filename)));
-            int cnt = 0;
-            String lineRead = "";
-            while ((lineRead = reader.readLine()) != null) {
-            }
-
-            cnt = reader.getLineNumber();
-            reader.close();
-            return cnt;
-        } catch (FileNotFoundException e) {
-            e.printStackTrace();
-        } catch (IOException e) {
-            e.printStackTrace();
-        }
-        return 0;
-    }
-
-
-    /**
-     * Initialize 50 locations by setting their ID and x, y coordinates
-     */
-    private void initLocations() {
-        double x = 0;
-        double y = 0;
-        double offsetX = 89;
-        double offsetY = 89;
-
-        int row = 0;
-        for (int i = 0; i < 50; i++) {
-            int asciiIndex = (i < 25) ? i + 'A' : i - 25 + 'a';
-            String id = String.valueOf((char) asciiIndex);
-            if (i % 10 == 0 && i > 0) {
-                x = 0;
-                y += 70;
-                row++;
-            }
-            if (row % 2 == 0 && i % 2 == 0)
-                pegs.add(new Location(id, x + offsetX, y + offsetY));
-            else if (row % 2 == 1 && i % 2 == 1)
-                pegs.add(new Location(id, x + offsetX, y + offsetY));
-            else
-                noPeg.add(new Location(id, x + offsetX, y + offsetY));
-            x += 70;
-        }
 
-    }
 
     /**
      * Constructs the buttons and sliders
@@ -579,6 +617,16 @@ public class Board extends Application {
 
         root.getChildren().add(background);
 
+        for (int i = 0; i < Placement.LOCATIONS; i++) {
+            Location location = locations.get(i);
+            Circle circle = new Circle(location.getX(), location.getY(), 22, Color.LIGHTGREEN);
+            circle.setOpacity(0.6);
+            legalDrops.getChildren().add(circle);
+        }
+        legalDrops.setMouseTransparent(true);
+        legalDrops.setVisible(false);
+        root.getChildren().add(legalDrops);
+
         diffSlider.setVisible(controlVisibility);
         diffSlider.setTranslateX(-20);
         diffSlider.setTranslateY(0);
@@ -766,8 +814,94 @@ public class Board extends Application {
 
         visableHintBtn.setDisable(false);
 
-        sg = new StepsGame(initialPlacements);
-        finalPlacements = sg.returnFinalPositions();
+        compatible = new CompatibleSolutions(Placement.parseSequence(initialPlacements));
+        journaledHint = null;
+        checkSolvability();
+
+        if (journal != null) {
+            journal.start(Placement.parseSequence(initialPlacements), difficulty);
+            flushJournal();
+        }
+    }
+
+    /**
+     * Resume the game left unfinished in the journal, with the pieces the player had placed.
+     */
+    private void resumeGame() {
+        short[] placement = journal.getPlacement();
+        int startingCount = journal.getStartingCount();
+        difficulty = journal.getDifficulty();
+        diffSlider.setValue(difficulty);
+
+        resetPieces();
+        hideCompletion();
+        hideHintText();
+        showStartingPlacements(Placement.toString(placement, startingCount));
+        makePieces();
+        for (int i = startingCount; i < placement.length; i++) {
+            String piece = Placement.toString(placement[i]);
+            for (Node node : draggablePieces.getChildren()) {
+                DraggablePiece p = (DraggablePiece) node;
+                if (p.getPlacement().charAt(0) == piece.charAt(0))
+                    p.restore(piece, getPieceLocation(piece));
+            }
+        }
+        currentPlacements = Placement.toString(placement);
+        ShowDiffText();
+        visableHintBtn.setDisable(false);
+
+        compatible = new CompatibleSolutions(Placement.parseSequence(initialPlacements));
+        journaledHint = null;
+        for (int i = startingCount; i < placement.length; i++)
+            compatible.place(placement[i]);
+        checkSolvability();
+    }
+
+    /**
+     * Whether the pieces on the board can still be finished.  It is updated on the JavaFX thread
+     * shortly after each move, as the check runs in the background so that it never holds up a drop.
+     */
+    public ReadOnlyBooleanProperty solvableProperty() {
+        return solvable.getReadOnlyProperty();
+    }
+
+    /**
+     * Check in the background whether the pieces on the board can still be finished.
+     */
+    private void checkSolvability() {
+        String placements = currentPlacements;
+        // A check still running is for a position the player has left
+        if (solvabilityBudget != null)
+            solvabilityBudget.cancel();
+        SearchBudget budget = SearchBudget.ofMillis(SOLVABILITY_MILLIS);
+        solvabilityBudget = budget;
+        solvability.isSolvableAsync(Placement.parseSequence(placements), checker, budget).thenAccept(result -> Platform.runLater(() -> {
+            // A later move has its own check, and a check out of time gives the player the benefit of the doubt
+            if (placements.equals(currentPlacements))
+                solvable.set(result || budget.isExhausted());
+        }));
+    }
+
+    /**
+     * Open the journal in the player's home directory.  The game is still playable without one.
+     */
+    private void openJournal() {
+        try {
+            Path directory = Paths.get(System.getProperty("user.home"), ".iqsteps");
+            Files.createDirectories(directory);
+            journal = GameJournal.open(directory.resolve("journal"));
+            journalFlusher.scheduleWithFixedDelay(this::flushJournal, JOURNAL_FLUSH_SECONDS, JOURNAL_FLUSH_SECONDS, TimeUnit.SECONDS);
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    private void flushJournal() {
+        try {
+            journal.flush();
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
     }
 
     /**
@@ -788,39 +922,111 @@ public class Board extends Application {
      */
     private void makeMusic() {
         Media media = new Media(Board.class.getResource(URI_BASE + "mx3.mp3").toString());
-        mp = new MediaPlayer(media);
-        mp.setAutoPlay(true);
-        mp.setVolume(0.9);
-        mp.setOnEndOfMedia(() -> mp.seek(Duration.ZERO));
+        MediaPlayer player = new MediaPlayer(media);
+        player.setAutoPlay(true);
+        player.setVolume(0.9);
+        player.setOnEndOfMedia(() -> player.seek(Duration.ZERO));
+        Platform.runLater(() -> mp = player);
     }
 
     private void playMusic() {
-        mp.play();
+        if (mp != null)
+            mp.play();
     }
 
     private void pauseMusic() {
-        mp.pause();
+        if (mp != null)
+            mp.pause();
+    }
+
+    /**
+     * Load everything the first frame does not need on background threads: the music,
+     * the remaining piece images, the puzzles and the solution index.  The first game
+     * starts once the puzzles and the solution index are loaded, so that it picks a puzzle
+     * and builds the tracker of its compatible solutions without reading either itself.
+     */
+    private void loadInBackground() {
+        long start = System.nanoTime();
+        ExecutorService loader = Executors.newFixedThreadPool(4, runnable -> {
+            Thread thread = new Thread(runnable, "loader");
+            thread.setDaemon(true);
+            return thread;
+        });
+        CompletableFuture<Void> puzzles = CompletableFuture.runAsync(timed("puzzles", PuzzleCatalogue::standard), loader);
+        CompletableFuture<Void> solutions = CompletableFuture.runAsync(timed("solutions", SolutionIndex::standard), loader);
+        CompletableFuture<Void> firstGame = new CompletableFuture<>();
+        CompletableFuture.allOf(puzzles, solutions).whenComplete((ignored, e) -> Platform.runLater(() -> {
+            startFirstGame();
+            firstGame.complete(null);
+        }));
+        CompletableFuture.allOf(
+                CompletableFuture.runAsync(timed("media", this::makeMusic), loader),
+                CompletableFuture.runAsync(timed("sprites", SpriteCache::warmUp), loader),
+                puzzles,
+                solutions
+        ).whenComplete((ignored, e) -> {
+            loader.shutdown();
+            if (e != null)
+                e.printStackTrace();
+            StartupTimer.record("background", start);
+            if (StartupTimer.ENABLED) {
+                System.out.printf("startup sprites %d images, %.1f MB%n", SpriteCache.size(), SpriteCache.bytes() / 1e6);
+                if (Boolean.getBoolean("iqsteps.startup.exit"))
+                    firstGame.thenRun(Platform::exit);
+            }
+        });
+    }
+
+    /**
+     * Resume the game left in the journal, or start a new one.  The controls which change
+     * the game are disabled until then.
+     */
+    private void startFirstGame() {
+        long game = System.nanoTime();
+        openJournal();
+        if (journal != null && journal.canResume())
+            resumeGame();
+        else
+            newGame();
+        newGameBtn.setDisable(false);
+        StartupTimer.record("game", game);
+    }
+
+    private static Runnable timed(String phase, Runnable task) {
+        return () -> {
+            long start = System.nanoTime();
+            task.run();
+            StartupTimer.record(phase, start);
+        };
     }
 
     @Override
     public void start(Stage primaryStage) throws Exception {
+        // Only what the first frame shows is done here: the empty board and its controls.  The rest,
+        // the first game included, is loaded by loadInBackground
+        long start = System.nanoTime();
         primaryStage.setTitle("IQ-Steps");
-        primaryStage.getIcons().add(new Image(this.getClass().getResource(URI_BASE + "AA.png").toString()));
+        primaryStage.getIcons().add(SpriteCache.get('A', 'A'));
         primaryStage.centerOnScreen();
 
         Scene scene = new Scene(root, BOARD_WIDTH, BOARD_HEIGHT, Color.BEIGE);
         Popup hint = new Popup();
 
-        initLocations();
         makeControls();
         makeCompletion();
         makeHintText();
-        makeMusic();
-        newGame();
-        playMusic();
+        // Tell the player as soon as the pieces on the board cannot be finished
+        solvable.addListener((observable, was, is) -> {
+            if (!is)
+                noHint();
+        });
+        newGameBtn.setDisable(true);
+        visableHintBtn.setDisable(true);
+        StartupTimer.record("controls", start);
 
         scene.setOnKeyPressed(ke -> {
-            if (ke.getCode() == KeyCode.SLASH) {
+            // There are no hints before the first game
+            if (ke.getCode() == KeyCode.SLASH && compatible != null) {
                 // For showing hint on the board
                 /*
                  Checks to see if the current placements are less than the allowed amount and that the / key has been held down less than 20 ticks
@@ -828,26 +1034,32 @@ public class Board extends Application {
                  If > 20 ticks we display the easy hint
                  If placements are = to the allowed placements we congratulate them
                  */
-                if (!hinting && currentPlacements.length() < 24 && hintTimer >= TIME_TO_DISPLAY_HINT) {
+                int ticks = hintTimer;
+                if (!hinting && currentPlacements.length() < 24 && ticks >= TIME_TO_DISPLAY_HINT) {
                     hinting = true;
                     newGameBtn.setDisable(true);
                     visableHintBtn.setDisable(true);
                     showVisableHint();
                 }
-                if (checkNextHint() && currentPlacements.length() < 24) {
-                    if (setVisableHint()) {
-                        if (hintTimer < TIME_TO_DISPLAY_HINT) {
-                            Piece p = new Piece(visableHint.getPlacement());
-                            hint.getContent().add(p);
-                            hint.setX(primaryStage.getX() + 475);
-                            hint.setY(primaryStage.getY() + 455);
-                            hint.show(primaryStage);
+                if (currentPlacements.length() < 24) {
+                    requestHint(viable -> {
+                        // The key is up, and the popup gone
+                        if (hintTimer <= ticks)
+                            return;
+                        if (checkNextHint() && setVisableHint(viable)) {
+                            if (ticks < TIME_TO_DISPLAY_HINT) {
+                                Piece p = new Piece(visableHint.getPlacement());
+                                hint.getContent().add(p);
+                                hint.setX(primaryStage.getX() + 475);
+                                hint.setY(primaryStage.getY() + 455);
+                                hint.show(primaryStage);
+                            } else {
+                                hint.getContent().clear();
+                            }
                         } else {
-                            hint.getContent().clear();
+                            noHint();
                         }
-                    } else {
-                        noHint();
-                    }
+                    });
 
 
                 } else if (currentPlacements.length() >= 24) {
@@ -862,7 +1074,11 @@ public class Board extends Application {
                 hintTimer++;
             }
 
-            else if (ke.getCode() == KeyCode.P) {
+            else if (ke.getCode() == KeyCode.B) {
+                bestHints = !bestHints;
+            }
+
+            else if (ke.getCode() == KeyCode.P && mp != null) {
                 if (mp.getStatus() == MediaPlayer.Status.PLAYING) {
                     pauseMusic();
                 } else if (mp.getStatus() == MediaPlayer.Status.PAUSED) {
@@ -885,16 +1101,33 @@ public class Board extends Application {
         primaryStage.setResizable(true);
         primaryStage.setScene(scene);
         primaryStage.show();
+
+        scene.addPostLayoutPulseListener(new Runnable() {
+            @Override
+            public void run() {
+                StartupTimer.record("first frame", start);
+                scene.removePostLayoutPulseListener(this);
+            }
+        });
+        loadInBackground();
     }
 
 
+    @Override
+    public void stop() throws Exception {
+        checker.shutdownNow();
+        hinter.shutdownNow();
+        // Not interrupted, as that would close the journal's channel under a flush in progress
+        journalFlusher.shutdown();
+        journalFlusher.awaitTermination(JOURNAL_FLUSH_SECONDS, TimeUnit.SECONDS);
+        if (journal != null)
+            journal.close();
+    }
+
     // Tests to see if we can procure a next hint
     // Used to signify whether to show a piece or indicate
     // The removal of a piece
     private boolean checkNextHint() {
-        if (finalPlacements.length > 0) {
-            return true;
-        }
-        return false;
+        return !compatible.isOffTrack();
     }
 }
@@ -0,0 +1,82 @@
+package game.gui;
+
+import game.Placement;
+
+/**
+ * The 50 locations of the board, indexed by id and by position.
+ * <p>
+ * Locations lie on a grid of 10 columns and 5 rows, 70 pixels apart starting from (89, 89).
+ * A position is snapped by rounding it to the nearest grid point, which is the only location
+ * that can be within snapping distance, so no list is searched and no square root is taken.
+ * Locations where row + column is even have a peg and take pieces in orientations A - D,
+ * the others take pieces in orientations E - H.
+ */
+public final class LocationGrid {
+
+    // The standard board, with its own constants so that loading the board screen compiles no masks
+    public static final int COLUMNS = 10;
+    public static final int ROWS = 5;
+    public static final double ORIGIN = 89;
+    public static final double PITCH = 70;
+
+    // A piece snaps to a location when its centre is closer than this
+    public static final double SNAP_DISTANCE = 30;
+
+    private final Location[] locations = new Location[Placement.LOCATIONS];
+
+    public LocationGrid() {
+        for (int i = 0; i < locations.length; i++)
+            locations[i] = new Location(String.valueOf(Placement.locationChar(i)), ORIGIN + PITCH * (i % COLUMNS), ORIGIN + PITCH * (i / COLUMNS));
+    }
+
+    /**
+     * Determine whether a location has a peg.
+     *
+     * @param index The location index, 0 .. 49
+     */
+    public static boolean hasPeg(int index) {
+        return (index / COLUMNS + index % COLUMNS) % 2 == 0;
+    }
+
+    /**
+     * Get a location by its index, 0 .. 49 for A .. Y and a .. y.
+     */
+    public Location get(int index) {
+        return locations[index];
+    }
+
+    /**
+     * Get the location of a piece placement.
+     *
+     * @param placement The 3 character placement string
+     * @return The location, or null if the piece cannot be placed there in its orientation
+     */
+    public Location get(String placement) {
+        int index = Placement.locationIndex(placement.charAt(2));
+        if (index < 0 || hasPeg(index) != placement.charAt(1) < 'E')
+            return null;
+        return locations[index];
+    }
+
+    /**
+     * Find the location a piece snaps to when dropped.
+     *
+     * @param x   x coordinate of the centre of the piece
+     * @param y   y coordinate of the centre of the piece
+     * @param peg True for a piece in orientation A - D, which needs a location with a peg
+     * @return The location, or null if none is close enough
+     */
+    public Location snap(double x, double y, boolean peg) {
+        long column = Math.round((x - ORIGIN) / PITCH);
+        long row = Math.round((y - ORIGIN) / PITCH);
+        if (column < 0 || column >= COLUMNS || row < 0 || row >= ROWS)
+            return null;
+        int index = (int) (row * COLUMNS + column);
+        if (hasPeg(index) != peg)
+            return null;
+        Location location = locations[index];
+        double dx = x - location.getX();
+        double dy = y - location.getY();
+        return dx * dx + dy * dy < SNAP_DISTANCE * SNAP_DISTANCE ? location : null;
+    }
+}
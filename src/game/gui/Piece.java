@@ -1,7 +1,6 @@
 package game.gui;
 
 
-import javafx.scene.image.Image;
 import javafx.scene.image.ImageView;
 
 public class Piece extends ImageView {
@@ -19,9 +18,15 @@ public class Piece extends ImageView {
      */
     public Piece(String placement) {
         this.placement = placement;
-        int index = placement.charAt(1) - 65;
-        setImage(new Image(Board.class.getResource(URI_BASE + placement.substring(0, 1) + (index < 4 ? "A" : "E") + ".png").toString()));
-        setRotate(90 * (index < 4 ? placement.charAt(1) - 65 : placement.charAt(1) - 69));
+        showOrientation();
+    }
+
+    /**
+     * Show the image of the piece in the orientation of its placement.
+     */
+    protected void showOrientation() {
+        setImage(SpriteCache.get(placement.charAt(0), placement.charAt(1)));
+        setRotate(SpriteCache.rotation(placement.charAt(1)));
     }
 
 
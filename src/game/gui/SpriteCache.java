@@ -0,0 +1,114 @@
+package game.gui;
+
+import javafx.scene.image.Image;
+import javafx.scene.image.PixelReader;
+import javafx.scene.image.PixelWriter;
+import javafx.scene.image.WritableImage;
+
+import static game.gui.Piece.URI_BASE;
+
+/**
+ * Process-wide cache of the piece images, so each PNG is decoded once.
+ * <p>
+ * There are 16 piece images, XA and XE for each shape X, showing the piece in orientations
+ * A and E.  The other orientations are shown by rotating the view, or, when the system
+ * property iqsteps.prerotate is set, by images rotated once with a PixelReader, trading
+ * 48 more images for views that are never rotated.
+ */
+public final class SpriteCache {
+
+    private static final boolean PRE_ROTATED = Boolean.getBoolean("iqsteps.prerotate");
+
+    // Indexed by shape * 8 + orientation, only orientations A and E unless pre-rotated
+    private static final Image[] sprites = new Image[64];
+    private static int count;
+    private static long bytes;
+
+    private SpriteCache() {
+    }
+
+    public static boolean isPreRotated() {
+        return PRE_ROTATED;
+    }
+
+    /**
+     * Get the image to show a piece in an orientation, decoding it on first use.
+     *
+     * @param shape       The shape, 'A' .. 'H'
+     * @param orientation The orientation, 'A' .. 'H'
+     * @return The image, to be rotated by rotation(orientation)
+     */
+    public static synchronized Image get(char shape, char orientation) {
+        int index = orientation - 'A';
+        int base = index < 4 ? 0 : 4;
+        int key = (shape - 'A') * 8 + (PRE_ROTATED ? index : base);
+        Image sprite = sprites[key];
+        if (sprite == null) {
+            if (PRE_ROTATED && index != base)
+                sprite = rotate(get(shape, (char) ('A' + base)), index - base);
+            else
+                sprite = new Image(SpriteCache.class.getResource(URI_BASE + shape + (char) ('A' + base) + ".png").toString());
+            sprites[key] = sprite;
+            count++;
+            bytes += 4L * (long) sprite.getWidth() * (long) sprite.getHeight();
+        }
+        return sprite;
+    }
+
+    /**
+     * Get the rotation in degrees to apply to the image of a piece in an orientation.
+     */
+    public static int rotation(char orientation) {
+        return PRE_ROTATED ? 0 : 90 * ((orientation - 'A') % 4);
+    }
+
+    /**
+     * Decode every piece image, so that none is decoded while playing.
+     */
+    public static void warmUp() {
+        for (char shape = 'A'; shape <= 'H'; shape++)
+            for (char orientation = 'A'; orientation <= 'H'; orientation++)
+                get(shape, orientation);
+    }
+
+    /**
+     * Get the number of images decoded.
+     */
+    public static synchronized int size() {
+        return count;
+    }
+
+    /**
+     * Get the memory held by the decoded images, at 4 bytes per pixel.
+     */
+    public static synchronized long bytes() {
+        return bytes;
+    }
+
+    // Rotate an image clockwise by a number of quarter turns
+    private static Image rotate(Image image, int quarterTurns) {
+        PixelReader reader = image.getPixelReader();
+        int width = (int) image.getWidth();
+        int height = (int) image.getHeight();
+        boolean sideways = quarterTurns % 2 == 1;
+        WritableImage rotated = new WritableImage(sideways ? height : width, sideways ? width : height);
+        PixelWriter writer = rotated.getPixelWriter();
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                int argb = reader.getArgb(x, y);
+                switch (quarterTurns) {
+                    case 1:
+                        writer.setArgb(height - 1 - y, x, argb);
+                        break;
+                    case 2:
+                        writer.setArgb(width - 1 - x, height - 1 - y, argb);
+                        break;
+                    default:
+                        writer.setArgb(y, width - 1 - x, argb);
+                        break;
+                }
+            }
+        }
+        return rotated;
+    }
+}
@@ -0,0 +1,30 @@
+package game.gui;
+
+/**
+ * Timings of the phases of starting the game.
+ * <p>
+ * Each phase reports how long it took and when it ended, measured from when the game
+ * classes were loaded.  They are printed to standard output when the system property
+ * iqsteps.startup.timing is set, which the startup benchmark reads.
+ */
+final class StartupTimer {
+
+    static final boolean ENABLED = Boolean.getBoolean("iqsteps.startup.timing");
+
+    private static final long ORIGIN = System.nanoTime();
+
+    private StartupTimer() {
+    }
+
+    /**
+     * Record the end of a phase.
+     *
+     * @param phase The name of the phase
+     * @param start System.nanoTime() when the phase started
+     */
+    static void record(String phase, long start) {
+        long now = System.nanoTime();
+        if (ENABLED)
+            System.out.printf("startup %-12s %8.1f ms, done at %8.1f ms%n", phase, (now - start) / 1e6, (now - ORIGIN) / 1e6);
+    }
+}
@@ -0,0 +1,213 @@
+package game.server;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+import game.Placement;
+import game.PuzzleCatalogue;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * An embedded HTTP service hosting puzzle sessions for a browser front-end.
+ * <p>
+ * It only listens on localhost and handles every request on its own virtual thread.
+ * All responses are plain text.  Endpoints:
+ * - /new?difficulty=0..4               start a session, returns its id and starting placement
+ * - /validate?session=ID&move=XYZ      play a piece placement if it is valid, returns true or false
+ * - /remove?session=ID&shape=X         take a piece off the board, returns true or false
+ * - /viable?session=ID                 the viable next piece placements, one per line
+ * - /hint?session=ID                   one viable next piece placement, or "none"
+ * - /solve?session=ID                  a solution of the session's puzzle, or "none"
+ * - /state?session=ID                  the current placement
+ * - /end?session=ID                    forget the session
+ */
+public class GameServer {
+
+    public static final int DEFAULT_PORT = 8080;
+
+    static {
+        // A response is written as its headers and then its body, which Nagle's algorithm holds back until
+        // the client's delayed acknowledgement, some 40 ms a request, unless it is turned off
+        if (System.getProperty("sun.net.httpserver.nodelay") == null)
+            System.setProperty("sun.net.httpserver.nodelay", "true");
+    }
+
+    // Sessions idle for longer than this are forgotten
+    private static final long SESSION_TIMEOUT_MILLIS = 30 * 60 * 1000;
+
+    private final HttpServer server;
+    private final ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+    private final Map<String, GameSession> sessions = new ConcurrentHashMap<>();
+    private final AtomicLong nextId = new AtomicLong();
+    private final AtomicLong requests = new AtomicLong();
+
+    // Starting placements of each difficulty, 0-Starter  1-Junior  2-Expert  3-Master  4-Wizard
+    private final PuzzleCatalogue puzzles = PuzzleCatalogue.standard();
+
+    /**
+     * Create a server on a localhost port, 0 for any free port.
+     */
+    public GameServer(int port) throws IOException {
+        this.server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), 0);
+        server.setExecutor(executor);
+        server.createContext("/new", exchange -> respond(exchange, this::newGame));
+        server.createContext("/validate", exchange -> respond(exchange, params -> {
+            String move = required(params, "move");
+            if (Placement.parse(move) == Placement.NONE)
+                throw new BadRequest("Bad piece placement: " + move);
+            return String.valueOf(session(params).play(move));
+        }));
+        server.createContext("/remove", exchange -> respond(exchange, params -> {
+            String shape = required(params, "shape");
+            if (shape.length() != 1)
+                throw new BadRequest("Bad shape: " + shape);
+            return String.valueOf(session(params).remove(shape.charAt(0)));
+        }));
+        server.createContext("/viable", exchange -> respond(exchange, params -> String.join("\n", session(params).viable())));
+        server.createContext("/hint", exchange -> respond(exchange, params -> orNone(session(params).hint())));
+        server.createContext("/solve", exchange -> respond(exchange, params -> orNone(session(params).solve())));
+        server.createContext("/state", exchange -> respond(exchange, params -> session(params).getCurrentPlacements()));
+        server.createContext("/end", exchange -> respond(exchange, params -> String.valueOf(sessions.remove(required(params, "session")) != null)));
+    }
+
+    public void start() {
+        server.start();
+    }
+
+    public void stop() {
+        server.stop(0);
+        executor.shutdown();
+    }
+
+    public int getPort() {
+        return server.getAddress().getPort();
+    }
+
+    public long getRequestCount() {
+        return requests.get();
+    }
+
+    public int getSessionCount() {
+        return sessions.size();
+    }
+
+    private String newGame(Map<String, String> params) {
+        int difficulty = 0;
+        if (params.containsKey("difficulty")) {
+            try {
+                difficulty = Integer.parseInt(params.get("difficulty"));
+            } catch (NumberFormatException e) {
+                throw new BadRequest("Bad difficulty: " + params.get("difficulty"));
+            }
+        }
+        if (difficulty < 0 || difficulty >= puzzles.difficulties() || puzzles.count(difficulty) == 0)
+            throw new BadRequest("Bad difficulty: " + difficulty);
+        expireSessions();
+        String starting = puzzles.random(difficulty, ThreadLocalRandom.current());
+        String id = Long.toString(nextId.incrementAndGet(), 36) + Long.toString(ThreadLocalRandom.current().nextLong() & Long.MAX_VALUE, 36);
+        sessions.put(id, new GameSession(id, starting));
+        return id + "\n" + starting;
+    }
+
+    private void expireSessions() {
+        long oldest = System.currentTimeMillis() - SESSION_TIMEOUT_MILLIS;
+        sessions.values().removeIf(session -> session.getLastAccess() < oldest);
+    }
+
+    private GameSession session(Map<String, String> params) {
+        GameSession session = sessions.get(required(params, "session"));
+        if (session == null)
+            throw new NotFound("No such session: " + params.get("session"));
+        return session;
+    }
+
+    private static String required(Map<String, String> params, String name) {
+        String value = params.get(name);
+        if (value == null)
+            throw new BadRequest("Missing parameter: " + name);
+        return value;
+    }
+
+    private static String orNone(String value) {
+        return value == null ? "none" : value;
+    }
+
+    /**
+     * Run a request handler and send its result, or the error it raised.
+     */
+    private void respond(HttpExchange exchange, Handler handler) throws IOException {
+        requests.incrementAndGet();
+        int status = 200;
+        String body;
+        try {
+            body = handler.handle(parseQuery(exchange.getRequestURI().getRawQuery()));
+        } catch (BadRequest e) {
+            status = 400;
+            body = e.getMessage();
+        } catch (NotFound e) {
+            status = 404;
+            body = e.getMessage();
+        } catch (RuntimeException e) {
+            status = 500;
+            body = String.valueOf(e);
+        }
+        byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", "text/plain; charset=utf-8");
+        exchange.sendResponseHeaders(status, bytes.length);
+        try (OutputStream os = exchange.getResponseBody()) {
+            os.write(bytes);
+        }
+    }
+
+    private static Map<String, String> parseQuery(String query) {
+        Map<String, String> params = new HashMap<>();
+        if (query == null || query.isEmpty())
+            return params;
+        for (String pair : query.split("&")) {
+            int equals = pair.indexOf('=');
+            if (equals > 0)
+                params.put(URLDecoder.decode(pair.substring(0, equals), StandardCharsets.UTF_8), URLDecoder.decode(pair.substring(equals + 1), StandardCharsets.UTF_8));
+        }
+        return params;
+    }
+
+    private interface Handler {
+        String handle(Map<String, String> params);
+    }
+
+    private static class BadRequest extends RuntimeException {
+        private static final long serialVersionUID = 1L;
+
+        BadRequest(String message) {
+            super(message);
+        }
+    }
+
+    private static class NotFound extends RuntimeException {
+        private static final long serialVersionUID = 1L;
+
+        NotFound(String message) {
+            super(message);
+        }
+    }
+
+    public static void main(String[] args) throws IOException {
+        int port = args.length > 0 ? Integer.parseInt(args[0]) : DEFAULT_PORT;
+        GameServer server = new GameServer(port);
+        server.start();
+        System.out.println("IQ-Steps server listening on http://localhost:" + server.getPort() + "/");
+    }
+}
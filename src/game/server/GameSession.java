@@ -0,0 +1,129 @@
+package game.server;
+
+import game.Placement;
+import game.StepsGame;
+
+import java.util.Set;
+import java.util.TreeSet;
+
+/**
+ * The server-side state of one puzzle being played through the GameServer.
+ * Requests for the same session may arrive concurrently, so every method is synchronized.
+ */
+class GameSession {
+
+    private final String id;
+    private final StepsGame game;
+
+    // The pieces placed when the game started, which cannot be moved
+    private final String startingPlacements;
+
+    // Encodes all states of the game
+    private String currentPlacements;
+
+    private long lastAccess;
+
+    GameSession(String id, String startingPlacements) {
+        this.id = id;
+        this.game = new StepsGame(startingPlacements);
+        this.startingPlacements = startingPlacements;
+        this.currentPlacements = startingPlacements;
+        this.lastAccess = System.currentTimeMillis();
+    }
+
+    String getId() {
+        return id;
+    }
+
+    synchronized String getStartingPlacements() {
+        return startingPlacements;
+    }
+
+    synchronized String getCurrentPlacements() {
+        touch();
+        return currentPlacements;
+    }
+
+    synchronized long getLastAccess() {
+        return lastAccess;
+    }
+
+    synchronized boolean isComplete() {
+        return currentPlacements.length() == 3 * Placement.SHAPES;
+    }
+
+    /**
+     * Play a piece placement if it can follow the pieces already placed.
+     *
+     * @param piecePlacement A three-character piece placement
+     * @return True if the piece was played
+     */
+    synchronized boolean play(String piecePlacement) {
+        touch();
+        if (!StepsGame.isPlacementSequenceValid(currentPlacements + piecePlacement))
+            return false;
+        currentPlacements += piecePlacement;
+        return true;
+    }
+
+    /**
+     * Take a piece off the board if no other piece stands on it.
+     *
+     * @param shape The shape of the piece, A .. H
+     * @return True if the piece was taken off
+     */
+    synchronized boolean remove(char shape) {
+        touch();
+        for (int i = startingPlacements.length(); i < currentPlacements.length(); i += 3) {
+            if (currentPlacements.charAt(i) == shape) {
+                String rest = currentPlacements.substring(0, i) + currentPlacements.substring(i + 3);
+                if (!StepsGame.isPlacementSequenceValid(rest + currentPlacements.substring(i, i + 3)))
+                    return false;
+                currentPlacements = rest;
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Get the viable next moves towards any solution of the game.
+     */
+    synchronized Set<String> viable() {
+        touch();
+        Set<String> viable = new TreeSet<>();
+        if (isComplete())
+            return viable;
+        game.solutions().forEach(solution -> {
+            Set<String> moves = StepsGame.getViablePiecePlacements(currentPlacements, solution);
+            if (moves != null)
+                viable.addAll(moves);
+        });
+        return viable;
+    }
+
+    /**
+     * Get one viable next move, or null if the pieces played lead to no solution.
+     */
+    synchronized String hint() {
+        touch();
+        if (isComplete())
+            return null;
+        return game.solutions()
+                .map(solution -> StepsGame.getFirstViablePiecePlacement(currentPlacements, solution, StepsGame.byDependency(solution)))
+                .filter(move -> move != null)
+                .findFirst().orElse(null);
+    }
+
+    /**
+     * Get a solution of the game.
+     */
+    synchronized String solve() {
+        touch();
+        return game.anySolution().orElse(null);
+    }
+
+    private void touch() {
+        lastAccess = System.currentTimeMillis();
+    }
+}
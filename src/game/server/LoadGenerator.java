@@ -0,0 +1,142 @@
+package game.server;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Load generator for the GameServer.
+ * <p>
+ * Every simulated player runs on its own virtual thread: it starts a game, then keeps asking
+ * for the viable moves and a hint, and plays the hint, until the puzzle is solved and it starts
+ * another one.  Requests per second are reported every second, and sustained over the whole run.
+ * <p>
+ * Usage: LoadGenerator [players [seconds [port]]]
+ * Without a port, a server is started in the same process on a free port.
+ */
+public class LoadGenerator {
+
+    // The longest a player waits before asking for a game again after failing to start one
+    private static final long MAX_BACKOFF_MILLIS = 1000;
+
+    private final HttpClient client;
+    private final String base;
+    private final AtomicLong requests = new AtomicLong();
+    private final AtomicLong errors = new AtomicLong();
+    private volatile boolean running = true;
+
+    LoadGenerator(int port, ExecutorService executor) {
+        this.client = HttpClient.newBuilder().executor(executor).connectTimeout(Duration.ofSeconds(5)).build();
+        this.base = "http://localhost:" + port;
+    }
+
+    /**
+     * Send a request and return the body of the response, or null after an error.
+     */
+    private String get(String path) {
+        try {
+            HttpResponse<String> response = client.send(HttpRequest.newBuilder(URI.create(base + path)).build(), HttpResponse.BodyHandlers.ofString());
+            requests.incrementAndGet();
+            if (response.statusCode() != 200) {
+                errors.incrementAndGet();
+                return null;
+            }
+            return response.body();
+        } catch (IOException e) {
+            errors.incrementAndGet();
+            return null;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            running = false;
+            return null;
+        }
+    }
+
+    /**
+     * Play games until the run is over.
+     */
+    private void player(int number) {
+        long backoff = 0;
+        while (running) {
+            String game = get("/new?difficulty=" + number % 5);
+            if (game == null) {
+                // Waiting twice as long each time, so that a server which is down is not spun on
+                backoff = Math.min(Math.max(2 * backoff, 10), MAX_BACKOFF_MILLIS);
+                pause(backoff);
+                continue;
+            }
+            backoff = 0;
+            String session = game.substring(0, game.indexOf('\n'));
+            while (running) {
+                if (get("/viable?session=" + session) == null)
+                    break;
+                String hint = get("/hint?session=" + session);
+                if (hint == null || hint.equals("none") || !"true".equals(get("/validate?session=" + session + "&move=" + hint)))
+                    break;
+                String state = get("/state?session=" + session);
+                if (state == null || state.length() == 24)
+                    break;
+            }
+            get("/end?session=" + session);
+        }
+    }
+
+    private void pause(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            running = false;
+        }
+    }
+
+    public static void main(String[] args) throws Exception {
+        int players = args.length > 0 ? Integer.parseInt(args[0]) : 64;
+        int seconds = args.length > 1 ? Integer.parseInt(args[1]) : 10;
+        GameServer server = null;
+        int port;
+        if (args.length > 2) {
+            port = Integer.parseInt(args[2]);
+        } else {
+            server = new GameServer(0);
+            server.start();
+            port = server.getPort();
+        }
+
+        ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+        LoadGenerator generator = new LoadGenerator(port, executor);
+        List<Thread> threads = new ArrayList<>();
+        for (int i = 0; i < players; i++) {
+            int number = i;
+            threads.add(Thread.ofVirtual().start(() -> generator.player(number)));
+        }
+
+        long start = System.nanoTime();
+        long last = 0;
+        for (int second = 1; second <= seconds; second++) {
+            Thread.sleep(1000);
+            long count = generator.requests.get();
+            System.out.printf("%3ds %8d req/s  (%d errors)%n", second, count - last, generator.errors.get());
+            last = count;
+        }
+        generator.running = false;
+        double elapsed = (System.nanoTime() - start) / 1e9;
+        long total = generator.requests.get();
+        for (Thread thread : threads)
+            thread.join(TimeUnit.SECONDS.toMillis(5));
+        System.out.printf("%d players: %d requests in %.1fs, sustained %.0f req/s, %d errors%n", players, total, elapsed, total / elapsed, generator.errors.get());
+
+        executor.shutdownNow();
+        if (server != null)
+            server.stop();
+    }
+}
@@ -0,0 +1,122 @@
+package game;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.Timeout;
+
+import java.util.Random;
+
+import static game.TestUtility.SOLUTIONS_ONE;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Test objective:
+ * <p>
+ * Compile piece placements for boards of any size and peg pattern, matching the standard board.
+ */
+public class BoardGeometryTest {
+    @Rule
+    public Timeout globalTimeout = Timeout.millis(5000);
+
+    // A larger board, and where the standard board sits within it, keeping the pegs in place
+    private static final BoardGeometry LARGE = BoardGeometry.checkerboard(20, 20);
+    private static final int ROW = 6;
+    private static final int COLUMN = 4;
+
+    private static int translate(int location) {
+        return (location / 10 + ROW) * LARGE.width() + location % 10 + COLUMN;
+    }
+
+    private static int translate(short piece) {
+        return LARGE.code(Placement.shape(piece), Placement.orientation(piece), translate(Placement.location(piece)));
+    }
+
+    private static boolean has(BoardGeometry board, int code, int location, boolean obstructed) {
+        long word = obstructed ? board.obstructed(code, location / 64) : board.bottom(code, location / 64) | board.upper(code, location / 64);
+        return (word & 1L << location) != 0;
+    }
+
+    @Test
+    public void testStandard() {
+        BoardGeometry board = BoardGeometry.STANDARD;
+        assertTrue("Expected a 10x5 board, but got " + board, board.width() == 10 && board.height() == 5 && board.cells() == Placement.LOCATIONS && board.words() == 1);
+        for (int i = 0; i < Placement.LOCATIONS; i++)
+            assertTrue("Location " + Placement.locationChar(i) + " should " + ((i / 10 + i % 10) % 2 == 0 ? "" : "not ") + "have a peg", board.hasPeg(i) == ((i / 10 + i % 10) % 2 == 0));
+        for (int code = 0; code < Placement.COUNT; code++) {
+            short piece = (short) code;
+            assertTrue("Placement " + Placement.toString(piece) + " should have the same code on the standard board", board.code(Placement.shape(piece), Placement.orientation(piece), Placement.location(piece)) == code);
+            assertTrue("Placement " + Placement.toString(piece) + " should have the same masks on the standard board",
+                    board.isPlaceable(code) == PlacementMasks.PLACEABLE[code] && board.bottom(code, 0) == PlacementMasks.BOTTOM[code]
+                            && board.upper(code, 0) == PlacementMasks.UPPER[code] && board.obstructed(code, 0) == PlacementMasks.OBSTRUCTED[code]);
+            assertTrue("Placement " + Placement.toString(piece) + " should " + (board.isOnPegs(code) ? "" : "not ") + "be on pegs",
+                    board.isOnPegs(code) == (PlacementMasks.PLACEABLE[code] && (PlacementMasks.BOTTOM[code] & Solver.HOLES) == 0 && (PlacementMasks.UPPER[code] & Solver.PEGS) == 0));
+        }
+    }
+
+    @Test
+    public void testPegs() {
+        // The standard board with its pegs and holes swapped, and with no pegs at all
+        boolean[] swapped = new boolean[Placement.LOCATIONS], none = new boolean[Placement.LOCATIONS];
+        for (int i = 0; i < swapped.length; i++)
+            swapped[i] = !BoardGeometry.STANDARD.hasPeg(i);
+        BoardGeometry board = new BoardGeometry(10, 5, swapped), empty = new BoardGeometry(10, 5, none);
+        int onPegs = 0;
+        for (int code = 0; code < Placement.COUNT; code++) {
+            short piece = (short) code;
+            boolean expected = PlacementMasks.PLACEABLE[code] && (PlacementMasks.BOTTOM[code] & Solver.PEGS) == 0 && (PlacementMasks.UPPER[code] & Solver.HOLES) == 0;
+            assertTrue("Placement " + Placement.toString(piece) + " should " + (expected ? "" : "not ") + "be on the swapped pegs", board.isOnPegs(code) == expected);
+            assertTrue("The pegs should not change whether " + Placement.toString(piece) + " fits", board.isPlaceable(code) == PlacementMasks.PLACEABLE[code] && empty.isPlaceable(code) == PlacementMasks.PLACEABLE[code]);
+            assertTrue("Placement " + Placement.toString(piece) + " should not be on pegs on a board without any", !empty.isOnPegs(code));
+            if (expected)
+                onPegs++;
+        }
+        assertTrue("Some placements should be on the swapped pegs", onPegs > 0);
+    }
+
+    @Test
+    public void testLarge() {
+        assertTrue("Expected 7 words for 400 locations, but got " + LARGE.words(), LARGE.words() == 7);
+        for (int code = 0; code < Placement.COUNT; code++) {
+            short piece = (short) code;
+            if (!PlacementMasks.PLACEABLE[code])
+                continue;
+            int large = translate(piece);
+            assertTrue("Placement " + Placement.toString(piece) + " should fit onto the large board", LARGE.isPlaceable(large));
+            for (int i = 0; i < Placement.LOCATIONS; i++) {
+                long bit = 1L << i;
+                boolean ring = ((PlacementMasks.BOTTOM[code] | PlacementMasks.UPPER[code]) & bit) != 0;
+                assertTrue("Placement " + Placement.toString(piece) + " should have the same rings on the large board", has(LARGE, large, translate(i), false) == ring);
+                // Locations beyond the edges of the standard board may be obstructed as well
+                if ((PlacementMasks.OBSTRUCTED[code] & bit) != 0)
+                    assertTrue("Placement " + Placement.toString(piece) + " should obstruct " + Placement.locationChar(i) + " on the large board", has(LARGE, large, translate(i), true));
+            }
+        }
+    }
+
+    @Test
+    public void testSequences() {
+        for (String[] test : SOLUTIONS_ONE) {
+            short[] solution = Placement.parseSequence(test[1]);
+            int[] codes = new int[solution.length];
+            for (int i = 0; i < solution.length; i++)
+                codes[i] = translate(solution[i]);
+            assertTrue("Solution '" + test[1] + "' should be valid on the large board", LARGE.isPlacementSequenceValid(codes, codes.length));
+            int[] reversed = new int[codes.length];
+            for (int i = 0; i < codes.length; i++)
+                reversed[i] = codes[codes.length - 1 - i];
+            assertTrue("Solution '" + test[1] + "' reversed should be as valid on the large board as on the standard one",
+                    LARGE.isPlacementSequenceValid(reversed, reversed.length) == StepsGame.isPlacementSequenceValid(reverse(test[1])));
+        }
+        // The same shape twice
+        Random r = new Random(2);
+        int code = LARGE.code(r.nextInt(8), 0, LARGE.cells() / 2 + 10);
+        assertTrue("A shape should not be played twice", !LARGE.isPlacementSequenceValid(new int[]{code, code + 4 * LARGE.width()}, 2));
+    }
+
+    private static String reverse(String placement) {
+        StringBuilder reversed = new StringBuilder();
+        for (int i = placement.length() - 3; i >= 0; i -= 3)
+            reversed.append(placement, i, i + 3);
+        return reversed.toString();
+    }
+}
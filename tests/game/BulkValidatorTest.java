@@ -0,0 +1,113 @@
+package game;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.Timeout;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+import java.util.Random;
+import java.util.stream.Collectors;
+
+import static game.TestUtility.*;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Test objective:
+ * <p>
+ * Validate many placement sequences in parallel, as isPlacementSequenceValid does one at a time.
+ */
+public class BulkValidatorTest {
+    @Rule
+    public Timeout globalTimeout = Timeout.millis(10000);
+
+    // More than a batch of a stream, and not a whole number of words
+    private static final int COUNT = (1 << 16) + 1000;
+
+    // Solutions, their prefixes shuffled, random pieces and badly formed placements
+    private static List<String> placements() {
+        Random r = new Random(41);
+        List<String> placements = new ArrayList<>();
+        while (placements.size() < COUNT) {
+            String solution = PLACEMENTS[r.nextInt(PLACEMENTS.length)];
+            switch (r.nextInt(4)) {
+                case 0:
+                    placements.add(solution);
+                    break;
+                case 1:
+                    placements.add(shufflePlacement(solution.substring(0, 3 * (1 + r.nextInt(8)))));
+                    break;
+                case 2:
+                    StringBuilder random = new StringBuilder();
+                    for (int i = 1 + r.nextInt(4); i > 0; i--)
+                        random.append(randomShape(r)).append(randomOrientation(r)).append(randomLocation(r));
+                    placements.add(random.toString());
+                    break;
+                default:
+                    placements.add(r.nextBoolean() ? badlyFormedPiecePlacement(r) : solution.substring(1));
+            }
+        }
+        return placements;
+    }
+
+    private static BitSet expected(List<String> placements) {
+        BitSet valid = new BitSet();
+        for (int i = 0; i < placements.size(); i++)
+            if (StepsGame.isPlacementSequenceValid(placements.get(i)))
+                valid.set(i);
+        return valid;
+    }
+
+    @Test
+    public void testStrings() {
+        List<String> placements = placements();
+        BitSet expected = expected(placements);
+        assertTrue("Expected both valid and invalid placements, but got " + expected.cardinality() + " valid", expected.cardinality() > COUNT / 10 && expected.cardinality() < COUNT * 9 / 10);
+        try (BulkValidator validator = new BulkValidator(3)) {
+            BitSet valid = validator.validate(placements);
+            assertTrue("Expected " + expected.cardinality() + " valid placements, but got " + valid.cardinality(), valid.equals(expected));
+            valid = validator.validate(placements.stream());
+            assertTrue("A stream should give the same results as a list", valid.equals(expected));
+            List<String> filtered = validator.filter(placements.stream()).collect(Collectors.toList());
+            List<String> kept = expected.stream().mapToObj(placements::get).collect(Collectors.toList());
+            assertTrue("Filtering should keep the valid placements in order", filtered.equals(kept));
+            assertTrue("Nothing is valid in an empty list", validator.validate(new ArrayList<String>()).isEmpty());
+        }
+    }
+
+    @Test
+    public void testFile() throws IOException {
+        // Files of placements are plain text
+        List<String> placements = placements().stream().filter(p -> p.chars().allMatch(c -> c < 128)).limit(5000).collect(Collectors.toList());
+        Path file = Files.createTempFile("placements", ".txt");
+        try (BulkValidator validator = new BulkValidator()) {
+            Files.write(file, placements);
+            BitSet valid = validator.validate(file);
+            assertTrue("A file should give the same results as a list", valid.equals(expected(placements)));
+        } finally {
+            Files.delete(file);
+        }
+    }
+
+    @Test
+    public void testPacked() {
+        List<String> placements = placements().stream().filter(StepsGame::isPlacementWellFormed).collect(Collectors.toList());
+        short[][] packed = new short[placements.size()][];
+        int[][] codes = new int[placements.size()][];
+        for (int i = 0; i < packed.length; i++) {
+            packed[i] = Placement.parseSequence(placements.get(i));
+            codes[i] = new int[packed[i].length];
+            for (int j = 0; j < packed[i].length; j++)
+                codes[i][j] = packed[i][j];
+        }
+        BitSet expected = expected(placements);
+        try (BulkValidator validator = new BulkValidator(2)) {
+            assertTrue("Packed sequences should give the same results as strings", validator.validate(packed).equals(expected));
+            assertTrue("The standard board should give the same results as strings", validator.validate(BoardGeometry.STANDARD, codes).equals(expected));
+        }
+    }
+}
@@ -0,0 +1,195 @@
+package game;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.Timeout;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.stream.Collectors;
+
+import static game.TestUtility.SOLUTIONS_MULTI;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Test objective:
+ * <p>
+ * Keep track of the solutions holding every piece the player has placed, and hint towards them.
+ */
+public class CompatibleSolutionsTest {
+    @Rule
+    public Timeout globalTimeout = Timeout.millis(5000);
+
+    // The solutions holding every piece, by brute force
+    private static List<short[]> holding(List<short[]> solutions, short[] placed) {
+        List<short[]> compatible = new ArrayList<>();
+        for (short[] solution : solutions) {
+            short[] sorted = solution.clone();
+            Arrays.sort(sorted);
+            boolean all = true;
+            for (short piece : placed)
+                all &= Arrays.binarySearch(sorted, piece) >= 0;
+            if (all)
+                compatible.add(solution);
+        }
+        return compatible;
+    }
+
+    private static void check(CompatibleSolutions tracker, List<short[]> solutions) {
+        List<short[]> expected = holding(solutions, tracker.getPlaced());
+        assertTrue("After " + Placement.toString(tracker.getPlaced()) + " expected " + expected.size() + " solutions, but got " + tracker.count(), tracker.count() == expected.size());
+        assertTrue("The player should be off track exactly when no solution is left", tracker.isOffTrack() == expected.isEmpty());
+        for (int k = 0; k < expected.size(); k++)
+            assertTrue("Solution " + k + " should be " + Placement.toString(expected.get(k)), Arrays.equals(tracker.get(k), expected.get(k)));
+    }
+
+    @Test
+    public void testPlaceAndRemove() {
+        Random r = new Random(3);
+        for (String[] test : SOLUTIONS_MULTI) {
+            short[] start = Placement.parseSequence(test[0]);
+            List<short[]> solutions = SolutionIndex.standard().solutions(start, start.length).collect(Collectors.toList());
+            CompatibleSolutions tracker = new CompatibleSolutions(start);
+            assertTrue("Expected " + solutions.size() + " solutions of " + test[0] + ", but got " + tracker.size(), tracker.size() == solutions.size() && tracker.count() == solutions.size());
+            check(tracker, solutions);
+
+            // Pieces of the solutions in turn, taking some off again
+            for (int step = 0; step < 40; step++) {
+                short[] placed = tracker.getPlaced();
+                if (placed.length > 0 && (placed.length == 8 - start.length || r.nextInt(3) == 0)) {
+                    tracker.remove(placed[r.nextInt(placed.length)]);
+                } else {
+                    short[] solution = solutions.get(r.nextInt(solutions.size()));
+                    short piece;
+                    do {
+                        piece = solution[start.length + r.nextInt(solution.length - start.length)];
+                    } while (Placement.indexOfShape(placed, placed.length, Placement.shape(piece)) >= 0);
+                    tracker.place(piece);
+                }
+                check(tracker, solutions);
+            }
+        }
+    }
+
+    @Test
+    public void testCopyWhileMoving() throws Exception {
+        String[] test = SOLUTIONS_MULTI[0];
+        short[] start = Placement.parseSequence(test[0]);
+        List<short[]> solutions = SolutionIndex.standard().solutions(start, start.length).collect(Collectors.toList());
+        CompatibleSolutions tracker = new CompatibleSolutions(start);
+        // Copies taken on another thread as pieces are placed and taken off each track a position the tracker was in
+        AtomicBoolean copied = new AtomicBoolean();
+        Thread mover = new Thread(() -> {
+            Random r = new Random(4);
+            while (!copied.get()) {
+                short[] placed = tracker.getPlaced();
+                if (placed.length > 0 && (placed.length == 8 - start.length || r.nextBoolean())) {
+                    tracker.remove(placed[placed.length - 1]);
+                } else {
+                    short[] solution = solutions.get(r.nextInt(solutions.size()));
+                    short piece;
+                    do {
+                        piece = solution[start.length + r.nextInt(solution.length - start.length)];
+                    } while (Placement.indexOfShape(placed, placed.length, Placement.shape(piece)) >= 0);
+                    tracker.place(piece);
+                }
+            }
+        });
+        List<Throwable> errors = new ArrayList<>();
+        mover.setUncaughtExceptionHandler((thread, e) -> errors.add(e));
+        mover.start();
+        for (int copy = 0; copy < 2000; copy++)
+            check(tracker.copy(), solutions);
+        copied.set(true);
+        mover.join();
+        assertTrue("Moving should not fail: " + errors, errors.isEmpty());
+        check(tracker.copy(), solutions);
+    }
+
+    @Test
+    public void testOffTrack() {
+        String[] test = SOLUTIONS_MULTI[3];
+        short[] start = Placement.parseSequence(test[0]);
+        CompatibleSolutions tracker = new CompatibleSolutions(start);
+        // A piece which no solution holds leaves none, until it is taken off
+        short[] solution = Placement.parseSequence(test[1]);
+        short piece = solution[start.length];
+        short moved = Placement.of(Placement.shape(piece), (Placement.orientation(piece) + 1) % 8, Placement.location(piece));
+        tracker.place(moved);
+        assertTrue("A piece out of every solution should put the player off track", tracker.isOffTrack() && tracker.count() == 0);
+        assertTrue("There should be no hint off track", tracker.hint(Placement.append(start, moved), new Random()) == Placement.NONE);
+        tracker.remove(moved);
+        assertTrue("Taking the piece off should bring every solution back", tracker.count() == test.length - 1);
+    }
+
+    @Test
+    public void testHint() {
+        Random r = new Random(8);
+        for (String[] test : SOLUTIONS_MULTI) {
+            short[] start = Placement.parseSequence(test[0]);
+            CompatibleSolutions tracker = new CompatibleSolutions(start);
+            short[] placement = start;
+            // Follow the hints to the end, each from a solution still holding the pieces
+            while (placement.length < Placement.SHAPES) {
+                short hint = tracker.hint(placement, r);
+                assertTrue("There should be a hint after " + Placement.toString(placement), hint != Placement.NONE);
+                placement = Placement.append(placement, hint);
+                assertTrue("The hint " + Placement.toString(hint) + " should be valid after " + Placement.toString(placement), StepsGame.isPlacementSequenceValid(placement));
+                tracker.place(hint);
+                assertTrue("The hint " + Placement.toString(hint) + " should keep a solution", !tracker.isOffTrack());
+            }
+            short[] finished = placement.clone(), solution = tracker.get(0);
+            Arrays.sort(finished);
+            Arrays.sort(solution);
+            assertTrue("The hints should end in a solution of " + test[0] + ", but got " + Placement.toString(placement), Arrays.equals(finished, solution));
+        }
+    }
+
+    // The solutions a position can be finished as, by trying every order of the rest of each one
+    private static int reachable(List<short[]> solutions, short[] placement) {
+        int count = 0;
+        for (short[] solution : holding(solutions, placement)) {
+            short[] viable = StepsGame.getViablePiecePlacements(placement, solution);
+            if (placement.length == solution.length || viable != null && viable.length > 0)
+                count++;
+        }
+        return count;
+    }
+
+    @Test
+    public void testBestHint() {
+        Random r = new Random(12);
+        for (String[] test : SOLUTIONS_MULTI) {
+            short[] start = Placement.parseSequence(test[0]);
+            List<short[]> solutions = SolutionIndex.standard().solutions(start, start.length).collect(Collectors.toList());
+            CompatibleSolutions tracker = new CompatibleSolutions(start);
+            short[] placement = start;
+            while (placement.length < Placement.SHAPES) {
+                // The best score over every legal piece of every solution
+                int max = 0;
+                for (short[] solution : solutions)
+                    for (short piece : solution)
+                        if (Placement.indexOfShape(placement, placement.length, Placement.shape(piece)) < 0 && StepsGame.isPlacementSequenceValid(Placement.append(placement, piece)))
+                            max = Math.max(max, reachable(solutions, Placement.append(placement, piece)));
+                short best = tracker.bestHint(placement);
+                assertTrue("There should be a best hint after " + Placement.toString(placement), best != Placement.NONE && max > 0);
+                short[] next = Placement.append(placement, best);
+                int score = tracker.countReachable(next);
+                assertTrue("The best hint " + Placement.toString(best) + " should keep " + max + " solutions, but keeps " + score, score == max && score == reachable(solutions, next));
+                // Play the best hint or a random piece of a reachable solution
+                short piece = best;
+                if (r.nextBoolean()) {
+                    short[] solution = tracker.get(r.nextInt(tracker.count()));
+                    short hint = StepsGame.getFirstViablePiecePlacement(placement, solution, null);
+                    if (hint != Placement.NONE)
+                        piece = hint;
+                }
+                placement = Placement.append(placement, piece);
+                tracker.place(piece);
+            }
+        }
+    }
+}
@@ -0,0 +1,53 @@
+package game;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.Timeout;
+
+import java.util.Set;
+import java.util.TreeSet;
+
+import static game.TestUtility.*;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Test objective:
+ * <p>
+ * Determine whether the game can find one viable next move without finding them all
+ */
+public class FirstViablePiecePlacementTest {
+    @Rule
+    public Timeout globalTimeout = Timeout.millis(2000);
+
+    @Test
+    public void testEmpty() {
+        for (String placement : PLACEMENTS) {
+            String viable = StepsGame.getFirstViablePiecePlacement(placement, placement, null);
+            assertTrue("Expected no viable placement, but got " + viable, viable == null);
+        }
+    }
+
+    @Test
+    public void testSameAsFirst() {
+        String[][][] tests = {VIABLE1, VIABLE2, VIABLE3};
+        for (String[][] viables : tests) {
+            for (String[] viable : viables) {
+                Set<String> all = StepsGame.getViablePiecePlacements(viable[1], viable[0]);
+                String first = StepsGame.getFirstViablePiecePlacement(viable[1], viable[0], null);
+                assertTrue("Expected first viable placement " + ((TreeSet<String>) all).first() + " for '" + viable[1] + "', '" + viable[0] + "' but got: " + first, ((TreeSet<String>) all).first().equals(first));
+            }
+        }
+    }
+
+    @Test
+    public void testPreference() {
+        for (String[] viable : VIABLE3) {
+            Set<String> all = StepsGame.getViablePiecePlacements(viable[1], viable[0]);
+            String last = ((TreeSet<String>) all).last();
+            String first = StepsGame.getFirstViablePiecePlacement(viable[1], viable[0], (a, b) -> b.compareTo(a));
+            assertTrue("Expected viable placement " + last + " when preferring the last one for '" + viable[1] + "', '" + viable[0] + "' but got: " + first, last.equals(first));
+            String easiest = StepsGame.getFirstViablePiecePlacement(viable[1], viable[0], StepsGame.byDependency(viable[0]));
+            assertTrue("Expected one of " + all + " for '" + viable[1] + "', '" + viable[0] + "' but got: " + easiest, all.contains(easiest));
+        }
+    }
+}
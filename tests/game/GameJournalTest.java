@@ -0,0 +1,135 @@
+package game;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.junit.rules.Timeout;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Test objective:
+ * <p>
+ * Record games in a journal and resume them from its tail snapshot.
+ */
+public class GameJournalTest {
+    @Rule
+    public Timeout globalTimeout = Timeout.millis(2000);
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private static final String STARTING = "CEQEHuGEO";
+
+    @Test
+    public void testResume() throws IOException {
+        Path path = folder.getRoot().toPath().resolve("journal");
+        try (GameJournal journal = GameJournal.open(path)) {
+            assertTrue("Expected an empty journal to have no game to resume", !journal.canResume());
+            journal.start(Placement.parseSequence(STARTING), 2);
+            journal.rotate(Placement.parse("BBA"));
+            journal.place(Placement.parse("BDx"));
+            journal.place(Placement.parse("AAL"));
+            journal.remove(Placement.parse("BDx"));
+            journal.hint(Placement.NONE);
+        }
+        try (GameJournal journal = GameJournal.open(path)) {
+            assertTrue("Expected the journal to resume a game", journal.canResume());
+            String placement = Placement.toString(journal.getPlacement());
+            assertTrue("Expected to resume 'CEQEHuGEOAAL', but got '" + placement + "'", placement.equals(STARTING + "AAL"));
+            assertTrue("Expected 3 starting pieces, but got " + journal.getStartingCount(), journal.getStartingCount() == 3);
+            assertTrue("Expected difficulty 2, but got " + journal.getDifficulty(), journal.getDifficulty() == 2);
+        }
+    }
+
+    @Test
+    public void testRecords() throws IOException {
+        Path path = folder.getRoot().toPath().resolve("journal");
+        try (GameJournal journal = GameJournal.open(path)) {
+            journal.start(Placement.parseSequence(STARTING), 0);
+            journal.flush();
+            journal.place(Placement.parse("BDx"));
+            journal.flip(Placement.parse("DEA"));
+        }
+        GameJournal.Records records = GameJournal.map(path);
+        byte[] types = new byte[records.size()];
+        for (int i = 0; i < types.length; i++)
+            types[i] = records.type(i);
+        // Each batch ends with a snapshot record and its body
+        byte[] expected = {GameJournal.START, GameJournal.SNAPSHOT, 0, GameJournal.PLACE, GameJournal.FLIP, GameJournal.SNAPSHOT, 0};
+        assertTrue("Expected " + expected.length + " records, but got " + types.length, types.length == expected.length);
+        for (int i = 0; i < types.length; i++)
+            if (expected[i] != 0)
+                assertTrue("Expected record " + i + " to be " + (char) expected[i] + ", but got " + (char) types[i], types[i] == expected[i]);
+        assertTrue("Expected the placed piece to be recorded", records.piece(3) == Placement.parse("BDx"));
+        assertTrue("Expected the tail snapshot at record 5, but got " + records.lastSnapshot(), records.lastSnapshot() == 5);
+    }
+
+    @Test
+    public void testTornBatch() throws IOException {
+        Path path = folder.getRoot().toPath().resolve("journal");
+        try (GameJournal journal = GameJournal.open(path)) {
+            journal.start(Placement.parseSequence(STARTING), 1);
+            journal.place(Placement.parse("BDx"));
+        }
+        long complete = Files.size(path);
+        // A batch cut short by a crash, without its snapshot
+        try (RandomAccessFile file = new RandomAccessFile(path.toFile(), "rw")) {
+            file.seek(complete);
+            file.write(new byte[GameJournal.RECORD_BYTES + 5]);
+        }
+        try (GameJournal journal = GameJournal.open(path)) {
+            short[] placement = journal.getPlacement();
+            assertTrue("Expected to resume from the last complete snapshot, but got " + Arrays.toString(placement), Placement.toString(placement).equals(STARTING + "BDx"));
+            journal.place(Placement.parse("AAL"));
+        }
+        try (GameJournal journal = GameJournal.open(path)) {
+            String placement = Placement.toString(journal.getPlacement());
+            assertTrue("Expected records after a torn batch to be kept, but got '" + placement + "'", placement.equals(STARTING + "BDxAAL"));
+        }
+    }
+
+    @Test
+    public void testDamagedSnapshot() throws IOException {
+        Path path = folder.getRoot().toPath().resolve("journal");
+        short bdx = Placement.parse("BDx"), aal = Placement.parse("AAL");
+        // The number of pieces placed and starting of a tail snapshot which is not a game, and a piece of its
+        // body replaced: out of range, not a placement, a shape twice, or a piece which cannot be played
+        int[][] damages = {{9, 3}, {0, 0}, {4, 5}, {-1, 3}, {4, 3, 3, Placement.NONE}, {4, 3, 1, Placement.COUNT},
+                {4, 3, 2, bdx}, {4, 3, 3, Placement.parse("BBG")}};
+        for (int[] damage : damages) {
+            Files.deleteIfExists(path);
+            try (GameJournal journal = GameJournal.open(path)) {
+                journal.start(Placement.parseSequence(STARTING), 1);
+                journal.place(bdx);
+            }
+            int snapshot = GameJournal.map(path).lastSnapshot();
+            try (RandomAccessFile file = new RandomAccessFile(path.toFile(), "rw")) {
+                long offset = (long) GameJournal.RECORD_BYTES * (snapshot + 1);
+                file.seek(offset + 9);
+                file.write(damage[0]);
+                file.seek(offset + 12);
+                file.writeInt(damage[1]);
+                if (damage.length > 2) {
+                    file.seek(offset + GameJournal.RECORD_BYTES + 2 * damage[2]);
+                    file.writeShort(damage[3]);
+                }
+            }
+            try (GameJournal journal = GameJournal.open(path)) {
+                assertTrue("Expected no game to resume from a snapshot damaged as " + Arrays.toString(damage), !journal.canResume() && journal.getPlacement().length == 0);
+                journal.start(Placement.parseSequence(STARTING), 2);
+                journal.place(aal);
+            }
+            try (GameJournal journal = GameJournal.open(path)) {
+                String placement = Placement.toString(journal.getPlacement());
+                assertTrue("Expected a new game after a damaged snapshot to be resumed, but got '" + placement + "'", journal.canResume() && placement.equals(STARTING + "AAL"));
+            }
+        }
+    }
+}
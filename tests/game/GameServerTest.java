@@ -0,0 +1,134 @@
+package game;
+
+import game.server.GameServer;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.Timeout;
+
+import java.net.InetAddress;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Test objective:
+ * <p>
+ * Play a puzzle through the HTTP service: start a session, validate moves, ask for viable moves and
+ * hints, play a solution, end it, and get the errors of bad requests.
+ */
+public class GameServerTest {
+    @Rule
+    public Timeout globalTimeout = Timeout.millis(20000);
+
+    private GameServer server;
+    private final HttpClient client = HttpClient.newHttpClient();
+
+    @Before
+    public void start() throws Exception {
+        server = new GameServer(0);
+        server.start();
+    }
+
+    @After
+    public void stop() {
+        server.stop();
+    }
+
+    private HttpResponse<String> send(String path) throws Exception {
+        return client.send(HttpRequest.newBuilder(URI.create("http://" + InetAddress.getLoopbackAddress().getHostAddress() + ":" + server.getPort() + path)).build(), HttpResponse.BodyHandlers.ofString());
+    }
+
+    // The body of a response which should succeed
+    private String get(String path) throws Exception {
+        HttpResponse<String> response = send(path);
+        assertTrue("Expected " + path + " to succeed, but got " + response.statusCode() + ": " + response.body(), response.statusCode() == 200);
+        return response.body();
+    }
+
+    private void status(String path, int expected) throws Exception {
+        HttpResponse<String> response = send(path);
+        assertTrue("Expected " + path + " to give " + expected + ", but got " + response.statusCode() + ": " + response.body(), response.statusCode() == expected);
+    }
+
+    @Test
+    public void testPlay() throws Exception {
+        for (int difficulty = 0; difficulty < 5; difficulty++) {
+            String[] game = get("/new?difficulty=" + difficulty).split("\n");
+            assertTrue("A new game should give a session and a starting placement", game.length == 2 && StepsGame.isPlacementSequenceValid(game[1]));
+            String session = "?session=" + game[0], placement = game[1];
+
+            // Hints are viable, and played until there are none
+            while (placement.length() < 24) {
+                String moves = get("/viable" + session);
+                List<String> viable = Arrays.asList(moves.split("\n"));
+                String hint = get("/hint" + session);
+                if (hint.equals("none")) {
+                    assertTrue("There should be no viable moves without a hint after " + placement, moves.isEmpty());
+                    break;
+                }
+                assertTrue("The hint " + hint + " should be one of the viable moves " + viable + " after " + placement, viable.contains(hint));
+                for (String move : viable)
+                    assertTrue("The viable move " + move + " should be valid after " + placement, StepsGame.isPlacementSequenceValid(placement + move));
+                assertTrue("The hint " + hint + " should be played", get("/validate" + session + "&move=" + hint).equals("true"));
+                assertTrue("The hint " + hint + " should not be played twice", get("/validate" + session + "&move=" + hint).equals("false"));
+                placement += hint;
+                assertTrue("The state should be " + placement, get("/state" + session).equals(placement));
+            }
+            assertTrue("The session should be ended", get("/end" + session).equals("true"));
+
+            // A solution of the puzzle, its pieces played in any order they can be
+            game = get("/new?difficulty=" + difficulty).split("\n");
+            session = "?session=" + game[0];
+            placement = game[1];
+            String solution = get("/solve" + session);
+            assertTrue("The solution " + solution + " should hold the starting pieces " + game[1], StepsGame.isPlacementSequenceValid(solution) && solution.startsWith(game[1]));
+            while (placement.length() < 24) {
+                int length = placement.length();
+                for (int i = game[1].length(); i < 24; i += 3) {
+                    String move = solution.substring(i, i + 3);
+                    if (placement.indexOf(move) < 0 && get("/validate" + session + "&move=" + move).equals("true"))
+                        placement += move;
+                }
+                assertTrue("A piece of " + solution + " should be played after " + placement, placement.length() > length);
+            }
+            assertTrue("The state should be " + placement, get("/state" + session).equals(placement));
+            assertTrue("A solved puzzle should have no hint", get("/hint" + session).equals("none"));
+            assertTrue("A solved puzzle should have no viable moves", get("/viable" + session).isEmpty());
+
+            // The last piece can be taken off again, but not a starting piece
+            String last = placement.substring(21);
+            assertTrue("The piece " + last + " should be taken off", get("/remove" + session + "&shape=" + last.charAt(0)).equals("true"));
+            assertTrue("A starting piece should not be taken off", get("/remove" + session + "&shape=" + game[1].charAt(0)).equals("false"));
+            assertTrue("The state should be " + placement.substring(0, 21), get("/state" + session).equals(placement.substring(0, 21)));
+
+            assertTrue("The session should be ended", get("/end" + session).equals("true"));
+            assertTrue("An ended session should not be ended again", get("/end" + session).equals("false"));
+            status("/state" + session, 404);
+        }
+        assertTrue("Every session should be forgotten", server.getSessionCount() == 0);
+    }
+
+    @Test
+    public void testErrors() throws Exception {
+        String session = "?session=" + get("/new").split("\n")[0];
+        status("/new?difficulty=5", 400);
+        status("/new?difficulty=-1", 400);
+        status("/new?difficulty=easy", 400);
+        status("/validate" + session + "&move=AZZ", 400);
+        status("/validate" + session, 400);
+        status("/remove" + session + "&shape=AB", 400);
+        for (String endpoint : new String[]{"/validate", "/viable", "/hint", "/solve", "/state", "/end"})
+            status(endpoint, 400);
+        for (String endpoint : new String[]{"/viable", "/hint", "/solve", "/state"})
+            status(endpoint + "?session=none", 404);
+        status("/validate?session=none&move=BGS", 404);
+        assertTrue("Every request should be counted", server.getRequestCount() == 18);
+    }
+}
@@ -0,0 +1,74 @@
+package game;
+
+import game.gui.Location;
+import game.gui.LocationGrid;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.Timeout;
+
+import java.util.Random;
+
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Test objective:
+ * <p>
+ * Determine whether the location grid snaps a dropped piece to the same location
+ * as searching every location for the nearest one.
+ */
+public class LocationGridTest {
+    @Rule
+    public Timeout globalTimeout = Timeout.millis(2000);
+
+    private static final LocationGrid GRID = new LocationGrid();
+
+    // The nearest location within snapping distance, found by checking all of them
+    private static Location nearest(double x, double y, boolean peg) {
+        Location nearest = null;
+        double min = 1024;
+        for (int i = 0; i < Placement.LOCATIONS; i++) {
+            if (LocationGrid.hasPeg(i) != peg)
+                continue;
+            Location location = GRID.get(i);
+            double distance = Math.sqrt(Math.pow(x - location.getX(), 2) + Math.pow(y - location.getY(), 2));
+            if (distance < min) {
+                min = distance;
+                nearest = location;
+            }
+        }
+        return min < LocationGrid.SNAP_DISTANCE ? nearest : null;
+    }
+
+    @Test
+    public void testSnap() {
+        Random r = new Random();
+        for (int i = 0; i < 100000; i++) {
+            double x = r.nextDouble() * 900 - 50;
+            double y = r.nextDouble() * 500 - 50;
+            boolean peg = r.nextBoolean();
+            Location expected = nearest(x, y, peg);
+            Location snapped = GRID.snap(x, y, peg);
+            assertTrue("Position (" + x + ", " + y + ") should snap to " + (expected == null ? null : expected.getId()) + ", but got " + (snapped == null ? null : snapped.getId()), expected == snapped);
+        }
+    }
+
+    @Test
+    public void testPlacementLocation() {
+        for (short code = 0; code < Placement.COUNT; code++) {
+            String placement = Placement.toString(code);
+            Location location = GRID.get(placement);
+            boolean peg = placement.charAt(1) < 'E';
+            if (LocationGrid.hasPeg(Placement.location(code)) == peg)
+                assertTrue("Placement '" + placement + "' should be at location " + placement.charAt(2), location != null && location.getId().charAt(0) == placement.charAt(2));
+            else
+                assertTrue("Placement '" + placement + "' should have no location", location == null);
+        }
+    }
+
+    @Test
+    public void testStandardGeometry() {
+        assertTrue("The grid should have the columns and rows of the standard board", LocationGrid.COLUMNS == BoardGeometry.STANDARD.width() && LocationGrid.ROWS == BoardGeometry.STANDARD.height());
+        for (int i = 0; i < Placement.LOCATIONS; i++)
+            assertTrue("Location " + i + " should have a peg only if it does on the standard board", LocationGrid.hasPeg(i) == BoardGeometry.STANDARD.hasPeg(i));
+    }
+}
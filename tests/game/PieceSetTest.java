@@ -0,0 +1,109 @@
+package game;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.Timeout;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.util.Arrays;
+
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Test objective:
+ * <p>
+ * Load piece definitions and generate their distinct orientations.
+ */
+public class PieceSetTest {
+    @Rule
+    public Timeout globalTimeout = Timeout.millis(5000);
+
+    // The rings of the game's pieces face up and flipped, as the game first defined them
+    private static final String[] STATES = {"120212100", "012121002", "020012021", "010120210", "020012120", "010120012", "020210021", "010021210", "020210120", "010021012", "001012120", "200120012", "021012120", "210120012", "021210021", "210021210"};
+
+    private static PieceSet load(String definitions) throws IOException {
+        return PieceSet.load(new ByteArrayInputStream(definitions.getBytes()));
+    }
+
+    @Test
+    public void testStandard() {
+        PieceSet pieces = PieceSet.standard();
+        assertTrue("Expected 8 pieces, but got " + pieces.size(), pieces.size() == 8);
+        for (int piece = 0; piece < pieces.size(); piece++) {
+            assertTrue("Expected piece " + (char) ('A' + piece) + ", but got " + pieces.name(piece), pieces.name(piece) == 'A' + piece);
+            assertTrue("Piece " + pieces.name(piece) + " should have 8 distinct orientations, but has " + pieces.symmetry(piece), pieces.symmetry(piece) == 8);
+            for (int orientation = 0; orientation < Placement.ORIENTATIONS; orientation++) {
+                String expected = StepsGame.getExactState(STATES[2 * piece + (orientation < 4 ? 0 : 1)], orientation);
+                String state = pieces.state(piece, orientation);
+                assertTrue("Piece " + pieces.name(piece) + " in orientation " + orientation + " should be " + expected + ", but got " + state, state.equals(expected));
+            }
+        }
+    }
+
+    @Test
+    public void testSymmetric() throws IOException {
+        PieceSet pieces = load("# symmetric pieces\nP 020 212 020\n\nQ 100 010 001\nR 120 212 100\n");
+        assertTrue("Expected 3 pieces, but got " + pieces.size(), pieces.size() == 3);
+        int[][] expected = {{0, 4}, {0, 1, 4, 5}, {0, 1, 2, 3, 4, 5, 6, 7}};
+        for (int piece = 0; piece < 3; piece++) {
+            int[] orientations = pieces.orientations(piece);
+            assertTrue("Piece " + pieces.name(piece) + " should have orientations " + Arrays.toString(expected[piece]) + ", but has " + Arrays.toString(orientations), Arrays.equals(orientations, expected[piece]));
+            assertTrue("Piece " + pieces.name(piece) + " should have symmetry " + expected[piece].length, pieces.symmetry(piece) == expected[piece].length);
+            for (int orientation = 0; orientation < Placement.ORIENTATIONS; orientation++) {
+                int canonical = pieces.canonical(piece, orientation);
+                assertTrue("Piece " + pieces.name(piece) + " should look the same in orientations " + orientation + " and " + canonical, canonical <= orientation && pieces.state(piece, canonical).equals(pieces.state(piece, orientation)));
+            }
+        }
+        assertTrue("The flip side of P should swap its layers", pieces.state(0, 4).equals("010121010"));
+
+        // Every orientation is placeable on a board, with the masks of the distinct one it looks like
+        BoardGeometry board = BoardGeometry.checkerboard(10, 10, pieces);
+        int home = 55;
+        for (int orientation = 0; orientation < Placement.ORIENTATIONS; orientation++) {
+            int code = board.code(0, orientation, home);
+            int canonical = board.code(0, orientation < 4 ? 0 : 4, home);
+            assertTrue("P in orientation " + orientation + " should be placeable", board.isPlaceable(code));
+            assertTrue("P in orientation " + orientation + " should map onto orientation " + (orientation < 4 ? 0 : 4), board.canonical(code) == canonical);
+            for (int w = 0; w < board.words(); w++)
+                assertTrue("P in orientation " + orientation + " should have the masks of its canonical orientation",
+                        board.bottom(code, w) == board.bottom(canonical, w) && board.upper(code, w) == board.upper(canonical, w) && board.obstructed(code, w) == board.obstructed(canonical, w));
+            assertTrue("P in orientation " + orientation + " should be a valid sequence", board.isPlacementSequenceValid(new int[]{code}, 1));
+        }
+        int[] sequence = {board.code(1, 0, 11), board.code(0, 2, home)};
+        assertTrue("P in orientation C should follow another piece as in orientation A", board.isPlacementSequenceValid(sequence, 2));
+    }
+
+    @Test
+    public void testExtended() throws IOException {
+        // The game's pieces and two more, on a larger board
+        PieceSet pieces = load("A 120 212 100\nB 020 012 021\nC 020 012 120\nD 020 210 021\nE 020 210 120\nF 001 012 120\nG 021 012 120\nH 021 210 021\nI 020 212 020\nJ 120 010 021\n");
+        BoardGeometry board = BoardGeometry.checkerboard(10, 10, pieces);
+        assertTrue("Expected 10 pieces, but got " + pieces.size(), pieces.size() == 10);
+        assertTrue("Expected " + 10 * 8 * 100 + " placement codes, but got " + board.placements(), board.placements() == 10 * 8 * 100);
+        // A solution of the standard board in the top half, then the new pieces below
+        int[] codes = new int[10];
+        short[] solution = Placement.parseSequence(TestUtility.SOLUTIONS_ONE[0][1]);
+        for (int i = 0; i < solution.length; i++)
+            codes[i] = board.code(Placement.shape(solution[i]), Placement.orientation(solution[i]), Placement.location(solution[i]));
+        codes[8] = board.code(8, 0, 71);
+        codes[9] = board.code(9, 0, 75);
+        assertTrue("The extended placement should be valid", board.isPlacementSequenceValid(codes, codes.length));
+        codes[9] = board.code(9, 0, 72);
+        assertTrue("Overlapping pieces should not be valid", !board.isPlacementSequenceValid(codes, codes.length));
+    }
+
+    @Test
+    public void testBadDefinitions() {
+        String[] bad = {"", "# nothing\n", "A 120 212\n", "A 120 212 103\n", "AB 120 212 100\n", "A 000 000 000\n", "A 120 212 100\nA 020 012 021\n"};
+        for (String definitions : bad) {
+            boolean thrown = false;
+            try {
+                load(definitions);
+            } catch (IOException e) {
+                thrown = true;
+            }
+            assertTrue("Definitions '" + definitions + "' should not load", thrown);
+        }
+    }
+}
@@ -0,0 +1,104 @@
+package game;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.Timeout;
+
+import java.util.Random;
+import java.util.Set;
+import java.util.TreeSet;
+
+import static game.TestUtility.*;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Test objective:
+ * <p>
+ * Determine whether packed placements convert to and from placement strings,
+ * and whether the packed engine agrees with the text one.
+ */
+public class PlacementTest {
+    @Rule
+    public Timeout globalTimeout = Timeout.millis(2000);
+
+    @Test
+    public void testRoundTrip() {
+        String previous = "";
+        for (short code = 0; code < Placement.COUNT; code++) {
+            String text = Placement.toString(code);
+            assertTrue("Placement " + code + " converted to '" + text + "', which is not well-formed", StepsGame.isPiecePlacementWellFormed(text));
+            assertTrue("Placement '" + text + "' should pack to " + code + ", but got " + Placement.parse(text), Placement.parse(text) == code);
+            assertTrue("Placement '" + text + "' should sort after '" + previous + "'", text.compareTo(previous) > 0);
+            previous = text;
+        }
+    }
+
+    @Test
+    public void testBadlyFormed() {
+        Random r = new Random();
+        for (int i = 0; i < BASE_ITERATIONS; i++) {
+            String test = badlyFormedPiecePlacement(r);
+            assertTrue("Placement '" + test + "' is badly formed, but was packed", Placement.parse(test) == Placement.NONE);
+        }
+    }
+
+    @Test
+    public void testSequences() {
+        for (String placement : PLACEMENTS) {
+            short[] sequence = Placement.parseSequence(placement);
+            assertTrue("Placement '" + placement + "' should have 8 pieces, but got " + sequence.length, sequence.length == 8);
+            assertTrue("Placement '" + placement + "' converted back to '" + Placement.toString(sequence) + "'", Placement.toString(sequence).equals(placement));
+        }
+    }
+
+    @Test
+    public void testValid() {
+        Random r = new Random();
+        for (String placement : PLACEMENTS) {
+            for (int i = 3; i <= placement.length(); i += 3) {
+                String test = placement.substring(0, i);
+                assertTrue("Packed placement '" + test + "' should agree with the placement string", StepsGame.isPlacementSequenceValid(Placement.parseSequence(test)) == StepsGame.isPlacementSequenceValid(test));
+            }
+        }
+        for (int i = 0; i < BASE_ITERATIONS; i++) {
+            String test = GOOD_PAIRS[r.nextInt(GOOD_PAIRS.length)] + invalidPiecePlacement(r);
+            short[] sequence = new short[3];
+            if (StepsGame.isPlacementWellFormed(test)) {
+                Placement.parseSequence(test, sequence);
+                assertTrue("Packed placement '" + test + "' should agree with the placement string", StepsGame.isPlacementSequenceValid(sequence) == StepsGame.isPlacementSequenceValid(test));
+            }
+        }
+    }
+
+    @Test
+    public void testLegalLocations() {
+        for (String placement : PLACEMENTS) {
+            for (int i = 0; i < placement.length(); i += 3) {
+                short[] prefix = Placement.parseSequence(placement.substring(0, i));
+                if (!StepsGame.isPlacementSequenceValid(prefix, prefix.length) && prefix.length > 0)
+                    continue;
+                for (int shape = 0; shape < Placement.SHAPES; shape++) {
+                    for (int orientation = 0; orientation < Placement.ORIENTATIONS; orientation++) {
+                        long legal = StepsGame.getLegalLocations(prefix, prefix.length, shape, orientation);
+                        for (int location = 0; location < Placement.LOCATIONS; location++) {
+                            short piece = Placement.of(shape, orientation, location);
+                            boolean valid = StepsGame.isPlacementSequenceValid(Placement.append(prefix, piece));
+                            assertTrue("Placement '" + Placement.toString(piece) + "' after '" + placement.substring(0, i) + "' should be " + (valid ? "legal" : "illegal"), valid == ((legal & 1L << location) != 0));
+                        }
+                    }
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testViable() {
+        for (String[] viable : VIABLE3) {
+            short[] placements = StepsGame.getViablePiecePlacements(Placement.parseSequence(viable[1]), Placement.parseSequence(viable[0]));
+            Set<String> result = new TreeSet<>();
+            for (short placement : placements)
+                result.add(Placement.toString(placement));
+            assertTrue("Expected the same viable placements for '" + viable[1] + "', '" + viable[0] + "' but got: " + result, result.equals(StepsGame.getViablePiecePlacements(viable[1], viable[0])));
+        }
+    }
+}
@@ -0,0 +1,93 @@
+package game;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.Timeout;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.TreeSet;
+
+import static game.TestUtility.*;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Test objective:
+ * <p>
+ * Order the rest of an unordered objective by the pairs of pieces which have to go one way round,
+ * and count the orders over the sets of pieces played, finding the same orders as trying every permutation.
+ */
+public class PlayOrderTest {
+    @Rule
+    public Timeout globalTimeout = Timeout.millis(10000);
+
+    // Every order of the rest of the objective which can be played after the placement
+    private static Set<String> bruteForce(String placement, String objective) {
+        List<String> rest = new ArrayList<>();
+        for (int i = 0; i < objective.length(); i += 3)
+            if (!placement.contains(objective.substring(i, i + 3)))
+                rest.add(objective.substring(i, i + 3));
+        List<String> permutations = new ArrayList<>();
+        StepsGame.permutation(rest.toArray(new String[0]), 0, rest.size() - 1, permutations);
+        Set<String> orders = new TreeSet<>();
+        for (String order : permutations)
+            if (StepsGame.isPlacementSequenceValid(placement + order))
+                orders.add(order);
+        return orders;
+    }
+
+    private static void check(String placement, String objective) {
+        Set<String> expected = bruteForce(placement, objective);
+        Set<String> orders = new TreeSet<>(StepsGame.getPlayOrders(placement, objective));
+        assertTrue("After '" + placement + "' towards '" + objective + "' expected orders " + expected + ", but got " + orders, orders.equals(expected));
+        assertTrue("Every order should be found once", StepsGame.getPlayOrders(placement, objective).size() == orders.size());
+        long count = StepsGame.countCompletionOrders(placement, objective);
+        assertTrue("After '" + placement + "' towards '" + objective + "' expected " + expected.size() + " orders to be counted, but got " + count, count == expected.size());
+
+        String order = StepsGame.getPlayOrder(placement, objective);
+        if (expected.isEmpty()) {
+            assertTrue("There should be no order after '" + placement + "' towards '" + objective + "', but got " + order, order == null);
+            return;
+        }
+        assertTrue("Expected an order after '" + placement + "' towards '" + objective + "'", order != null && expected.contains(order));
+        assertTrue("The order should finish the objective", normalize(placement + order).equals(normalize(objective)));
+
+        // The first pieces of the orders are the viable piece placements
+        Set<String> first = new TreeSet<>();
+        for (String o : orders)
+            first.add(o.substring(0, 3));
+        Set<String> viable = StepsGame.getViablePiecePlacements(placement, objective);
+        assertTrue("The first pieces of the orders " + first + " should be the viable piece placements " + viable, first.equals(viable));
+    }
+
+    @Test
+    public void testSolutions() {
+        Random r = new Random(14);
+        for (String solution : PLACEMENTS) {
+            // The pieces of the solution in a random order, a few of them placed in a valid order
+            String objective = shufflePlacement(solution);
+            for (int placed = 0; placed < 8; placed++) {
+                String placement = solution.substring(0, 3 * placed);
+                check(placement, objective);
+                if (placed > 0 && placed < 7)
+                    check(shufflePlacement(placement), objective);
+            }
+            // Partial objectives, with some pieces left out altogether
+            check("", shufflePlacement(solution.substring(3 * r.nextInt(4))));
+        }
+    }
+
+    @Test
+    public void testNoOrder() {
+        // Two pieces which cannot follow each other either way round
+        String first = PLACEMENTS[0].substring(0, 3);
+        String clash = Placement.toString(Placement.of(Placement.shape(Placement.parse(PLACEMENTS[0].substring(3, 6))), 0, Placement.location(Placement.parse(first))));
+        check("", first + clash);
+        assertTrue("Pieces on the same location have no order", StepsGame.getPlayOrder("", first + clash) == null);
+        // A placement not drawn from the objective
+        assertTrue("A placement outside the objective has no order", StepsGame.getPlayOrder("AAL", PLACEMENTS[2]) == null && StepsGame.countCompletionOrders("AAL", PLACEMENTS[2]) == 0);
+        assertTrue("A finished objective has an empty order", StepsGame.getPlayOrder(PLACEMENTS[0], PLACEMENTS[0]).equals("") && StepsGame.countCompletionOrders(PLACEMENTS[0], PLACEMENTS[0]) == 1);
+    }
+}
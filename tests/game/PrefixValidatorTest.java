@@ -0,0 +1,192 @@
+package game;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.Timeout;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import static game.TestUtility.*;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Test objective:
+ * <p>
+ * Validate sequences sharing prefixes as isPlacementSequenceValid does, checking each prefix once
+ * when the sequences sharing it are adjacent, and never more pieces than validating one at a time.
+ */
+public class PrefixValidatorTest {
+    @Rule
+    public Timeout globalTimeout = Timeout.millis(10000);
+
+    private static BitSet expected(short[][] placements) {
+        BitSet valid = new BitSet();
+        for (int i = 0; i < placements.length; i++)
+            if (StepsGame.isPlacementSequenceValid(placements[i]))
+                valid.set(i);
+        return valid;
+    }
+
+    private static short[][] pack(List<String> placements) {
+        short[][] packed = new short[placements.size()][];
+        for (int i = 0; i < packed.length; i++)
+            packed[i] = StepsGame.isPlacementWellFormed(placements.get(i)) ? Placement.parseSequence(placements.get(i)) : null;
+        return packed;
+    }
+
+    // The pieces looked at when validating one at a time: up to the first which is not well formed or cannot be played
+    private static long pieces(short[][] placements) {
+        long pieces = 0;
+        for (short[] placement : placements) {
+            if (placement == null || placement.length == 0 || placement.length > Placement.SHAPES)
+                continue;
+            int length = 1;
+            while (length < placement.length && StepsGame.isPlacementSequenceValid(placement, length))
+                length++;
+            pieces += length;
+        }
+        return pieces;
+    }
+
+    // The distinct prefixes of the well-formed placements whose parent is valid
+    private static int prefixes(List<String> placements) {
+        Set<String> prefixes = new HashSet<>();
+        for (String placement : placements) {
+            if (!StepsGame.isPlacementWellFormed(placement))
+                continue;
+            for (int end = 3; end <= placement.length(); end += 3)
+                if (end == 3 || StepsGame.isPlacementSequenceValid(placement.substring(0, end - 3)))
+                    prefixes.add(placement.substring(0, end));
+        }
+        return prefixes.size();
+    }
+
+    private static PrefixValidator check(short[][] placements) {
+        PrefixValidator validator = new PrefixValidator();
+        BitSet valid = validator.validate(placements);
+        BitSet expected = expected(placements);
+        assertTrue("Expected " + expected.cardinality() + " valid placements, but got " + valid.cardinality(), valid.equals(expected));
+        long pieces = pieces(placements);
+        assertTrue("Expected at most " + pieces + " pieces to be checked, but got " + validator.getChecks(), validator.getChecks() <= pieces);
+        return validator;
+    }
+
+    // Well-formed placements, each sharing a prefix with the one before it as far as they have one in common
+    private static void checkAdjacent(List<String> placements) {
+        PrefixValidator validator = check(pack(placements));
+        int prefixes = prefixes(placements);
+        assertTrue("Expected " + prefixes + " prefixes to be checked, but got " + validator.getChecks(), validator.getChecks() == prefixes);
+    }
+
+    @Test
+    public void testPermutations() {
+        // Every order of the pieces of a few solutions, as generated and sorted with their prefixes
+        for (String solution : new String[]{PLACEMENTS[0], PLACEMENTS[5], PLACEMENTS[11]}) {
+            String[] pieces = new String[8];
+            for (int i = 0; i < 8; i++)
+                pieces[i] = solution.substring(3 * i, 3 * i + 3);
+            List<String> placements = new ArrayList<>();
+            StepsGame.permutation(pieces, 0, 7, placements);
+            checkAdjacent(placements);
+            for (int i = 0; i < 40320; i += 7)
+                placements.add(placements.get(i).substring(0, 3 * (1 + i % 8)));
+            check(pack(placements));
+            Collections.sort(placements);
+            checkAdjacent(placements);
+        }
+    }
+
+    @Test
+    public void testMixed() {
+        // Solutions, their prefixes shuffled, random pieces, repeats and badly formed placements
+        Random r = new Random(47);
+        List<String> placements = new ArrayList<>();
+        while (placements.size() < 20000) {
+            String solution = PLACEMENTS[r.nextInt(PLACEMENTS.length)];
+            switch (r.nextInt(5)) {
+                case 0:
+                    placements.add(solution);
+                    break;
+                case 1:
+                    placements.add(shufflePlacement(solution.substring(0, 3 * (1 + r.nextInt(8)))));
+                    break;
+                case 2:
+                    StringBuilder random = new StringBuilder(solution.substring(0, 3 * r.nextInt(4)));
+                    for (int i = 1 + r.nextInt(4); i > 0; i--)
+                        random.append(randomShape(r)).append(randomOrientation(r)).append(randomLocation(r));
+                    placements.add(random.toString());
+                    break;
+                case 3:
+                    placements.add(placements.isEmpty() ? "" : placements.get(r.nextInt(placements.size())));
+                    break;
+                default:
+                    placements.add(r.nextBoolean() ? badlyFormedPiecePlacement(r) : solution.substring(1));
+            }
+        }
+        PrefixValidator validator = new PrefixValidator();
+        assertTrue("Strings should be validated as packed sequences", validator.validate(placements).equals(expected(pack(placements))));
+        check(pack(placements));
+        Collections.sort(placements);
+        check(pack(placements));
+        assertTrue("Nothing should be valid in no placements", new PrefixValidator().validate(new ArrayList<String>()).isEmpty());
+    }
+
+    @Test
+    public void testNotWellFormed() {
+        short bgs = Placement.parse("BGS", 0), ahq = Placement.parse("AHQ", 0), bhq = Placement.parse("BHQ", 0);
+        short[][] single = {{bgs, Placement.NONE}, {bgs, Placement.COUNT}, {bgs, Short.MAX_VALUE}, {bgs, -2}, {bgs, bhq}, {bgs, ahq, bgs},
+                {}, null, {bgs, ahq, Placement.NONE, Placement.NONE, Placement.NONE, Placement.NONE, Placement.NONE, Placement.NONE, Placement.NONE}};
+        for (short[] placement : single) {
+            // On its own, and after sequences sharing each of its prefixes
+            List<short[]> placements = new ArrayList<>();
+            for (int length = 0; placement != null && length <= placement.length; length++)
+                placements.add(Arrays.copyOf(placement, length));
+            placements.add(placement);
+            assertTrue("Sequence " + Arrays.toString(placement) + " should not be valid", new PrefixValidator().validate(new short[][]{placement}).isEmpty());
+            check(placements.toArray(new short[0][]));
+        }
+
+        // Enough permutations to be walked in blocks, some pieces replaced by codes which are not placements
+        String[] pieces = new String[8];
+        for (int i = 0; i < 8; i++)
+            pieces[i] = PLACEMENTS[3].substring(3 * i, 3 * i + 3);
+        List<String> permutations = new ArrayList<>();
+        StepsGame.permutation(pieces, 0, 7, permutations);
+        short[][] packed = pack(permutations);
+        Random r = new Random(48);
+        short[] codes = {Placement.NONE, Placement.COUNT, Short.MAX_VALUE, Short.MIN_VALUE, bgs};
+        for (int i = 0; i < packed.length; i += 1 + r.nextInt(10))
+            packed[i][r.nextInt(8)] = codes[r.nextInt(codes.length)];
+        check(packed);
+        Collections.shuffle(Arrays.asList(packed), r);
+        check(packed);
+    }
+
+    @Test
+    public void testSolutionsFile() throws IOException {
+        List<String> lines;
+        try (var is = StepsGame.class.getResourceAsStream("gui/assets/solutions")) {
+            lines = List.of(new String(is.readAllBytes()).split("\n"));
+        }
+        Path file = Files.createTempFile("placements", ".txt");
+        try {
+            Files.write(file, lines);
+            PrefixValidator validator = new PrefixValidator();
+            BitSet valid = validator.validate(file);
+            assertTrue("Every solution should be valid", valid.cardinality() == lines.size());
+            assertTrue("No more pieces should be checked than the solutions have", validator.getChecks() <= 8L * lines.size());
+        } finally {
+            Files.delete(file);
+        }
+    }
+}
@@ -0,0 +1,74 @@
+package game;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.Timeout;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Test objective:
+ * <p>
+ * Fetch puzzles from the catalogue by difficulty and index.
+ */
+public class PuzzleCatalogueTest {
+    @Rule
+    public Timeout globalTimeout = Timeout.millis(5000);
+
+    @Test
+    public void testStandard() throws IOException {
+        List<String> lines = new ArrayList<>();
+        try (BufferedReader br = new BufferedReader(new InputStreamReader(StepsGame.class.getResourceAsStream("gui/assets/starting")))) {
+            String line;
+            while ((line = br.readLine()) != null)
+                if (!line.isEmpty())
+                    lines.add(line);
+        }
+        PuzzleCatalogue catalogue = PuzzleCatalogue.standard();
+        assertTrue("Expected 5 difficulty levels, but got " + catalogue.difficulties(), catalogue.difficulties() == 5);
+        assertTrue("Expected " + lines.size() + " puzzles, but got " + catalogue.size(), catalogue.size() == lines.size());
+        int line = 0;
+        for (int difficulty = 0; difficulty < catalogue.difficulties(); difficulty++) {
+            assertTrue("Expected 24 puzzles of difficulty " + difficulty + ", but got " + catalogue.count(difficulty), catalogue.count(difficulty) == 24);
+            for (int i = 0; i < catalogue.count(difficulty); i++, line++) {
+                String puzzle = Placement.toString(catalogue.get(difficulty, i));
+                assertTrue("Expected puzzle " + i + " of difficulty " + difficulty + " to be '" + lines.get(line) + "', but got '" + puzzle + "'", puzzle.equals(lines.get(line)));
+            }
+        }
+    }
+
+    @Test
+    public void testLarge() throws IOException {
+        Random r = new Random(1);
+        List<List<String>> puzzles = new ArrayList<>();
+        for (int difficulty = 0; difficulty < 3; difficulty++) {
+            List<String> level = new ArrayList<>();
+            for (int i = 0; i < 100000; i++)
+                level.add(Placement.toString(Placement.of(difficulty, r.nextInt(8), r.nextInt(50))) + Placement.toString(Placement.of(7, 0, i % 50)));
+            puzzles.add(level);
+        }
+        puzzles.add(Collections.emptyList());
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        PuzzleCatalogue.write(puzzles, out);
+        PuzzleCatalogue catalogue = PuzzleCatalogue.load(new ByteArrayInputStream(out.toByteArray()));
+        assertTrue("Expected 300000 puzzles, but got " + catalogue.size(), catalogue.size() == 300000);
+        assertTrue("Expected no puzzles of difficulty 3", catalogue.count(3) == 0 && catalogue.random(3, r) == null);
+        for (int i = 0; i < 1000; i++) {
+            int difficulty = r.nextInt(3);
+            int index = r.nextInt(100000);
+            String puzzle = Placement.toString(catalogue.get(difficulty, index));
+            String expected = puzzles.get(difficulty).get(index);
+            assertTrue("Expected puzzle " + index + " of difficulty " + difficulty + " to be '" + expected + "', but got '" + puzzle + "'", puzzle.equals(expected));
+        }
+    }
+}
@@ -0,0 +1,125 @@
+package game;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.Timeout;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Set;
+
+import static game.TestUtility.*;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Test objective:
+ * <p>
+ * Stop searches and queries when their budget of nodes or time runs out, or they are cancelled,
+ * returning correct partial results, and count how often budgets run out.
+ */
+public class SearchBudgetTest {
+    @Rule
+    public Timeout globalTimeout = Timeout.millis(20000);
+
+    @Test
+    public void testSolverNodes() {
+        for (String[] test : SOLUTIONS_MULTI) {
+            short[] start = Placement.parseSequence(test[0]);
+            Solver solver = new Solver(true);
+            List<short[]> all = solver.solve(start, start.length, Integer.MAX_VALUE);
+            long nodes = solver.getNodes();
+            SearchBudget enough = SearchBudget.ofNodes(nodes);
+            assertTrue("A budget of every node should find every solution of " + test[0], new Solver(true).solve(start, start.length, Integer.MAX_VALUE, enough).size() == all.size() && !enough.isExhausted() && enough.getNodes() == nodes);
+
+            // Fewer nodes find the first solutions, in the same order
+            for (long budget = 0; budget < nodes; budget += 1 + nodes / 7) {
+                long outOfNodes = SearchBudget.getOutOfNodes();
+                SearchBudget partial = SearchBudget.ofNodes(budget);
+                List<short[]> found = new Solver(true).solve(start, start.length, Integer.MAX_VALUE, partial);
+                assertTrue("A budget of " + budget + " of " + nodes + " nodes should be exhausted", partial.isExhausted() && partial.getNodes() == budget && SearchBudget.getOutOfNodes() > outOfNodes);
+                assertTrue("A budget of " + budget + " nodes should find at most every solution", found.size() <= all.size());
+                for (int i = 0; i < found.size(); i++)
+                    assertTrue("Solution " + i + " should be " + Placement.toString(all.get(i)), Arrays.equals(found.get(i), all.get(i)));
+            }
+        }
+    }
+
+    @Test
+    public void testDeadlineAndCancel() throws InterruptedException {
+        long outOfTime = SearchBudget.getOutOfTime(), cancelled = SearchBudget.getCancelled(), exhausted = SearchBudget.getExhausted();
+        SearchBudget late = SearchBudget.ofMillis(0);
+        assertTrue("A search past its deadline should find nothing", new Solver(true).solve(new short[0], 0, Integer.MAX_VALUE, late).isEmpty() && late.isExhausted());
+        assertTrue("The deadline should be counted", SearchBudget.getOutOfTime() == outOfTime + 1);
+
+        // Every solution from an empty board, stopped by another thread
+        SearchBudget budget = SearchBudget.ofNodes(Long.MAX_VALUE);
+        int[] found = new int[1];
+        Thread search = new Thread(() -> found[0] = new Solver(true).solve(new short[0], 0, Integer.MAX_VALUE, budget).size());
+        search.start();
+        Thread.sleep(50);
+        budget.cancel();
+        search.join(5000);
+        assertTrue("A cancelled search should stop", !search.isAlive() && budget.isCancelled() && budget.isExhausted());
+        assertTrue("A cancelled search should find some of the solutions", found[0] < SolutionIndex.standard().size() / 2);
+        assertTrue("The cancel should be counted", SearchBudget.getCancelled() == cancelled + 1 && SearchBudget.getExhausted() == exhausted + 2);
+
+        SearchBudget generous = new SearchBudget(Long.MAX_VALUE, 60000);
+        assertTrue("A search within its deadline should finish", StepsGame.isSolvable(SOLUTIONS_ONE[0][0], generous) && !generous.isExhausted());
+
+        // Deadlines too far away to count in nanoseconds from now
+        for (long millis : new long[]{Long.MAX_VALUE / 1000, Long.MAX_VALUE / 1000000, Long.MAX_VALUE - 1}) {
+            SearchBudget distant = SearchBudget.ofMillis(millis);
+            assertTrue("A deadline " + millis + " ms away should not have passed", StepsGame.isSolvable(SOLUTIONS_ONE[0][0], distant) && !distant.isExhausted());
+        }
+    }
+
+    @Test
+    public void testQueries() {
+        for (String[] test : SOLUTIONS_MULTI) {
+            String[] all = StepsGame.getSolutions(test[0]);
+            assertTrue("No budget should find every solution of " + test[0], Arrays.equals(StepsGame.getSolutions(test[0], null), all));
+            for (int budget = 0; budget <= all.length; budget++) {
+                SearchBudget nodes = SearchBudget.ofNodes(budget);
+                String[] found = StepsGame.getSolutions(test[0], nodes);
+                assertTrue("A budget of " + budget + " should find the first solutions of " + test[0], Arrays.equals(found, Arrays.copyOf(all, budget)));
+                assertTrue("A budget of " + budget + " of " + all.length + " solutions should be exhausted only if it is short", nodes.isExhausted() == (budget < all.length));
+            }
+
+            // Viable piece placements towards each solution, found with too little and enough budget
+            for (int k = 1; k < test.length; k++) {
+                String objective = shufflePlacement(test[k]);
+                Set<String> viable = StepsGame.getViablePiecePlacements(test[0], objective);
+                for (int budget = 0; budget < 300; budget += 5) {
+                    SearchBudget nodes = SearchBudget.ofNodes(budget);
+                    Set<String> found = StepsGame.getViablePiecePlacements(test[0], objective, nodes);
+                    assertTrue("Viable pieces found within a budget of " + budget + " should be viable", viable.containsAll(found));
+                    assertTrue("An unexhausted budget should find every viable piece", nodes.isExhausted() || found.equals(viable));
+                }
+                assertTrue("Some budget should be enough", StepsGame.getViablePiecePlacements(test[0], objective, SearchBudget.ofNodes(256)).equals(viable));
+            }
+        }
+    }
+
+    @Test
+    public void testCache() {
+        SolvabilityCache cache = new SolvabilityCache(10);
+        short[] start = Placement.parseSequence(SOLUTIONS_ONE[0][0]);
+        SearchBudget nodes = SearchBudget.ofNodes(1);
+        assertTrue("A single node should not be enough to finish " + SOLUTIONS_ONE[0][0], !cache.isSolvable(start, start.length, nodes) && nodes.isExhausted());
+        assertTrue("An open answer should not be remembered", cache.size() == 0);
+        assertTrue("The position should be solvable", cache.isSolvable(start, start.length, SearchBudget.ofNodes(Long.MAX_VALUE)) && cache.size() == 1);
+        long misses = cache.getMisses();
+        assertTrue("A settled answer should be remembered", cache.isSolvable(start, start.length, SearchBudget.ofNodes(0)) && cache.getMisses() == misses);
+    }
+
+    @Test
+    public void testBadBudget() {
+        boolean thrown = false;
+        try {
+            new SearchBudget(-1, 0);
+        } catch (IllegalArgumentException e) {
+            thrown = true;
+        }
+        assertTrue("A negative budget should be refused", thrown);
+    }
+}
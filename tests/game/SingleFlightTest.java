@@ -0,0 +1,129 @@
+package game;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.Timeout;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static game.TestUtility.SOLUTIONS_MULTI;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Test objective:
+ * <p>
+ * Share one computation and its value among repeated requests for a key, and never queue more than
+ * one computation behind the one running.
+ */
+public class SingleFlightTest {
+    @Rule
+    public Timeout globalTimeout = Timeout.millis(10000);
+
+    @Test
+    public void testCoalesce() throws Exception {
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            SingleFlight<String, Integer> flight = new SingleFlight<>(executor);
+            CountDownLatch release = new CountDownLatch(1);
+            AtomicInteger computed = new AtomicInteger();
+
+            // Requests for the key being computed share the computation
+            List<CompletableFuture<Integer>> first = new ArrayList<>();
+            for (int i = 0; i < 50; i++)
+                first.add(flight.request("a", () -> {
+                    await(release);
+                    return computed.incrementAndGet();
+                }));
+            // Requests for other keys meanwhile wait in one place, each taking it from the one before
+            List<CompletableFuture<Integer>> others = new ArrayList<>();
+            for (String key : new String[]{"b", "c", "d", "d"})
+                others.add(flight.request(key, () -> 100 + computed.incrementAndGet()));
+            release.countDown();
+
+            for (CompletableFuture<Integer> future : first)
+                assertTrue("Every request for a should share one value", future.get() == 1);
+            assertTrue("The last key waiting should be computed", others.get(3).get() == 102 && others.get(2) == others.get(3));
+            for (CompletableFuture<Integer> future : others.subList(0, 2)) {
+                boolean cancelled = false;
+                try {
+                    future.get();
+                } catch (CancellationException e) {
+                    cancelled = true;
+                }
+                assertTrue("A waiting request taken over by another key should be cancelled", cancelled);
+            }
+            assertTrue("Only two computations should run, but " + flight.getComputations() + " did", flight.getComputations() == 2 && computed.get() == 2 && flight.getSuperseded() == 2);
+
+            // The value last computed is shared without computing it again
+            assertTrue("The last value should be shared", flight.request("d", () -> -1).get() == 102 && flight.getComputations() == 2);
+            assertTrue("Another key should be computed", flight.request("a", () -> -1).get() == -1 && flight.getComputations() == 3);
+            assertTrue("Every request should be counted", flight.getRequests() == 56);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void testFailure() throws Exception {
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            SingleFlight<String, Integer> flight = new SingleFlight<>(executor);
+            boolean failed = false;
+            try {
+                flight.request("a", () -> {
+                    throw new IllegalStateException("No value");
+                }).get();
+            } catch (ExecutionException e) {
+                failed = e.getCause() instanceof IllegalStateException;
+            }
+            assertTrue("A failed computation should fail its requests", failed);
+            assertTrue("A failed computation should not be remembered", flight.request("a", () -> 1).get() == 1 && flight.getComputations() == 2);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void testHints() throws Exception {
+        // Hints for a position, asked for from many threads while it is being searched, are all the same
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        ExecutorService keys = Executors.newFixedThreadPool(4);
+        try {
+            SingleFlight<String, Short> flight = new SingleFlight<>(executor);
+            for (String[] test : SOLUTIONS_MULTI) {
+                short[] start = Placement.parseSequence(test[0]);
+                CompatibleSolutions tracker = new CompatibleSolutions(start);
+                List<CompletableFuture<Short>> hints = new ArrayList<>();
+                for (int i = 0; i < 40; i++) {
+                    CompatibleSolutions copy = tracker.copy();
+                    hints.add(CompletableFuture.supplyAsync(() -> flight.request(test[0], () -> copy.hint(start, new Random())), keys).thenCompose(f -> f));
+                }
+                short hint = hints.get(0).get();
+                assertTrue("There should be a hint for " + test[0], hint != Placement.NONE);
+                for (CompletableFuture<Short> future : hints)
+                    assertTrue("Every request should share the hint " + Placement.toString(hint), future.get() == hint);
+            }
+            assertTrue("Each position should be searched once", flight.getComputations() == SOLUTIONS_MULTI.length);
+        } finally {
+            executor.shutdownNow();
+            keys.shutdownNow();
+        }
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await();
+        } catch (InterruptedException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -0,0 +1,61 @@
+package game;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.Timeout;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Optional;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+import static game.TestUtility.SOLUTIONS_MULTI;
+import static game.TestUtility.SOLUTIONS_ONE;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Test objective:
+ * <p>
+ * Stream the solutions given a starting placement, lazily and in parallel.
+ */
+public class SolutionStreamTest {
+    @Rule
+    public Timeout globalTimeout = Timeout.seconds(10);
+
+    @Test
+    public void testSameAsArray() {
+        for (String[] test : SOLUTIONS_MULTI) {
+            Set<String> expected = new HashSet<>(Arrays.asList(StepsGame.getSolutions(test[0])));
+            Set<String> streamed = StepsGame.solutions(test[0]).collect(Collectors.toSet());
+            assertTrue("Placement '" + test[0] + "' has solutions " + expected + ", but the stream gave " + streamed, expected.equals(streamed));
+            Set<String> parallel = StepsGame.solutions(test[0]).parallel().collect(Collectors.toSet());
+            assertTrue("Placement '" + test[0] + "' has solutions " + expected + ", but the parallel stream gave " + parallel, expected.equals(parallel));
+        }
+    }
+
+    @Test
+    public void testAnySolution() {
+        for (String[] test : SOLUTIONS_ONE) {
+            StepsGame game = new StepsGame(test[0]);
+            Optional<String> solution = game.anySolution();
+            assertTrue("Placement '" + test[0] + "' has a solution, but none was found", solution.isPresent());
+            assertTrue("Placement '" + test[0] + "' has solution '" + test[1] + "', but got '" + solution.get() + "'", TestUtility.normalize(solution.get()).equals(TestUtility.normalize(test[1])));
+            assertTrue("Placement '" + test[0] + "' has one solution, but counted " + game.countSolutions(), game.countSolutions() == 1);
+        }
+    }
+
+    @Test
+    public void testFirstK() {
+        long all = StepsGame.solutions("").count();
+        assertTrue("Expected solutions for an empty placement, but got none", all > 10);
+        assertTrue("Expected 10 solutions from limit(10)", StepsGame.solutions("").limit(10).count() == 10);
+        assertTrue("Expected the empty game to count " + all + " solutions", new StepsGame("").countSolutions() == all);
+    }
+
+    @Test
+    public void testNoSolution() {
+        assertTrue("Expected no solutions for a placement not in the index", !StepsGame.solutions("AAAAAA").findAny().isPresent());
+        assertTrue("Expected no solutions for a badly formed placement", StepsGame.solutions("XYZ").count() == 0);
+    }
+}
@@ -0,0 +1,86 @@
+package game;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.Timeout;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import static game.TestUtility.SOLUTIONS_ONE;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Test objective:
+ * <p>
+ * Answer whether positions can still be finished as the solver does, searching each position once.
+ */
+public class SolvabilityCacheTest {
+    @Rule
+    public Timeout globalTimeout = Timeout.millis(10000);
+
+    @Test
+    public void testPositions() {
+        SolvabilityCache cache = new SolvabilityCache(1000);
+        Random r = new Random(6);
+        // Prefixes of solutions, and the same with a random piece at the end
+        List<short[]> positions = new ArrayList<>();
+        for (String[] test : SOLUTIONS_ONE) {
+            short[] solution = Placement.parseSequence(test[1]);
+            for (int length = 1; length <= solution.length; length++) {
+                positions.add(Arrays.copyOf(solution, length));
+                short piece = Placement.of(Placement.shape(solution[length - 1]), r.nextInt(8), r.nextInt(Placement.LOCATIONS));
+                short[] moved = Arrays.copyOf(solution, length);
+                moved[length - 1] = piece;
+                positions.add(moved);
+            }
+        }
+        for (short[] position : positions) {
+            boolean expected = StepsGame.isPlacementSequenceValid(position) && new Solver(true).isSolvable(position, position.length);
+            assertTrue("Position " + Placement.toString(position) + " should " + (expected ? "" : "not ") + "be solvable", cache.isSolvable(position, position.length) == expected);
+        }
+
+        // Seen again, and in another order, every valid position is answered from the cache
+        long misses = cache.getMisses(), hits = cache.getHits(), valid = 0;
+        for (short[] position : positions) {
+            if (!StepsGame.isPlacementSequenceValid(position))
+                continue;
+            short[] rotated = new short[position.length];
+            for (int i = 0; i < position.length; i++)
+                rotated[i] = position[(i + 1) % position.length];
+            for (short[] order : new short[][]{position, rotated}) {
+                // Rotated, it may no longer be playable
+                if (StepsGame.isPlacementSequenceValid(order)) {
+                    valid++;
+                    cache.isSolvable(order, order.length);
+                }
+            }
+        }
+        assertTrue("Positions seen before should not be searched again", cache.getMisses() == misses);
+        assertTrue("Expected " + valid + " positions answered from the cache, but got " + (cache.getHits() - hits), cache.getHits() - hits == valid);
+    }
+
+    @Test
+    public void testCapacity() throws InterruptedException, ExecutionException {
+        SolvabilityCache cache = new SolvabilityCache(2);
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            for (String[] test : SOLUTIONS_ONE) {
+                short[] placement = Placement.parseSequence(test[0]);
+                assertTrue("The puzzle " + test[0] + " should be solvable", cache.isSolvableAsync(placement, executor).get());
+            }
+        } finally {
+            executor.shutdown();
+        }
+        assertTrue("Expected at most 2 positions remembered, but got " + cache.size(), cache.size() == 2);
+        assertTrue("Expected " + SOLUTIONS_ONE.length + " searches, but got " + cache.getMisses(), cache.getMisses() == SOLUTIONS_ONE.length);
+        short[] first = Placement.parseSequence(SOLUTIONS_ONE[0][0]);
+        cache.isSolvable(first, first.length);
+        assertTrue("A forgotten position should be searched again", cache.getMisses() == SOLUTIONS_ONE.length + 1);
+    }
+}
@@ -0,0 +1,122 @@
+package game;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.Timeout;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.TreeSet;
+
+import static game.TestUtility.SOLUTIONS_MULTI;
+import static game.TestUtility.SOLUTIONS_ONE;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Test objective:
+ * <p>
+ * Solve positions by searching the board, with and without pruning dead states, branching
+ * on the pieces in order or on the most constrained peg.
+ */
+public class SolverTest {
+    @Rule
+    public Timeout globalTimeout = Timeout.seconds(20);
+
+    private static Set<String> solve(String placement, boolean pruning) {
+        short[] sequence = Placement.parseSequence(placement);
+        Set<String> solutions = new TreeSet<>();
+        for (short[] solution : new Solver(pruning).solve(sequence, sequence.length, Integer.MAX_VALUE)) {
+            String text = Placement.toString(solution);
+            assertTrue("Solution '" + text + "' should start with '" + placement + "'", text.startsWith(placement));
+            assertTrue("Solution '" + text + "' should be a valid placement", StepsGame.isPlacementSequenceValid(text));
+            solutions.add(TestUtility.normalize(text));
+        }
+        return solutions;
+    }
+
+    private static Set<String> normalized(String[] solutions) {
+        Set<String> set = new TreeSet<>();
+        for (String solution : solutions)
+            set.add(TestUtility.normalize(solution));
+        return set;
+    }
+
+    @Test
+    public void testSolutions() {
+        for (String[] test : SOLUTIONS_ONE) {
+            Set<String> expected = normalized(Arrays.copyOfRange(test, 1, test.length));
+            Set<String> solutions = solve(test[0], true);
+            assertTrue("Placement '" + test[0] + "' has solutions " + expected + ", but the solver found " + solutions, expected.equals(solutions));
+        }
+        for (String[] test : SOLUTIONS_MULTI) {
+            Set<String> expected = normalized(Arrays.copyOfRange(test, 1, test.length));
+            Set<String> solutions = solve(test[0], true);
+            assertTrue("Placement '" + test[0] + "' has solutions " + expected + ", but the solver found " + solutions, expected.equals(solutions));
+        }
+    }
+
+    @Test
+    public void testPruning() {
+        for (String[] test : SOLUTIONS_MULTI) {
+            short[] sequence = Placement.parseSequence(test[0]);
+            Solver plain = new Solver(false);
+            Solver pruned = new Solver(true);
+            plain.solve(sequence, sequence.length, Integer.MAX_VALUE);
+            pruned.solve(sequence, sequence.length, Integer.MAX_VALUE);
+            assertTrue("Pruning should find the same solutions for '" + test[0] + "'", solve(test[0], false).equals(solve(test[0], true)));
+            assertTrue("Pruning should visit fewer states for '" + test[0] + "', but visited " + pruned.getNodes() + " against " + plain.getNodes(), pruned.getNodes() < plain.getNodes());
+        }
+    }
+
+    @Test
+    public void testBranching() {
+        Random r = new Random(5);
+        for (String[] test : SOLUTIONS_MULTI) {
+            short[] sequence = Placement.parseSequence(test[0]);
+            Solver byPiece = new Solver(true, false);
+            Solver byCell = new Solver(true, true);
+            Set<String> expected = new TreeSet<>();
+            for (short[] solution : byPiece.solve(sequence, sequence.length, Integer.MAX_VALUE))
+                expected.add(TestUtility.normalize(Placement.toString(solution)));
+            Set<String> solutions = new TreeSet<>();
+            for (short[] solution : byCell.solve(sequence, sequence.length, Integer.MAX_VALUE))
+                solutions.add(TestUtility.normalize(Placement.toString(solution)));
+            assertTrue("Branching by peg should find " + expected + " for '" + test[0] + "', but found " + solutions, expected.equals(solutions));
+            assertTrue("Branching by peg should visit fewer states for '" + test[0] + "', but visited " + byCell.getNodes() + " against " + byPiece.getNodes(), byCell.getNodes() < byPiece.getNodes());
+        }
+        // Shorter placements have many solutions
+        for (String[] test : SOLUTIONS_ONE) {
+            String placement = test[1].substring(0, 3 * (2 + r.nextInt(2)));
+            short[] sequence = Placement.parseSequence(placement);
+            int byPiece = new Solver(true, false).solve(sequence, sequence.length, Integer.MAX_VALUE).size();
+            int byCell = new Solver(true, true).solve(sequence, sequence.length, Integer.MAX_VALUE).size();
+            assertTrue("Placement '" + placement + "' has " + byPiece + " solutions, but branching by peg found " + byCell, byPiece == byCell);
+        }
+    }
+
+    @Test
+    public void testSolvable() {
+        for (String[] test : SOLUTIONS_ONE)
+            for (int i = 0; i <= test[1].length(); i += 3)
+                assertTrue("Placement '" + test[1].substring(0, i) + "' should be solvable", StepsGame.isSolvable(test[1].substring(0, i)));
+        // Random valid positions, mostly dead ends
+        Random r = new Random(3);
+        short[] sequence = new short[Placement.SHAPES];
+        for (int t = 0; t < 20; t++) {
+            int length = 0;
+            for (int shape = 0; shape < 3; shape++) {
+                short piece;
+                do {
+                    piece = Placement.of(shape, r.nextInt(8), r.nextInt(50));
+                    sequence[length] = piece;
+                } while (!StepsGame.isPlacementSequenceValid(sequence, length + 1));
+                length++;
+            }
+            List<short[]> solutions = new Solver(false, false).solve(sequence, length, 1);
+            String placement = Placement.toString(sequence, length);
+            assertTrue("Placement '" + placement + "' should " + (solutions.isEmpty() ? "not " : "") + "be solvable", StepsGame.isSolvable(placement) == !solutions.isEmpty());
+        }
+    }
+}